@@ -0,0 +1,99 @@
+package io.swyftx.jwk.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+
+import io.swyftx.jwk.CoseKey;
+import io.swyftx.jwk.ECKeyMaker;
+import io.swyftx.jwk.JwkJsonWriter;
+import io.swyftx.jwk.KeyIdGenerator;
+import io.swyftx.jwk.OKPKeyMaker;
+import io.swyftx.jwk.RSAKeyMaker;
+
+/**
+ * Compares a COSE_KeySet with a compact JWK Set of the same private keys: encoding and parsing time here, and the
+ * encoded sizes, which are printed once per key type during setup
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoseKeyBenchmark {
+
+    @Param({"RSA", "EC", "OKP"})
+    public String keyType;
+
+    @Param({"16"})
+    public int keyCount;
+
+    @Param({"42"})
+    public long seed;
+
+    private List<JWK> jwks;
+    private String json;
+    private byte[] cose;
+
+    @Setup
+    public void setUp() {
+        SecureRandom random = SeededRandom.create(seed);
+        jwks = new ArrayList<>(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            jwks.add(switch (keyType) {
+                case "RSA" -> RSAKeyMaker.make(2048, KeyUse.SIGNATURE, JWSAlgorithm.RS256, KeyIdGenerator.SHA256, random);
+                case "EC" -> ECKeyMaker.make(Curve.P_256, KeyUse.SIGNATURE, JWSAlgorithm.ES256, KeyIdGenerator.SHA256, random);
+                case "OKP" -> OKPKeyMaker.make(Curve.Ed25519, KeyUse.SIGNATURE, JWSAlgorithm.EdDSA, KeyIdGenerator.SHA256, random);
+                default -> throw new IllegalArgumentException("Unknown key type: " + keyType);
+            });
+        }
+        json = JwkJsonWriter.toJSONString(jwks, false, false);
+        cose = CoseKey.toKeySetBytes(jwks, false);
+
+        int jsonBytes = json.getBytes(StandardCharsets.UTF_8).length;
+        System.out.printf("%n%d %s keys: JWK Set %d bytes, COSE_KeySet %d bytes (%.0f%%)%n",
+            keyCount, keyType, jsonBytes, cose.length, 100.0 * cose.length / jsonBytes);
+    }
+
+    @Benchmark
+    public String encodeJson() {
+        return JwkJsonWriter.toJSONString(jwks, false, false);
+    }
+
+    @Benchmark
+    public byte[] encodeCose() {
+        return CoseKey.toKeySetBytes(jwks, false);
+    }
+
+    @Benchmark
+    public JWKSet parseJson() throws ParseException {
+        return JWKSet.parse(json);
+    }
+
+    @Benchmark
+    public List<JWK> parseCose() throws ParseException {
+        return CoseKey.parseKeySet(cose);
+    }
+}
@@ -0,0 +1,41 @@
+package io.swyftx.jwk.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.swyftx.jwk.CosignKeyGenerator;
+
+/**
+ * Measures cosign key pair generation once the scrypt key is derived, i.e. P-256 generation, secretbox sealing and
+ * PEM encoding
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CosignKeyGeneratorBenchmark {
+
+    private CosignKeyGenerator generator;
+
+    @Setup
+    public void setUp() {
+        generator = new CosignKeyGenerator(new char[0]);
+    }
+
+    @Benchmark
+    public CosignKeyGenerator.CosignKeyPair generate() {
+        return generator.generate();
+    }
+}
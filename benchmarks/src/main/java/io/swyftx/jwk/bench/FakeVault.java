@@ -0,0 +1,548 @@
+package io.swyftx.jwk.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for a Vault server with a KV version 2 engine, for load tests. Any mount name is a KV v2 mount.
+ * Covers data reads and writes with check-and-set, version history with {@code max_versions} pruning, soft delete,
+ * undelete and destroy of versions, metadata reads and writes with {@code cas_required} and custom metadata, and
+ * enough of the token and login endpoints for the client to authenticate. Any token is accepted.
+ *
+ * <p>Every request can be delayed by a base latency plus uniform random jitter, and failed at a given rate with a
+ * given status, before it is handled, so a failed request never changes the store.</p>
+ */
+public class FakeVault implements AutoCloseable {
+
+    private static final int DEFAULT_MAX_VERSIONS = 10;
+    private static final int TOKEN_TTL_SECONDS = 3600;
+
+    private final HttpServer server;
+
+    /**
+     * Platform threads rather than virtual threads: the JDK server reads request bodies inside a synchronized method,
+     * so a virtual thread waiting for a body pins its carrier, and enough of them starve the in-process client threads
+     * that would send those bodies
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+        Thread.ofPlatform().daemon().name("fake-vault-", 0).factory());
+    private final Map<String, Secret> secrets = new ConcurrentHashMap<>();
+    private final AtomicInteger tokens = new AtomicInteger();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+    private final LongAdder casConflicts = new LongAdder();
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration jitter = Duration.ZERO;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+
+    private FakeVault(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Starts a server on the loopback interface
+     *
+     * @param port The port to listen on, or 0 for any free port
+     * @return The running server
+     * @throws IOException If the port could not be bound
+     */
+    public static FakeVault start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        FakeVault vault = new FakeVault(server);
+        server.createContext("/v1/", vault::handle);
+        server.setExecutor(vault.executor);
+        server.start();
+        return vault;
+    }
+
+    /**
+     * @return The address to give clients, e.g. {@code http://127.0.0.1:8200}
+     */
+    public String address() {
+        InetSocketAddress bound = server.getAddress();
+        return "http://" + bound.getAddress().getHostAddress() + ":" + bound.getPort();
+    }
+
+    /**
+     * Delays every request by {@code latency} plus a uniformly random amount up to {@code jitter}
+     *
+     * @param latency The base delay
+     * @param jitter The maximum extra delay
+     * @return This server
+     */
+    public FakeVault latency(Duration latency, Duration jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+        return this;
+    }
+
+    /**
+     * Fails a random fraction of requests, authentication included
+     *
+     * @param rate The fraction of requests to fail, from 0 to 1
+     * @param status The HTTP status to fail them with, e.g. 503 for a sealed Vault or 412 for a lagging standby
+     * @return This server
+     */
+    public FakeVault errors(double rate, int status) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Error rate must be from 0 to 1, got " + rate);
+        }
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /**
+     * @param mount The KV mount
+     * @param path The secret path
+     * @return The current version of the secret, or 0 if it has never been written
+     */
+    public int currentVersion(String mount, String path) {
+        Secret secret = secrets.get(mount + "/" + path);
+        if (secret == null) {
+            return 0;
+        }
+        synchronized (secret) {
+            return secret.currentVersion;
+        }
+    }
+
+    /**
+     * @return Counts of requests served so far
+     */
+    public Stats stats() {
+        return new Stats(requests.sum(), injectedErrors.sum(), casConflicts.sum(), secrets.size());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Counts of requests served
+     *
+     * @param requests Requests received
+     * @param injectedErrors Requests failed on purpose by the configured error rate
+     * @param casConflicts Writes rejected because their check-and-set version was stale
+     * @param secrets Secrets stored
+     */
+    public record Stats(long requests, long injectedErrors, long casConflicts, int secrets) {
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        try (exchange) {
+            try {
+                respond(exchange);
+            } catch (JsonParseException | IllegalStateException | UnsupportedOperationException | NumberFormatException e) {
+                send(exchange, 400, errors("invalid request: " + e.getMessage()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException, InterruptedException {
+        delay();
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            injectedErrors.increment();
+            send(exchange, errorStatus, errors("injected error"));
+            return;
+        }
+
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath().substring("/v1/".length());
+        JsonObject body = readBody(exchange);
+
+        if (path.startsWith("auth/")) {
+            auth(exchange, method, path);
+        } else if (path.startsWith("sys/")) {
+            sys(exchange, path);
+        } else if (exchange.getRequestHeaders().getFirst("X-Vault-Token") == null) {
+            send(exchange, 403, errors("permission denied"));
+        } else {
+            kv(exchange, method, path, body);
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long nanos = latency.toNanos();
+        long maxJitter = jitter.toNanos();
+        if (maxJitter > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(maxJitter + 1);
+        }
+        if (nanos > 0) {
+            Thread.sleep(Duration.ofNanos(nanos));
+        }
+    }
+
+    private void auth(HttpExchange exchange, String method, String path) throws IOException {
+        String token = exchange.getRequestHeaders().getFirst("X-Vault-Token");
+        if (path.equals("auth/token/lookup-self")) {
+            if (token == null) {
+                send(exchange, 403, errors("permission denied"));
+                return;
+            }
+            JsonObject data = new JsonObject();
+            data.addProperty("id", token);
+            data.addProperty("ttl", TOKEN_TTL_SECONDS);
+            data.addProperty("renewable", true);
+            data.add("policies", policies());
+            send(exchange, 200, wrap("data", data));
+        } else if (path.equals("auth/token/renew-self")) {
+            send(exchange, 200, wrap("auth", authBlock(token)));
+        } else if (path.equals("auth/token/revoke-self")) {
+            send(exchange, 204, null);
+        } else if (path.endsWith("/login") && method.equals("POST")) {
+            send(exchange, 200, wrap("auth", authBlock("fake-token-" + tokens.incrementAndGet())));
+        } else {
+            send(exchange, 404, errors());
+        }
+    }
+
+    private static JsonObject authBlock(String token) {
+        JsonObject auth = new JsonObject();
+        auth.addProperty("client_token", token);
+        auth.addProperty("lease_duration", TOKEN_TTL_SECONDS);
+        auth.addProperty("renewable", true);
+        auth.add("policies", policies());
+        return auth;
+    }
+
+    private static JsonArray policies() {
+        JsonArray policies = new JsonArray();
+        policies.add("default");
+        return policies;
+    }
+
+    private static void sys(HttpExchange exchange, String path) throws IOException {
+        if (path.equals("sys/health")) {
+            JsonObject health = new JsonObject();
+            health.addProperty("initialized", true);
+            health.addProperty("sealed", false);
+            health.addProperty("standby", false);
+            send(exchange, 200, health);
+        } else {
+            send(exchange, 204, null);
+        }
+    }
+
+    /**
+     * Routes {@code <mount>/<operation>/<path>} to the KV v2 operation
+     */
+    private void kv(HttpExchange exchange, String method, String path, JsonObject body) throws IOException {
+        int mountEnd = path.indexOf('/');
+        int operationEnd = mountEnd < 0 ? -1 : path.indexOf('/', mountEnd + 1);
+        if (operationEnd < 0 || operationEnd == path.length() - 1) {
+            send(exchange, 404, errors());
+            return;
+        }
+        String mount = path.substring(0, mountEnd);
+        String operation = path.substring(mountEnd + 1, operationEnd);
+        String key = mount + "/" + path.substring(operationEnd + 1);
+        boolean write = method.equals("POST") || method.equals("PUT");
+
+        switch (operation) {
+            case "data" -> {
+                if (method.equals("GET")) {
+                    readData(exchange, key);
+                } else if (write) {
+                    writeData(exchange, key, body);
+                } else if (method.equals("DELETE")) {
+                    deleteLatest(exchange, key);
+                } else {
+                    send(exchange, 405, errors());
+                }
+            }
+            case "metadata" -> {
+                if (method.equals("GET")) {
+                    readMetadata(exchange, key);
+                } else if (write) {
+                    writeMetadata(exchange, key, body);
+                } else if (method.equals("DELETE")) {
+                    secrets.remove(key);
+                    send(exchange, 204, null);
+                } else {
+                    send(exchange, 405, errors());
+                }
+            }
+            case "delete", "undelete", "destroy" -> {
+                if (write) {
+                    changeVersions(exchange, key, operation, body);
+                } else {
+                    send(exchange, 405, errors());
+                }
+            }
+            default -> send(exchange, 404, errors());
+        }
+    }
+
+    private void readData(HttpExchange exchange, String key) throws IOException {
+        Secret secret = secrets.get(key);
+        if (secret == null) {
+            send(exchange, 404, errors());
+            return;
+        }
+        String requested = queryParameter(exchange.getRequestURI(), "version");
+        synchronized (secret) {
+            int number = requested == null || requested.equals("0") ? secret.currentVersion : Integer.parseInt(requested);
+            Version version = secret.versions.get(number);
+            if (version == null) {
+                send(exchange, 404, errors());
+                return;
+            }
+            JsonObject data = new JsonObject();
+            boolean readable = version.deleted == null && !version.destroyed;
+            data.add("data", readable ? version.data : JsonNull.INSTANCE);
+            JsonObject metadata = version.toJson(number);
+            metadata.add("custom_metadata", secret.customMetadata.deepCopy());
+            data.add("metadata", metadata);
+            // Vault answers 404 for a deleted or destroyed version, with its metadata in the body
+            send(exchange, readable ? 200 : 404, wrap("data", data));
+        }
+    }
+
+    private void writeData(HttpExchange exchange, String key, JsonObject body) throws IOException {
+        if (body == null || !body.has("data") || !body.get("data").isJsonObject()) {
+            send(exchange, 400, errors("no data provided"));
+            return;
+        }
+        JsonObject options = body.has("options") && body.get("options").isJsonObject() ? body.getAsJsonObject("options") : null;
+        Integer cas = options != null && options.has("cas") ? options.get("cas").getAsInt() : null;
+
+        Secret secret = secrets.computeIfAbsent(key, k -> new Secret());
+        synchronized (secret) {
+            if (cas == null && secret.casRequired) {
+                send(exchange, 400, errors("check-and-set parameter required for this call"));
+                return;
+            }
+            if (cas != null && cas != secret.currentVersion) {
+                casConflicts.increment();
+                send(exchange, 400, errors("check-and-set parameter did not match the current version"));
+                return;
+            }
+            int number = secret.currentVersion + 1;
+            Version version = new Version(body.getAsJsonObject("data"));
+            secret.versions.put(number, version);
+            secret.currentVersion = number;
+            secret.updated = version.created;
+            secret.prune();
+            send(exchange, 200, wrap("data", version.toJson(number)));
+        }
+    }
+
+    private void deleteLatest(HttpExchange exchange, String key) throws IOException {
+        Secret secret = secrets.get(key);
+        if (secret != null) {
+            synchronized (secret) {
+                Version version = secret.versions.get(secret.currentVersion);
+                if (version != null && version.deleted == null) {
+                    version.deleted = Instant.now();
+                }
+            }
+        }
+        send(exchange, 204, null);
+    }
+
+    private void changeVersions(HttpExchange exchange, String key, String operation, JsonObject body) throws IOException {
+        if (body == null || !body.has("versions") || !body.get("versions").isJsonArray()) {
+            send(exchange, 400, errors("no versions provided"));
+            return;
+        }
+        Secret secret = secrets.get(key);
+        if (secret != null) {
+            synchronized (secret) {
+                Instant now = Instant.now();
+                for (JsonElement element : body.getAsJsonArray("versions")) {
+                    Version version = secret.versions.get(element.getAsInt());
+                    if (version == null) {
+                        continue;
+                    }
+                    switch (operation) {
+                        case "delete" -> version.deleted = version.deleted == null ? now : version.deleted;
+                        case "undelete" -> version.deleted = null;
+                        default -> {
+                            version.destroyed = true;
+                            version.data = null;
+                        }
+                    }
+                }
+            }
+        }
+        send(exchange, 204, null);
+    }
+
+    private void readMetadata(HttpExchange exchange, String key) throws IOException {
+        Secret secret = secrets.get(key);
+        if (secret == null) {
+            send(exchange, 404, errors());
+            return;
+        }
+        synchronized (secret) {
+            send(exchange, 200, wrap("data", secret.metadataJson()));
+        }
+    }
+
+    private void writeMetadata(HttpExchange exchange, String key, JsonObject body) throws IOException {
+        JsonObject update = body == null ? new JsonObject() : body;
+        Secret secret = secrets.computeIfAbsent(key, k -> new Secret());
+        synchronized (secret) {
+            if (update.has("max_versions")) {
+                secret.maxVersions = update.get("max_versions").getAsInt();
+            }
+            if (update.has("cas_required")) {
+                secret.casRequired = update.get("cas_required").getAsBoolean();
+            }
+            if (update.has("custom_metadata") && update.get("custom_metadata").isJsonObject()) {
+                secret.customMetadata = update.getAsJsonObject("custom_metadata").deepCopy();
+            }
+            secret.updated = Instant.now();
+            secret.prune();
+        }
+        send(exchange, 204, null);
+    }
+
+    private static JsonObject readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readAllBytes();
+            if (bytes.length == 0) {
+                return null;
+            }
+            JsonElement parsed = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+            return parsed.isJsonObject() ? parsed.getAsJsonObject() : null;
+        }
+    }
+
+    private static String queryParameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.substring(0, equals).equals(name)) {
+                return pair.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    private static JsonObject wrap(String name, JsonElement value) {
+        JsonObject response = new JsonObject();
+        response.add(name, value);
+        return response;
+    }
+
+    private static JsonObject errors(String... messages) {
+        JsonArray errors = new JsonArray();
+        for (String message : messages) {
+            errors.add(message);
+        }
+        return wrap("errors", errors);
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * A secret and its version history. Guarded by its own monitor.
+     */
+    private static class Secret {
+        final TreeMap<Integer, Version> versions = new TreeMap<>();
+        final Instant created = Instant.now();
+        Instant updated = created;
+        int currentVersion;
+        int maxVersions;
+        boolean casRequired;
+        JsonObject customMetadata = new JsonObject();
+
+        /**
+         * Drops the oldest versions beyond {@code max_versions}, or the engine default of 10 when it is 0
+         */
+        void prune() {
+            int limit = maxVersions > 0 ? maxVersions : DEFAULT_MAX_VERSIONS;
+            while (versions.size() > limit) {
+                versions.pollFirstEntry();
+            }
+        }
+
+        JsonObject metadataJson() {
+            JsonObject metadata = new JsonObject();
+            metadata.addProperty("current_version", currentVersion);
+            metadata.addProperty("oldest_version", versions.isEmpty() ? 0 : versions.firstKey());
+            metadata.addProperty("max_versions", maxVersions);
+            metadata.addProperty("cas_required", casRequired);
+            metadata.addProperty("created_time", created.toString());
+            metadata.addProperty("updated_time", updated.toString());
+            metadata.addProperty("delete_version_after", "0s");
+            metadata.add("custom_metadata", customMetadata.deepCopy());
+            JsonObject history = new JsonObject();
+            for (Map.Entry<Integer, Version> entry : versions.entrySet()) {
+                JsonObject version = entry.getValue().toJson(entry.getKey());
+                version.remove("version");
+                history.add(String.valueOf(entry.getKey()), version);
+            }
+            metadata.add("versions", history);
+            return metadata;
+        }
+    }
+
+    private static class Version {
+        final Instant created = Instant.now();
+        JsonObject data;
+        Instant deleted;
+        boolean destroyed;
+
+        Version(JsonObject data) {
+            this.data = data;
+        }
+
+        JsonObject toJson(int number) {
+            JsonObject json = new JsonObject();
+            json.addProperty("version", number);
+            json.addProperty("created_time", created.toString());
+            json.addProperty("deletion_time", deleted == null ? "" : deleted.toString());
+            json.addProperty("destroyed", destroyed);
+            return json;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.swyftx.jwk.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+
+import io.swyftx.jwk.JwkJsonWriter;
+import io.swyftx.jwk.KeyIdGenerator;
+import io.swyftx.jwk.RSAKeyMaker;
+
+/**
+ * Compares the streaming JWK Set serializer with the previous Nimbus to String to Gson tree to pretty String
+ * round trip. Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm} to see the allocation reduction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwkSerializationBenchmark {
+
+    @Param({"1", "16"})
+    public int keyCount;
+
+    @Param({"42"})
+    public long seed;
+
+    private List<JWK> jwks;
+    private Writer sink;
+
+    @Setup
+    public void setUp() {
+        jwks = new ArrayList<>(keyCount);
+        var random = SeededRandom.create(seed);
+        for (int i = 0; i < keyCount; i++) {
+            jwks.add(RSAKeyMaker.make(2048, KeyUse.SIGNATURE, JWSAlgorithm.RS256, KeyIdGenerator.SHA256, random));
+        }
+        sink = Writer.nullWriter();
+    }
+
+    @Benchmark
+    public void gsonRoundTrip() throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        JsonElement json = JsonParser.parseString(new JWKSet(jwks).toString(false));
+        sink.write(gson.toJson(json));
+    }
+
+    @Benchmark
+    public void streaming() throws IOException {
+        JwkJsonWriter.writeJWKSet(jwks, false, true, sink);
+    }
+}
@@ -0,0 +1,71 @@
+package io.swyftx.jwk.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+
+import io.swyftx.jwk.KeyIdGenerator;
+import io.swyftx.jwk.RSAKeyMaker;
+
+/**
+ * Measures kid derivation for each built in generator against a fixed public key
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyIdGeneratorBenchmark {
+
+    @Param({"thumbprint", "sha256", "sha1", "date", "timestamp"})
+    public String generatorName;
+
+    @Param({"2048"})
+    public int keySize;
+
+    @Param({"42"})
+    public long seed;
+
+    private KeyIdGenerator generator;
+    private JWK jwk;
+    private byte[] publicKey;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        generator = KeyIdGenerator.get(generatorName);
+        RSAKey rsaKey = RSAKeyMaker.make(keySize, KeyUse.SIGNATURE, JWSAlgorithm.RS256, KeyIdGenerator.NONE,
+                SeededRandom.create(seed));
+        jwk = rsaKey.toPublicJWK();
+        publicKey = rsaKey.toPublicKey().getEncoded();
+    }
+
+    @Benchmark
+    public String generate() {
+        return generator.generate(KeyUse.SIGNATURE, publicKey, () -> jwk);
+    }
+
+    /**
+     * Nimbus' own thumbprint, for comparison with the thumbprint generator
+     */
+    @Benchmark
+    public String nimbusThumbprint() throws JOSEException {
+        return jwk.computeThumbprint().toString();
+    }
+}
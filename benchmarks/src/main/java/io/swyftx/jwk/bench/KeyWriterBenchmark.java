@@ -0,0 +1,85 @@
+package io.swyftx.jwk.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+
+import io.swyftx.jwk.KeyIdGenerator;
+import io.swyftx.jwk.KeyWriter;
+import io.swyftx.jwk.RSAKeyMaker;
+
+/**
+ * Measures the KeyWriter encoders: JWK JSON display, PEM private key encoding and self-signing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyWriterBenchmark {
+
+    @Param({"2048"})
+    public int keySize;
+
+    @Param({"42"})
+    public long seed;
+
+    private RSAKey jwk;
+    private PublicKey publicKey;
+    private PrivateKey privateKey;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() throws JOSEException {
+        jwk = RSAKeyMaker.make(keySize, KeyUse.SIGNATURE, JWSAlgorithm.RS256, KeyIdGenerator.SHA256,
+                SeededRandom.create(seed));
+        publicKey = jwk.toPublicKey();
+        privateKey = jwk.toPrivateKey();
+
+        // displayJWK writes to stdout, which would otherwise flood the benchmark log
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public void displayJWK() {
+        KeyWriter.displayJWK(jwk, true, true, true);
+    }
+
+    @Benchmark
+    public String privateKeyToString() {
+        return KeyWriter.privateKeyToString(privateKey);
+    }
+
+    @Benchmark
+    public Certificate selfSign() {
+        return KeyWriter.selfSign(publicKey, privateKey, jwk.getKeyID());
+    }
+}
@@ -0,0 +1,55 @@
+package io.swyftx.jwk.bench;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+
+import io.swyftx.jwk.KeyIdGenerator;
+import io.swyftx.jwk.RSAKeyMaker;
+
+/**
+ * Measures RSA key pair generation, which is dominated by the prime search
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RSAKeyMakerBenchmark {
+
+    @Param({"2048", "3072", "4096"})
+    public int keySize;
+
+    @Param({"42"})
+    public long seed;
+
+    private SecureRandom random;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        // reseed every iteration so each one walks the same sequence of prime candidates
+        random = SeededRandom.create(seed);
+    }
+
+    @Benchmark
+    public RSAKey make() {
+        return RSAKeyMaker.make(keySize, KeyUse.SIGNATURE, JWSAlgorithm.RS256, KeyIdGenerator.NONE, random);
+    }
+}
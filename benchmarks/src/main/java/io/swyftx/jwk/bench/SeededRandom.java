@@ -0,0 +1,28 @@
+package io.swyftx.jwk.bench;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Deterministic randomness for benchmarks, so key material and results are comparable between runs
+ */
+public class SeededRandom {
+
+    /**
+     * Creates a SecureRandom whose output depends only on the seed. SHA1PRNG is used because,
+     * unlike DRBG or NativePRNG, seeding it before first use replaces rather than supplements
+     * the system entropy.
+     *
+     * @param seed The seed
+     * @return A deterministic SecureRandom
+     */
+    public static SecureRandom create(long seed) {
+        try {
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            random.setSeed(seed);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA1PRNG is not available", e);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package io.swyftx.jwk.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+
+import io.swyftx.jwk.HandlerFactory;
+import io.swyftx.jwk.JwksRotator;
+import io.swyftx.jwk.KeyGenerator;
+import io.swyftx.jwk.KeyIdGenerator;
+import io.swyftx.jwk.RetryPolicy;
+import io.swyftx.jwk.VaultClient;
+
+/**
+ * Drives {@link VaultClient} or a handler at a fixed request rate and reports latency percentiles and achieved
+ * throughput. Requests are sent open loop: each is started at its scheduled time whether or not earlier ones have
+ * finished, and its latency is measured from that scheduled time, so a slow Vault shows up as latency rather than as
+ * a quietly lower request rate. Runs against an in-process {@link FakeVault} unless an address is given.
+ *
+ * <p>Scenarios:</p>
+ * <ul>
+ *     <li>{@code write}: plain KV writes spread over the secret paths</li>
+ *     <li>{@code read}: reads of pre-written secrets</li>
+ *     <li>{@code cas}: JWKS rotations, each a read and a check-and-set write, contending on the secret paths</li>
+ *     <li>{@code jwks}, {@code cosign}: a full handler run to a new path each time, arguments after {@code --} are
+ *     passed to the handler</li>
+ * </ul>
+ */
+public class VaultLoadTest {
+
+    private static final String MOUNT = VaultClient.DEFAULT_KV_MOUNT_PATH;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public static void main(String[] args) throws Exception {
+        Options options = options();
+        CommandLine cmd;
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            usage(options, e.getMessage());
+            return;
+        }
+        if (cmd.hasOption("h")) {
+            usage(options, null);
+            return;
+        }
+
+        Settings settings;
+        try {
+            settings = Settings.from(cmd);
+        } catch (IllegalArgumentException e) {
+            usage(options, e.getMessage());
+            return;
+        }
+
+        FakeVault fake = settings.address == null ? FakeVault.start(0) : null;
+        try {
+            String address = fake != null ? fake.address() : settings.address;
+            VaultClient.setDefaultVaultUri(address);
+            VaultClient.setDefaultRetryPolicy(new RetryPolicy(settings.retries + 1, RetryPolicy.DEFAULT.baseDelay(),
+                RetryPolicy.DEFAULT.maxDelay(), RetryPolicy.DEFAULT_DEADLINE, 0));
+
+            VaultClient client = new VaultClient();
+            if (!client.initialize()) {
+                System.err.println("Vault client could not be initialized. The fake Vault accepts any VAULT_TOKEN.");
+                System.exit(1);
+            }
+            Operation operation = prepare(settings, client, fake);
+            if (fake != null) {
+                fake.latency(settings.latency, settings.jitter).errors(settings.errorRate, settings.errorStatus);
+            }
+
+            System.out.printf("Running %s at %d req/s for %d s after %d s of warmup against %s%n", settings.scenario,
+                settings.rate, settings.duration.toSeconds(), settings.warmup.toSeconds(), address);
+            AtomicReference<FakeVault.Stats> before = new AtomicReference<>();
+            Run run = run(settings, operation, () -> before.set(fake != null ? fake.stats() : null));
+            report(settings, run, fake != null ? fake.stats() : null, before.get());
+        } finally {
+            if (fake != null) {
+                fake.close();
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * A single request of a scenario
+     */
+    @FunctionalInterface
+    private interface Operation {
+        /**
+         * @param index The request number, from 0
+         * @return true if the request succeeded
+         */
+        boolean run(int index) throws Exception;
+    }
+
+    /**
+     * Builds the scenario's operation, writing any secrets it reads before the run starts
+     */
+    private static Operation prepare(Settings settings, VaultClient client, FakeVault fake) {
+        int keys = settings.keys;
+        return switch (settings.scenario) {
+            case "write" -> i -> client.tryWriteSecret(MOUNT, "load/secret-" + i % keys, payload()).isSuccess();
+            case "read" -> {
+                for (int k = 0; k < keys; k++) {
+                    client.tryWriteSecret(MOUNT, "load/secret-" + k, payload()).orThrow();
+                }
+                yield i -> client.tryReadSecret(MOUNT, "load/secret-" + i % keys).isSuccess();
+            }
+            case "cas" -> i -> {
+                JwksRotator rotator = new JwksRotator(client, MOUNT, "load/jwks-" + i % keys, 2);
+                rotator.rotate(KeyGenerator.makeWorkerKey(null, KeyIdGenerator.SHA256, KeyType.EC, KeyUse.SIGNATURE,
+                    JWSAlgorithm.ES256, Curve.P_256));
+                return true;
+            };
+            case "jwks", "cosign" -> i -> {
+                String path = "load/" + settings.scenario + "-" + i;
+                List<String> handlerArgs = new ArrayList<>(settings.handlerArgs);
+                handlerArgs.addAll(List.of("-s", settings.scenario, "-p", path, "-R", String.valueOf(settings.retries)));
+                HandlerFactory.executeHandler(settings.scenario,
+                    io.swyftx.jwk.Options.parseCommandLine(handlerArgs.toArray(String[]::new)));
+                // handlers report failures on stderr rather than to the caller, so check the secret landed
+                return fake == null || fake.currentVersion(MOUNT, path) > 0;
+            };
+            default -> throw new IllegalArgumentException("Unknown scenario: " + settings.scenario);
+        };
+    }
+
+    private static Map<String, Object> payload() {
+        byte[] value = new byte[256];
+        ThreadLocalRandom.current().nextBytes(value);
+        return Map.of("value", Base64.getEncoder().encodeToString(value));
+    }
+
+    /**
+     * Sends requests on schedule from this thread, each running on its own virtual thread. Requests scheduled while
+     * the in-flight limit is reached are dropped and counted, rather than queued, so the schedule never slips.
+     *
+     * @param atMeasureStart Called when the first measured request is due, after warmup
+     */
+    private static Run run(Settings settings, Operation operation, Runnable atMeasureStart) throws InterruptedException {
+        int warmupRequests = (int) (settings.rate * settings.warmup.toSeconds());
+        int total = warmupRequests + (int) (settings.rate * settings.duration.toSeconds());
+        long[] latencies = new long[total];
+        boolean[] succeeded = new boolean[total];
+        boolean[] completed = new boolean[total];
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicLong lastCompletion = new AtomicLong();
+        AtomicReference<String> firstError = new AtomicReference<>();
+        int dropped = 0;
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        System.setOut(discard);
+        System.setErr(discard);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10);
+        long measureStart = start + settings.warmup.toNanos();
+        try {
+            for (int i = 0; i < total; i++) {
+                long scheduled = start + (long) (i * 1e9 / settings.rate);
+                long wait = scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (i == warmupRequests) {
+                    atMeasureStart.run();
+                }
+                if (inFlight.get() >= settings.maxInFlight) {
+                    if (i >= warmupRequests) {
+                        dropped++;
+                    }
+                    continue;
+                }
+
+                int index = i;
+                inFlight.incrementAndGet();
+                executor.execute(() -> {
+                    boolean ok;
+                    try {
+                        ok = operation.run(index);
+                    } catch (Exception e) {
+                        ok = false;
+                        firstError.compareAndSet(null, e.getClass().getSimpleName() + ": " + e.getMessage());
+                    }
+                    long end = System.nanoTime();
+                    latencies[index] = end - scheduled;
+                    succeeded[index] = ok;
+                    completed[index] = true;
+                    lastCompletion.accumulateAndGet(end, Math::max);
+                    inFlight.decrementAndGet();
+                });
+            }
+            executor.shutdown();
+            boolean drained = executor.awaitTermination(RetryPolicy.DEFAULT_DEADLINE.toSeconds(), TimeUnit.SECONDS);
+            if (!drained) {
+                executor.shutdownNow();
+            }
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+
+        // the executor's termination orders every completed request's writes before these reads
+        long ended = Math.max(lastCompletion.get(), start + settings.warmup.toNanos() + settings.duration.toNanos());
+        return Run.of(Arrays.copyOfRange(latencies, warmupRequests, total),
+            Arrays.copyOfRange(succeeded, warmupRequests, total), Arrays.copyOfRange(completed, warmupRequests, total),
+            dropped, Duration.ofNanos(ended - measureStart), firstError.get());
+    }
+
+    private static void report(Settings settings, Run run, FakeVault.Stats after, FakeVault.Stats before) {
+        System.out.printf("Scheduled %d, completed %d, succeeded %d, failed %d, dropped %d, unfinished %d%n",
+            run.scheduled, run.latencies.length, run.succeeded, run.latencies.length - run.succeeded, run.dropped,
+            run.scheduled - run.dropped - run.latencies.length);
+        System.out.printf("Throughput: %.1f req/s succeeded of %d req/s target, over %.2f s%n",
+            run.succeeded * 1e9 / run.elapsed.toNanos(), settings.rate, run.elapsed.toNanos() / 1e9);
+        if (run.latencies.length > 0) {
+            StringBuilder line = new StringBuilder("Latency (ms):");
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" p%s %.2f", percentileName(percentile), run.percentile(percentile) / 1e6));
+            }
+            line.append(String.format(" max %.2f", run.latencies[run.latencies.length - 1] / 1e6));
+            System.out.println(line);
+        }
+        if (after != null) {
+            long requests = after.requests() - before.requests();
+            System.out.printf("Fake Vault: %d requests (%.2f per operation), %d injected errors, %d check-and-set conflicts%n",
+                requests, run.latencies.length == 0 ? 0.0 : (double) requests / run.latencies.length,
+                after.injectedErrors() - before.injectedErrors(), after.casConflicts() - before.casConflicts());
+        }
+        if (run.firstError != null) {
+            System.out.println("First error: " + run.firstError);
+        }
+    }
+
+    private static String percentileName(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+
+    /**
+     * Results of the measured part of a run
+     *
+     * @param latencies Latencies of completed requests in nanoseconds, sorted
+     * @param scheduled Requests scheduled, including dropped ones
+     * @param succeeded Requests that succeeded
+     * @param dropped Requests not sent because too many were in flight
+     * @param elapsed Time from the first measured request's schedule to the last completion
+     * @param firstError The first exception a request failed with, or null
+     */
+    private record Run(long[] latencies, int scheduled, int succeeded, int dropped, Duration elapsed, String firstError) {
+
+        static Run of(long[] latencies, boolean[] succeeded, boolean[] completed, int dropped, Duration elapsed,
+                      String firstError) {
+            long[] done = new long[latencies.length];
+            int count = 0;
+            int successes = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                if (completed[i]) {
+                    done[count++] = latencies[i];
+                    if (succeeded[i]) {
+                        successes++;
+                    }
+                }
+            }
+            long[] sorted = Arrays.copyOf(done, count);
+            Arrays.sort(sorted);
+            return new Run(sorted, latencies.length, successes, dropped, elapsed, firstError);
+        }
+
+        /**
+         * @param percentile The percentile, from 0 to 100
+         * @return The nearest-rank latency at that percentile, in nanoseconds
+         */
+        long percentile(double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, index)];
+        }
+    }
+
+    private static Options options() {
+        Options options = new Options();
+        options.addOption(Option.builder("s").longOpt("scenario").hasArg().argName("name")
+            .desc("write, read, cas, jwks or cosign (default write)").build());
+        options.addOption(Option.builder("r").longOpt("rate").hasArg().argName("n")
+            .desc("Target requests per second (default 100)").build());
+        options.addOption(Option.builder("d").longOpt("duration").hasArg().argName("seconds")
+            .desc("Measured run time (default 10)").build());
+        options.addOption(Option.builder("w").longOpt("warmup").hasArg().argName("seconds")
+            .desc("Unmeasured run time before the measured run (default 2)").build());
+        options.addOption(Option.builder("k").longOpt("keys").hasArg().argName("n")
+            .desc("Distinct secret paths for write, read and cas (default 100)").build());
+        options.addOption(Option.builder("l").longOpt("latency").hasArg().argName("ms")
+            .desc("Latency the fake Vault adds to every request (default 0)").build());
+        options.addOption(Option.builder("j").longOpt("jitter").hasArg().argName("ms")
+            .desc("Maximum random latency the fake Vault adds on top (default 0)").build());
+        options.addOption(Option.builder("e").longOpt("error-rate").hasArg().argName("fraction")
+            .desc("Fraction of requests the fake Vault fails (default 0)").build());
+        options.addOption(Option.builder("E").longOpt("error-status").hasArg().argName("status")
+            .desc("HTTP status of injected failures (default 503)").build());
+        options.addOption(Option.builder("R").longOpt("retries").hasArg().argName("n")
+            .desc("Retries per Vault request (default " + (RetryPolicy.DEFAULT_MAX_ATTEMPTS - 1) + ")").build());
+        options.addOption(Option.builder("i").longOpt("max-in-flight").hasArg().argName("n")
+            .desc("Requests in flight before further requests are dropped (default 10000)").build());
+        options.addOption(Option.builder("a").longOpt("address").hasArg().argName("uri")
+            .desc("Run against this Vault instead of the in-process fake, which disables latency and error injection").build());
+        options.addOption(Option.builder("h").longOpt("help").desc("Show this help").build());
+        return options;
+    }
+
+    private static void usage(Options options, String message) {
+        if (message != null) {
+            System.err.println(message);
+        }
+        HelpFormatter formatter = new HelpFormatter();
+        formatter.setWidth(120);
+        formatter.printHelp("java -cp benchmarks.jar " + VaultLoadTest.class.getName() + " [options] [-- handler options]", options);
+        System.exit(message == null ? 0 : 1);
+    }
+
+    /**
+     * Parsed command line
+     */
+    private record Settings(String scenario, int rate, Duration duration, Duration warmup, int keys, Duration latency,
+                            Duration jitter, double errorRate, int errorStatus, int retries, int maxInFlight,
+                            String address, List<String> handlerArgs) {
+
+        static Settings from(CommandLine cmd) {
+            String scenario = cmd.getOptionValue("s", "write");
+            if (!List.of("write", "read", "cas", "jwks", "cosign").contains(scenario)) {
+                throw new IllegalArgumentException("Unknown scenario: " + scenario);
+            }
+            double errorRate = Double.parseDouble(cmd.getOptionValue("e", "0"));
+            if (errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException("Error rate must be from 0 to 1, got " + errorRate);
+            }
+            return new Settings(
+                scenario,
+                positive(cmd, "r", 100),
+                Duration.ofSeconds(positive(cmd, "d", 10)),
+                Duration.ofSeconds(nonNegative(cmd, "w", 2)),
+                positive(cmd, "k", 100),
+                Duration.ofMillis(nonNegative(cmd, "l", 0)),
+                Duration.ofMillis(nonNegative(cmd, "j", 0)),
+                errorRate,
+                positive(cmd, "E", 503),
+                nonNegative(cmd, "R", RetryPolicy.DEFAULT_MAX_ATTEMPTS - 1),
+                positive(cmd, "i", 10_000),
+                cmd.getOptionValue("a"),
+                cmd.getArgList()
+            );
+        }
+
+        private static int positive(CommandLine cmd, String option, int defaultValue) {
+            int value = nonNegative(cmd, option, defaultValue);
+            if (value == 0) {
+                throw new IllegalArgumentException("--" + longName(option) + " must be positive");
+            }
+            return value;
+        }
+
+        private static int nonNegative(CommandLine cmd, String option, int defaultValue) {
+            String raw = cmd.getOptionValue(option);
+            if (raw == null) {
+                return defaultValue;
+            }
+            int value;
+            try {
+                value = Integer.parseInt(raw);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid --" + longName(option) + ": " + raw);
+            }
+            if (value < 0) {
+                throw new IllegalArgumentException("--" + longName(option) + " must not be negative, got " + value);
+            }
+            return value;
+        }
+
+        private static String longName(String option) {
+            return options().getOption(option).getLongOpt();
+        }
+    }
+}
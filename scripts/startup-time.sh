@@ -0,0 +1,49 @@
+#!/usr/bin/env bash
+# Compares the wall time of a one-key jwks run, which is dominated by startup, across the plain jar, the jar with
+# the AppCDS archive and the native image, skipping any that have not been built. Run from the project root after
+# `mvn package`, `mvn -Pappcds package` and/or `mvn -Pnative package`.
+#
+# usage: scripts/startup-time.sh [runs] [jwk-to-vault args...]
+set -euo pipefail
+
+RUNS=${1:-10}
+shift || true
+ARGS=("$@")
+if [ ${#ARGS[@]} -eq 0 ]; then
+    ARGS=(-s jwks -t EC)
+fi
+
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+JAR=target/jwk-to-vault-0.9-SNAPSHOT-jar-with-dependencies.jar
+ARCHIVE=target/jwk-to-vault.jsa
+NATIVE=target/jwk-to-vault
+
+measure() {
+    local name=$1
+    shift
+    local times=()
+    # one untimed run so the page cache is warm for every variant
+    "$@" "${ARGS[@]}" > /dev/null 2>&1 || true
+    for _ in $(seq "$RUNS"); do
+        local start end
+        start=$(date +%s%N)
+        "$@" "${ARGS[@]}" > /dev/null 2>&1 || true
+        end=$(date +%s%N)
+        times+=($(( (end - start) / 1000000 )))
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk -v name="$name" '
+        { t[NR] = $1; sum += $1 }
+        END { printf "%-8s min %5d ms   median %5d ms   mean %5d ms   (%d runs)\n", name, t[1], t[int((NR + 1) / 2)], sum / NR, NR }'
+}
+
+if [ ! -f "$JAR" ]; then
+    echo "Build the jar first with mvn package" >&2
+    exit 1
+fi
+measure jar "$JAVA" -jar "$JAR"
+if [ -f "$ARCHIVE" ]; then
+    measure appcds "$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -jar "$JAR"
+fi
+if [ -x "$NATIVE" ]; then
+    measure native "$NATIVE"
+fi
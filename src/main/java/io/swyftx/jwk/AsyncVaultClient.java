@@ -0,0 +1,67 @@
+package io.swyftx.jwk;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Non-blocking facade over {@link VaultClient}. Each operation runs on its own virtual thread and completes a
+ * {@link CompletableFuture}, so many Vault calls can be in flight at once over the client's shared connection pool.
+ */
+public class AsyncVaultClient implements AutoCloseable {
+    private final VaultClient client;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Creates an async client over an initialized {@link VaultClient}
+     *
+     * @param client The client to delegate to
+     */
+    public AsyncVaultClient(VaultClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Writes a secret to Vault
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret should be stored
+     * @param secretData The key-value pairs to store
+     * @return Future completing with true if the secret was written successfully
+     */
+    public CompletableFuture<Boolean> writeSecret(String kvMountPath, String secretPath, Map<String, Object> secretData) {
+        return CompletableFuture.supplyAsync(() -> client.writeSecret(kvMountPath, secretPath, secretData), executor);
+    }
+
+    /**
+     * Reads a secret from Vault
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret is stored
+     * @return Future completing with the secret data, or null if retrieval failed
+     */
+    public CompletableFuture<Map<String, Object>> readSecret(String kvMountPath, String secretPath) {
+        return CompletableFuture.supplyAsync(() -> client.readSecret(kvMountPath, secretPath), executor);
+    }
+
+    /**
+     * Writes many secrets to Vault
+     *
+     * @param writes The secrets to write
+     * @param parallelism Maximum number of writes in flight at once
+     * @return Future completing with the per-entry results
+     */
+    public CompletableFuture<VaultClient.BatchResult> writeSecrets(List<VaultClient.SecretWrite> writes, int parallelism) {
+        return CompletableFuture.supplyAsync(() -> client.writeSecrets(writes, parallelism), executor);
+    }
+
+    /**
+     * Stops accepting new operations and waits for those in flight to finish
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -0,0 +1,276 @@
+package io.swyftx.jwk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The subset of CBOR (RFC 8949) that COSE keys use: integers, byte and text strings, arrays, maps and booleans, all
+ * with definite lengths. Floats, tags and indefinite lengths are rejected when decoding.
+ */
+public final class Cbor {
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1;
+    private static final int BYTES = 2;
+    private static final int TEXT = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+    private static final int SIMPLE = 7;
+
+    private static final int FALSE = 20;
+    private static final int TRUE = 21;
+    private static final int NULL = 22;
+    private static final int MAX_DEPTH = 16;
+
+    private Cbor() {
+    }
+
+    /**
+     * Writes CBOR items to a stream with the shortest head for each length or value, as deterministic encoding
+     * requires. Map entries are written in the order given, so callers write keys in sorted order.
+     */
+    public static final class Encoder {
+        private final OutputStream out;
+
+        /**
+         * @param out The stream to write to, left open
+         */
+        public Encoder(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * @param value The integer
+         * @return This encoder
+         * @throws IOException If the stream could not be written
+         */
+        public Encoder integer(long value) throws IOException {
+            return value >= 0 ? head(UNSIGNED, value) : head(NEGATIVE, -1 - value);
+        }
+
+        /**
+         * @param value The bytes
+         * @return This encoder
+         * @throws IOException If the stream could not be written
+         */
+        public Encoder bytes(byte[] value) throws IOException {
+            head(BYTES, value.length);
+            out.write(value);
+            return this;
+        }
+
+        /**
+         * @param value The text, written as UTF-8
+         * @return This encoder
+         * @throws IOException If the stream could not be written
+         */
+        public Encoder text(String value) throws IOException {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            head(TEXT, utf8.length);
+            out.write(utf8);
+            return this;
+        }
+
+        /**
+         * Starts an array, to be followed by its items
+         *
+         * @param size Number of items
+         * @return This encoder
+         * @throws IOException If the stream could not be written
+         */
+        public Encoder array(int size) throws IOException {
+            return head(ARRAY, size);
+        }
+
+        /**
+         * Starts a map, to be followed by alternating keys and values
+         *
+         * @param size Number of entries
+         * @return This encoder
+         * @throws IOException If the stream could not be written
+         */
+        public Encoder map(int size) throws IOException {
+            return head(MAP, size);
+        }
+
+        /**
+         * @param value The boolean
+         * @return This encoder
+         * @throws IOException If the stream could not be written
+         */
+        public Encoder bool(boolean value) throws IOException {
+            out.write(SIMPLE << 5 | (value ? TRUE : FALSE));
+            return this;
+        }
+
+        private Encoder head(int major, long value) throws IOException {
+            int type = major << 5;
+            if (value < 24) {
+                out.write(type | (int) value);
+            } else if (value < 0x100) {
+                out.write(type | 24);
+                out.write((int) value);
+            } else if (value < 0x10000) {
+                out.write(type | 25);
+                writeBigEndian(value, 2);
+            } else if (value < 0x100000000L) {
+                out.write(type | 26);
+                writeBigEndian(value, 4);
+            } else {
+                out.write(type | 27);
+                writeBigEndian(value, 8);
+            }
+            return this;
+        }
+
+        private void writeBigEndian(long value, int length) throws IOException {
+            for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+        }
+    }
+
+    /**
+     * Decodes a single CBOR item that makes up the whole input
+     *
+     * @param data The encoded item
+     * @return The item as a {@link Long}, {@code byte[]}, {@link String}, {@link List}, {@link Map} with insertion
+     * ordered keys, {@link Boolean} or null
+     * @throws IllegalArgumentException If the input is not well-formed CBOR in the supported subset, or has
+     * trailing bytes
+     */
+    public static Object decode(byte[] data) {
+        Decoder decoder = new Decoder(data);
+        Object item = decoder.item(0);
+        if (decoder.position != data.length) {
+            throw new IllegalArgumentException("CBOR has " + (data.length - decoder.position) + " trailing bytes");
+        }
+        return item;
+    }
+
+    private static final class Decoder {
+        private final byte[] data;
+        private int position;
+
+        private Decoder(byte[] data) {
+            this.data = data;
+        }
+
+        private Object item(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("CBOR nested more than " + MAX_DEPTH + " deep");
+            }
+            int initial = next();
+            int major = initial >>> 5;
+            int info = initial & 0x1F;
+            if (major == SIMPLE) {
+                return switch (info) {
+                    case FALSE -> false;
+                    case TRUE -> true;
+                    case NULL -> null;
+                    default -> throw new IllegalArgumentException("Unsupported CBOR simple value or float: " + info);
+                };
+            }
+            long argument = argument(info);
+            return switch (major) {
+                case UNSIGNED -> requireLong(argument);
+                case NEGATIVE -> -1 - requireLong(argument);
+                case BYTES -> take(length(argument));
+                case TEXT -> utf8(take(length(argument)));
+                case ARRAY -> {
+                    int size = length(argument);
+                    List<Object> items = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        items.add(item(depth + 1));
+                    }
+                    yield items;
+                }
+                case MAP -> {
+                    int size = length(argument);
+                    Map<Object, Object> entries = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        Object key = item(depth + 1);
+                        if (key instanceof byte[] || key instanceof List || key instanceof Map) {
+                            throw new IllegalArgumentException("Unsupported CBOR map key type");
+                        }
+                        if (entries.containsKey(key)) {
+                            throw new IllegalArgumentException("Duplicate CBOR map key: " + key);
+                        }
+                        entries.put(key, item(depth + 1));
+                    }
+                    yield entries;
+                }
+                default -> throw new IllegalArgumentException("Unsupported CBOR tag");
+            };
+        }
+
+        private long argument(int info) {
+            if (info < 24) {
+                return info;
+            }
+            int length = switch (info) {
+                case 24 -> 1;
+                case 25 -> 2;
+                case 26 -> 4;
+                case 27 -> 8;
+                default -> throw new IllegalArgumentException("Unsupported CBOR length encoding: " + info);
+            };
+            long value = 0;
+            for (int i = 0; i < length; i++) {
+                value = value << 8 | next();
+            }
+            return value;
+        }
+
+        /**
+         * Checks a length against the bytes left, so a corrupt length cannot trigger a huge allocation
+         */
+        private int length(long argument) {
+            if (argument < 0 || argument > data.length - position) {
+                throw new IllegalArgumentException("CBOR length " + Long.toUnsignedString(argument)
+                    + " runs past the end of the input");
+            }
+            return (int) argument;
+        }
+
+        private long requireLong(long argument) {
+            if (argument < 0) {
+                throw new IllegalArgumentException("CBOR integer out of range: " + Long.toUnsignedString(argument));
+            }
+            return argument;
+        }
+
+        private int next() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("CBOR ends mid-item");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        private byte[] take(int length) {
+            byte[] bytes = new byte[length];
+            System.arraycopy(data, position, bytes, 0, length);
+            position += length;
+            return bytes;
+        }
+
+        private static String utf8(byte[] bytes) {
+            try {
+                return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+            } catch (CharacterCodingException e) {
+                throw new IllegalArgumentException("CBOR text is not valid UTF-8");
+            }
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package io.swyftx.jwk;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.ExtendedKeyUsage;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyPurposeId;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.ProviderException;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Issues X509 certificates for keys, either self-signed or signed by a local CA that is loaded once. Certificates
+ * get random 159-bit serial numbers and a configurable validity. Signers are cached per thread, so signing many
+ * certificates in parallel does not rebuild a signer per certificate.
+ */
+public class CertificateIssuer {
+    public static final Duration DEFAULT_VALIDITY = Duration.ofDays(300);
+
+    private static final int SERIAL_BITS = 159;
+    private static final SecureRandom SERIAL_RANDOM = new SecureRandom();
+
+    private final Duration validity;
+    private final PrivateKey caKey;
+    private final X509Certificate caCert;
+    private final String caSignatureAlgorithm;
+    private final Provider caSignatureProvider;
+
+    /**
+     * Signers for the CA key, which is the same for every certificate, so each thread builds its own once
+     */
+    private final ThreadLocal<ContentSigner> caSigner;
+
+    /**
+     * Signer builders and extension helpers, which are costly to set up and reusable across keys
+     */
+    private static final ThreadLocal<Map<String, JcaContentSignerBuilder>> SIGNER_BUILDERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<JcaX509ExtensionUtils> EXTENSION_UTILS = ThreadLocal.withInitial(() -> {
+        try {
+            return new JcaX509ExtensionUtils();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Unable to create certificate extension helper: " + e.getMessage(), e);
+        }
+    });
+    private static final ThreadLocal<JcaX509CertificateConverter> CONVERTER = ThreadLocal.withInitial(JcaX509CertificateConverter::new);
+
+    private CertificateIssuer(Duration validity, PrivateKey caKey, X509Certificate caCert) {
+        this.validity = validity;
+        this.caKey = caKey;
+        this.caCert = caCert;
+        this.caSignatureAlgorithm = caKey != null ? signatureAlgorithm(caCert.getPublicKey()) : null;
+        this.caSignatureProvider = caKey != null && !jdkCanSign(caSignatureAlgorithm, caKey) ? CryptoProviders.bouncyCastle() : null;
+        this.caSigner = ThreadLocal.withInitial(() -> caKey != null ? signer(caSignatureAlgorithm, caKey, caSignatureProvider) : null);
+    }
+
+    /**
+     * Creates an issuer that signs each certificate with the key it certifies
+     *
+     * @param validity How long issued certificates are valid for
+     * @return The issuer
+     */
+    public static CertificateIssuer selfSigned(Duration validity) {
+        return new CertificateIssuer(validity, null, null);
+    }
+
+    /**
+     * Creates an issuer that signs certificates with a CA key
+     *
+     * @param caKey The CA private key
+     * @param caCert The CA certificate
+     * @param validity How long issued certificates are valid for
+     * @return The issuer
+     */
+    public static CertificateIssuer withCa(PrivateKey caKey, X509Certificate caCert, Duration validity) {
+        return new CertificateIssuer(validity, caKey, caCert);
+    }
+
+    /**
+     * Loads a CA from PEM files and creates an issuer for it
+     *
+     * @param caKeyFile PEM file holding the CA private key, as PKCS#8 or a traditional RSA/EC key
+     * @param caCertFile PEM file holding the CA certificate
+     * @param validity How long issued certificates are valid for
+     * @return The issuer
+     * @throws IOException If either file could not be read or parsed
+     */
+    public static CertificateIssuer loadCa(Path caKeyFile, Path caCertFile, Duration validity) throws IOException {
+        PrivateKey caKey;
+        try (Reader reader = Files.newBufferedReader(caKeyFile); PEMParser parser = new PEMParser(reader)) {
+            JcaPEMKeyConverter converter = new JcaPEMKeyConverter();
+            Object pem = parser.readObject();
+            caKey = switch (pem) {
+                case PEMKeyPair keyPair -> converter.getPrivateKey(keyPair.getPrivateKeyInfo());
+                case PrivateKeyInfo keyInfo -> converter.getPrivateKey(keyInfo);
+                case null, default -> throw new IOException("No unencrypted private key found in " + caKeyFile);
+            };
+        }
+
+        try (InputStream in = Files.newInputStream(caCertFile)) {
+            X509Certificate caCert = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+            return withCa(caKey, caCert, validity);
+        } catch (CertificateException e) {
+            throw new IOException("Invalid CA certificate in " + caCertFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Issues a certificate for a JWK, using its kid (or thumbprint) as the subject CN
+     *
+     * @param jwk The key to certify, which must include its private part when self-signing
+     * @return The certificate
+     */
+    public X509Certificate issue(JWK jwk) {
+        try {
+            String subject = jwk.getKeyID() != null ? jwk.getKeyID() : JwkThumbprint.compute(jwk);
+            PrivateKey priv = caKey == null ? KeyWriter.toPrivateKey(jwk) : null;
+            return issue(KeyWriter.toPublicKey(jwk), priv, subject);
+        } catch (JOSEException e) {
+            throw new IllegalArgumentException("Error extracting keypair for X509: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Issues a certificate for a public key
+     *
+     * @param pub The key to certify
+     * @param priv The matching private key, used to sign when self-signing and ignored otherwise
+     * @param subjectCN The subject common name
+     * @return The certificate
+     */
+    public X509Certificate issue(PublicKey pub, PrivateKey priv, String subjectCN) {
+        X500Name subject = new X500Name("CN=" + URLEncoder.encode(subjectCN, StandardCharsets.UTF_8));
+        Instant notBefore = Instant.now();
+        Date start = Date.from(notBefore);
+        Date end = Date.from(notBefore.plus(validity));
+
+        try {
+            if (caKey == null) {
+                JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject, serialNumber(), start, end, subject, pub);
+                return CONVERTER.get().getCertificate(builder.build(signer(signatureAlgorithm(pub), priv, null)));
+            }
+
+            // a certificate can't usefully outlive the CA that signed it
+            if (end.after(caCert.getNotAfter())) {
+                end = caCert.getNotAfter();
+            }
+            X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(caCert, serialNumber(), start, end, subject, pub);
+            JcaX509ExtensionUtils extensions = EXTENSION_UTILS.get();
+            builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(false))
+                .addExtension(Extension.keyUsage, true, new KeyUsage(pub.getAlgorithm().equals("RSA")
+                    ? KeyUsage.digitalSignature | KeyUsage.keyEncipherment
+                    : KeyUsage.digitalSignature))
+                .addExtension(Extension.extendedKeyUsage, false,
+                    new ExtendedKeyUsage(new KeyPurposeId[]{KeyPurposeId.id_kp_serverAuth, KeyPurposeId.id_kp_clientAuth}))
+                .addExtension(Extension.subjectKeyIdentifier, false, extensions.createSubjectKeyIdentifier(pub))
+                .addExtension(Extension.authorityKeyIdentifier, false, extensions.createAuthorityKeyIdentifier(caCert));
+            return CONVERTER.get().getCertificate(builder.build(caSigner.get()));
+        } catch (CertificateException | CertIOException e) {
+            throw new IllegalArgumentException("Unable to create certificate: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Issues certificates for many keys in parallel across all available cores
+     *
+     * @param jwks The keys to certify
+     * @return The certificates, in the same order as the keys
+     */
+    public List<Issued> issueAll(List<JWK> jwks) {
+        if (jwks.isEmpty()) {
+            return List.of();
+        }
+        int workers = Math.min(jwks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Issued>> futures = new ArrayList<>(jwks.size());
+            for (JWK jwk : jwks) {
+                futures.add(executor.submit(() -> new Issued(jwk, issue(jwk))));
+            }
+            List<Issued> issued = new ArrayList<>(jwks.size());
+            for (Future<Issued> future : futures) {
+                issued.add(future.get());
+            }
+            return issued;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Certificate issuance was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Certificate issuance failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes each certificate with its chain to {@code <kid>.crt} and its private key to {@code <kid>.key}, readable
+     * only by the owner. Kids are made safe as file names first: standard Base64 becomes base64url, and any other
+     * character outside {@code [A-Za-z0-9._-]} becomes {@code _}.
+     *
+     * @param dir The directory to write to, created if missing
+     * @param issued The certificates to write
+     * @throws IOException If a file could not be written
+     */
+    public void writePemChains(Path dir, List<Issued> issued) throws IOException {
+        Files.createDirectories(dir);
+        Set<String> names = new HashSet<>();
+        for (Issued entry : issued) {
+            String name = fileName(entry.jwk().getKeyID() != null ? entry.jwk().getKeyID() : JwkThumbprint.compute(entry.jwk()));
+            if (!names.add(name)) {
+                // two kids that only differ in unsafe characters, fall back to the thumbprint, which is already safe
+                name = JwkThumbprint.compute(entry.jwk());
+                names.add(name);
+            }
+            Path certFile = dir.resolve(name + ".crt");
+            Files.writeString(certFile, pemChain(entry.certificate()));
+
+            Path keyFile = dir.resolve(name + ".key");
+            Files.deleteIfExists(keyFile);
+            createOwnerOnly(keyFile);
+            Files.writeString(keyFile, KeyWriter.privateKeyToString(entry.jwk()));
+        }
+    }
+
+    /**
+     * @param kid A kid
+     * @return The kid with standard Base64 mapped to base64url and other unsafe characters replaced
+     */
+    static String fileName(String kid) {
+        StringBuilder name = new StringBuilder(kid.length());
+        for (int i = 0; i < kid.length(); i++) {
+            char c = kid.charAt(i);
+            if (c == '+') {
+                name.append('-');
+            } else if (c == '/') {
+                name.append('_');
+            } else if (c == '=') {
+                // Base64 padding
+                continue;
+            } else if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '_') {
+                name.append(c);
+            } else {
+                name.append('_');
+            }
+        }
+        // never a hidden, relative or empty name
+        return name.isEmpty() || name.charAt(0) == '.' ? "_" + name : name.toString();
+    }
+
+    /**
+     * Creates an empty file readable and writable only by its owner, with POSIX permissions where the file system has
+     * them and owner-only access flags elsewhere
+     *
+     * @param file The file to create
+     * @throws IOException If the file could not be created
+     */
+    private static void createOwnerOnly(Path file) throws IOException {
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(file);
+            File plain = file.toFile();
+            boolean restricted = plain.setReadable(false, false) && plain.setReadable(true, true)
+                && plain.setWritable(false, false) && plain.setWritable(true, true);
+            if (!restricted) {
+                System.err.println("Unable to restrict access to " + file + " to its owner");
+            }
+        }
+    }
+
+    /**
+     * Encodes a certificate followed by the CA certificate, if there is one, as PEM
+     *
+     * @param certificate The leaf certificate
+     * @return The PEM chain
+     */
+    public String pemChain(X509Certificate certificate) {
+        try {
+            StringWriter out = new StringWriter(2048);
+            writePem(out, certificate);
+            if (caCert != null) {
+                writePem(out, caCert);
+            }
+            return out.toString();
+        } catch (IOException | CertificateEncodingException e) {
+            throw new IllegalArgumentException("Error creating PEM format: " + e.getMessage());
+        }
+    }
+
+    private static void writePem(Writer out, X509Certificate certificate) throws IOException, CertificateEncodingException {
+        PemWriter pemWriter = new PemWriter(out);
+        pemWriter.writeObject(new PemObject("CERTIFICATE", certificate.getEncoded()));
+        pemWriter.flush();
+    }
+
+    /**
+     * @return A random positive serial number of at most 159 bits, within the 20 octets RFC 5280 allows
+     */
+    static BigInteger serialNumber() {
+        BigInteger serial;
+        do {
+            serial = new BigInteger(SERIAL_BITS, SERIAL_RANDOM);
+        } while (serial.signum() == 0);
+        return serial;
+    }
+
+    /**
+     * Creates a signer
+     *
+     * @param algorithm The JCA signature algorithm name
+     * @param key The signing key
+     * @param provider The provider to sign with, or null for the default JCA provider lookup
+     * @return The signer
+     */
+    private static ContentSigner signer(String algorithm, PrivateKey key, Provider provider) {
+        try {
+            JcaContentSignerBuilder builder = provider == null
+                ? SIGNER_BUILDERS.get().computeIfAbsent(algorithm, JcaContentSignerBuilder::new)
+                : new JcaContentSignerBuilder(algorithm).setProvider(provider);
+            return builder.build(key);
+        } catch (OperatorCreationException e) {
+            throw new IllegalArgumentException("Unable to create certificate signer: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks whether the JDK providers can sign with a key. Keys on curves the JDK no longer implements, such as
+     * Brainpool, are accepted by initSign and only fail when signing, so this signs a byte.
+     *
+     * @param algorithm The JCA signature algorithm name
+     * @param key The signing key
+     * @return true if a signature could be made without BouncyCastle
+     */
+    private static boolean jdkCanSign(String algorithm, PrivateKey key) {
+        try {
+            Signature signature = Signature.getInstance(algorithm);
+            signature.initSign(key);
+            signature.update((byte) 0);
+            signature.sign();
+            return true;
+        } catch (GeneralSecurityException | ProviderException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Picks the certificate signature algorithm for a signing key
+     *
+     * @param key The public half of the signing key
+     * @return The JCA signature algorithm name
+     */
+    static String signatureAlgorithm(PublicKey key) {
+        switch (key.getAlgorithm()) {
+            case "RSA":
+                return "SHA256withRSA";
+            case "EC":
+            case "ECDSA":
+                int fieldSize = ((ECPublicKey) key).getParams().getCurve().getField().getFieldSize();
+                return fieldSize > 384 ? "SHA512withECDSA" : fieldSize > 256 ? "SHA384withECDSA" : "SHA256withECDSA";
+            case "Ed25519":
+            case "EdDSA":
+                return "Ed25519";
+            default:
+                throw new IllegalArgumentException("Key type cannot sign X509 certificates: " + key.getAlgorithm());
+        }
+    }
+
+    /**
+     * A certificate issued for a key
+     *
+     * @param jwk The certified key
+     * @param certificate The certificate
+     */
+    public record Issued(JWK jwk, X509Certificate certificate) {
+    }
+}
@@ -0,0 +1,217 @@
+package io.swyftx.jwk;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Hashes of secret data kept in a secret's custom metadata, so a write can tell that Vault already holds the same
+ * data without reading the secret back. A record names the version it describes, and only matches while that is still
+ * the current version, so a write made by anything else invalidates it.
+ *
+ * <p>Custom metadata is often readable more widely than the data, so the hash is an HMAC keyed with a local key that
+ * never leaves this machine, and a metadata reader cannot test guesses against it. The MAC also covers the mount and
+ * path, so equal secrets at different paths get different records. The key is read from the file named by
+ * {@code JWK_TO_VAULT_CONTENT_KEY_FILE}, or {@code ~/.jwk-to-vault-content-key}, and created owner-only on first use.
+ * A client holding a different key never matches a record, so its writes go ahead and re-record the hash.</p>
+ */
+final class ContentHash {
+    static final String METADATA_KEY = "jwk-to-vault-content";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int KEY_BYTES = 32;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static volatile SecretKeySpec key;
+
+    private ContentHash() {
+    }
+
+    /**
+     * Loads the local key, creating it if there is none yet, so a missing or unreadable key is found before any write
+     *
+     * @throws IllegalStateException If the key file could not be read or created
+     */
+    static void loadKey() {
+        key();
+    }
+
+    /**
+     * @param version The version the data was written as
+     * @param secretPath The mount and path the data was written to
+     * @param secretData The data
+     * @return The record to store under {@link #METADATA_KEY}, as {@code <version>:<hmac>}
+     * @throws IllegalStateException If the key file could not be read or created
+     */
+    static String record(int version, String secretPath, Map<String, Object> secretData) {
+        return version + ":" + ENCODER.encodeToString(hmac(secretPath, secretData));
+    }
+
+    /**
+     * @param record A record from the secret's custom metadata, may be null
+     * @param currentVersion The secret's current version
+     * @param secretPath The mount and path the data is about to be written to
+     * @param secretData The data about to be written
+     * @return true if the record describes the current version and that version holds the same data
+     * @throws IllegalStateException If the key file could not be read or created
+     */
+    static boolean matches(String record, int currentVersion, String secretPath, Map<String, Object> secretData) {
+        if (record == null) {
+            return false;
+        }
+        String[] parts = record.split(":");
+        if (parts.length != 2 || !parts[0].equals(String.valueOf(currentVersion))) {
+            return false;
+        }
+        try {
+            return MessageDigest.isEqual(Base64.getUrlDecoder().decode(parts[1]), hmac(secretPath, secretData));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * MACs the path, then the data as compact JSON with map keys sorted, so the same data always hashes the same
+     * however its maps are ordered. {@link SecretBytes} values hash like the strings they hold, without becoming
+     * Strings.
+     */
+    private static byte[] hmac(String secretPath, Map<String, Object> secretData) {
+        try (SecretBytes canonical = SecretJsonWriter.toJson(sorted(secretData))) {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key());
+            mac.update(secretPath.getBytes(StandardCharsets.UTF_8));
+            // the path cannot hold a NUL, so it cannot run into the data
+            mac.update((byte) 0);
+            mac.update(canonical.contents());
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static SecretKeySpec key() {
+        SecretKeySpec loaded = key;
+        if (loaded == null) {
+            synchronized (ContentHash.class) {
+                loaded = key;
+                if (loaded == null) {
+                    loaded = readOrCreateKey(keyFile());
+                    key = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    private static Path keyFile() {
+        String file = System.getenv("JWK_TO_VAULT_CONTENT_KEY_FILE");
+        if (file != null && !file.isBlank()) {
+            return Path.of(file);
+        }
+        return Path.of(System.getProperty("user.home"), ".jwk-to-vault-content-key");
+    }
+
+    /**
+     * Reads the key file, or creates it with a random key if it does not exist
+     */
+    private static SecretKeySpec readOrCreateKey(Path file) {
+        byte[] bytes = null;
+        try {
+            if (!Files.exists(file)) {
+                createKey(file);
+            }
+            byte[] encoded = Files.readAllBytes(file);
+            try {
+                bytes = Base64.getUrlDecoder().decode(new String(encoded, StandardCharsets.US_ASCII).trim());
+            } finally {
+                Arrays.fill(encoded, (byte) 0);
+            }
+            if (bytes.length < KEY_BYTES) {
+                throw new IllegalStateException("Content hash key in " + file + " is shorter than " + KEY_BYTES
+                    + " bytes");
+            }
+            return new SecretKeySpec(bytes, ALGORITHM);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read or create the content hash key " + file + ": "
+                + e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Content hash key in " + file + " is not base64url", e);
+        } finally {
+            if (bytes != null) {
+                Arrays.fill(bytes, (byte) 0);
+            }
+        }
+    }
+
+    /**
+     * Writes a random key beside the key file and moves it into place, so a run starting at the same time never reads
+     * a partly written key. If another run got there first, its key is kept.
+     */
+    private static void createKey(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        byte[] fresh = new byte[KEY_BYTES];
+        byte[] encoded = null;
+        try {
+            new SecureRandom().nextBytes(fresh);
+            encoded = ENCODER.encode(fresh);
+            Files.deleteIfExists(temp);
+            createOwnerOnly(temp);
+            Files.write(temp, encoded);
+            Files.move(temp, file);
+        } catch (FileAlreadyExistsException e) {
+            // another run created it first
+        } finally {
+            Arrays.fill(fresh, (byte) 0);
+            if (encoded != null) {
+                Arrays.fill(encoded, (byte) 0);
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void createOwnerOnly(Path file) throws IOException {
+        try {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            Files.createFile(file);
+            File plain = file.toFile();
+            boolean restricted = plain.setReadable(false, false) && plain.setReadable(true, true)
+                && plain.setWritable(false, false) && plain.setWritable(true, true);
+            if (!restricted) {
+                System.err.println("Unable to restrict access to " + file + " to its owner");
+            }
+        }
+    }
+
+    private static Object sorted(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((key, item) -> sorted.put(String.valueOf(key), sorted(item)));
+            return sorted;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> items = new ArrayList<>(list.size());
+            list.forEach(item -> items.add(sorted(item)));
+            return items;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,486 @@
+package io.swyftx.jwk;
+
+import com.google.common.collect.ImmutableBiMap;
+import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyOperation;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts JWKs to and from COSE_Key (RFC 9052, with RFC 9053 and RFC 8230 key parameters), the CBOR key format for
+ * constrained clients. A COSE_KeySet is a CBOR array of keys. Keys are written with deterministic encoding, labels in
+ * ascending order, so the same key always encodes to the same bytes.
+ *
+ * <p>COSE has no {@code use} parameter, so a JWK's use is written as the key_ops it implies and read back from them.
+ * JOSE algorithms without a registered COSE number, such as ECDH-ES, are written by name.</p>
+ */
+public final class CoseKey {
+    private static final int KTY = 1;
+    private static final int KID = 2;
+    private static final int ALG = 3;
+    private static final int KEY_OPS = 4;
+
+    // EC2 and OKP parameters; symmetric keys use -1 for k
+    private static final int CRV = -1;
+    private static final int X = -2;
+    private static final int Y = -3;
+    private static final int D = -4;
+    private static final int K = -1;
+
+    // RSA parameters, from RFC 8230
+    private static final int RSA_N = -1;
+    private static final int RSA_E = -2;
+    private static final int RSA_D = -3;
+    private static final int RSA_P = -4;
+    private static final int RSA_Q = -5;
+    private static final int RSA_DP = -6;
+    private static final int RSA_DQ = -7;
+    private static final int RSA_QI = -8;
+
+    private static final ImmutableBiMap<KeyType, Integer> KEY_TYPES = ImmutableBiMap.of(
+        KeyType.OKP, 1,
+        KeyType.EC, 2,
+        KeyType.RSA, 3,
+        KeyType.OCT, 4
+    );
+
+    private static final ImmutableBiMap<Curve, Integer> CURVES = ImmutableBiMap.<Curve, Integer>builder()
+        .put(Curve.P_256, 1)
+        .put(Curve.P_384, 2)
+        .put(Curve.P_521, 3)
+        .put(Curve.X25519, 4)
+        .put(Curve.X448, 5)
+        .put(Curve.Ed25519, 6)
+        .put(Curve.Ed448, 7)
+        .build();
+
+    private static final ImmutableBiMap<String, Integer> ALGORITHMS = ImmutableBiMap.<String, Integer>builder()
+        .put("ES256", -7)
+        .put("ES384", -35)
+        .put("ES512", -36)
+        .put("EdDSA", -8)
+        .put("PS256", -37)
+        .put("PS384", -38)
+        .put("PS512", -39)
+        .put("RS256", -257)
+        .put("RS384", -258)
+        .put("RS512", -259)
+        .put("RSA-OAEP", -40)
+        .put("RSA-OAEP-256", -41)
+        .put("HS256", 5)
+        .put("HS384", 6)
+        .put("HS512", 7)
+        .put("A128KW", -3)
+        .put("A192KW", -4)
+        .put("A256KW", -5)
+        .put("dir", -6)
+        .build();
+
+    private static final ImmutableBiMap<KeyOperation, Integer> KEY_OPERATIONS = ImmutableBiMap.<KeyOperation, Integer>builder()
+        .put(KeyOperation.SIGN, 1)
+        .put(KeyOperation.VERIFY, 2)
+        .put(KeyOperation.ENCRYPT, 3)
+        .put(KeyOperation.DECRYPT, 4)
+        .put(KeyOperation.WRAP_KEY, 5)
+        .put(KeyOperation.UNWRAP_KEY, 6)
+        .put(KeyOperation.DERIVE_KEY, 7)
+        .put(KeyOperation.DERIVE_BITS, 8)
+        .build();
+
+    private CoseKey() {
+    }
+
+    /**
+     * Encodes a single key
+     *
+     * @param jwk The key to encode
+     * @param publicOnly If true, encode only the public half of the key
+     * @return The COSE_Key, or null if publicOnly was requested for a key with no public half
+     */
+    public static byte[] toBytes(JWK jwk, boolean publicOnly) {
+        JWK key = publicOnly ? jwk.toPublicJWK() : jwk;
+        if (key == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            write(key, new Cbor.Encoder(out));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Metrics.ENCODING.observeSince(start, "cose_key");
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a COSE_KeySet
+     *
+     * @param jwks The keys in the set
+     * @param publicOnly If true, encode only the public halves, omitting symmetric keys entirely
+     * @return The COSE_KeySet
+     */
+    public static byte[] toKeySetBytes(List<JWK> jwks, boolean publicOnly) {
+        long start = System.nanoTime();
+        List<JWK> keys = new ArrayList<>(jwks.size());
+        for (JWK jwk : jwks) {
+            JWK key = publicOnly ? jwk.toPublicJWK() : jwk;
+            if (key != null) {
+                keys.add(key);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * Math.max(1, keys.size()));
+        try {
+            Cbor.Encoder cbor = new Cbor.Encoder(out);
+            cbor.array(keys.size());
+            for (JWK key : keys) {
+                write(key, cbor);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Metrics.ENCODING.observeSince(start, "cose_key_set");
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes a full key, private half included, as base64url text straight into secret bytes for storing in Vault.
+     * The CBOR is built in secret bytes too, and the scratch arrays the encoding passes through are zeroed.
+     *
+     * @param jwk The key to encode
+     * @return The base64url COSE_Key without padding, owned by the caller, who must close it
+     */
+    public static SecretBytes toSecretBytes(JWK jwk) {
+        long start = System.nanoTime();
+        try (SecretBytes cbor = SecretBytes.allocate()) {
+            write(jwk, new Cbor.Encoder(cbor.outputStream()));
+            SecretBytes text = SecretBytes.allocate();
+            ByteBuffer contents = cbor.contents();
+            byte[] chunk = new byte[48];
+            Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+            while (contents.hasRemaining()) {
+                int length = Math.min(chunk.length, contents.remaining());
+                contents.get(chunk, 0, length);
+                ByteBuffer encoded = encoder.encode(ByteBuffer.wrap(chunk, 0, length));
+                text.append(encoded.array(), 0, encoded.limit());
+                Arrays.fill(encoded.array(), (byte) 0);
+            }
+            Arrays.fill(chunk, (byte) 0);
+            Metrics.ENCODING.observeSince(start, "cose_key");
+            return text;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a key as a COSE_Key map
+     *
+     * @param jwk The key to write, private half included if present
+     * @param cbor The encoder to write to
+     * @throws IOException If the encoder's stream could not be written
+     */
+    public static void write(JWK jwk, Cbor.Encoder cbor) throws IOException {
+        Integer keyType = KEY_TYPES.get(jwk.getKeyType());
+        if (keyType == null) {
+            throw new IllegalArgumentException("Unsupported key type for COSE_Key: " + jwk.getKeyType());
+        }
+        List<Field> fields = new ArrayList<>(12);
+        fields.add(new Field(KTY, (long) keyType));
+        if (jwk.getKeyID() != null) {
+            fields.add(new Field(KID, jwk.getKeyID().getBytes(StandardCharsets.UTF_8)));
+        }
+        if (jwk.getAlgorithm() != null) {
+            Integer alg = ALGORITHMS.get(jwk.getAlgorithm().getName());
+            fields.add(new Field(ALG, alg != null ? (Object) (long) alg : jwk.getAlgorithm().getName()));
+        }
+        Set<KeyOperation> keyOps = keyOperations(jwk);
+        if (!keyOps.isEmpty()) {
+            fields.add(new Field(KEY_OPS, keyOps.stream().map(op -> (long) KEY_OPERATIONS.get(op)).sorted().toList()));
+        }
+
+        switch (jwk) {
+            case ECKey ec -> {
+                fields.add(new Field(CRV, (long) curve(ec.getCurve())));
+                fields.add(new Field(X, decode(ec.getX())));
+                fields.add(new Field(Y, decode(ec.getY())));
+                addIfPresent(fields, D, ec.getD());
+            }
+            case OctetKeyPair okp -> {
+                fields.add(new Field(CRV, (long) curve(okp.getCurve())));
+                fields.add(new Field(X, decode(okp.getX())));
+                addIfPresent(fields, D, okp.getD());
+            }
+            case RSAKey rsa -> {
+                fields.add(new Field(RSA_N, decode(rsa.getModulus())));
+                fields.add(new Field(RSA_E, decode(rsa.getPublicExponent())));
+                addIfPresent(fields, RSA_D, rsa.getPrivateExponent());
+                addIfPresent(fields, RSA_P, rsa.getFirstPrimeFactor());
+                addIfPresent(fields, RSA_Q, rsa.getSecondPrimeFactor());
+                addIfPresent(fields, RSA_DP, rsa.getFirstFactorCRTExponent());
+                addIfPresent(fields, RSA_DQ, rsa.getSecondFactorCRTExponent());
+                addIfPresent(fields, RSA_QI, rsa.getFirstCRTCoefficient());
+            }
+            case OctetSequenceKey oct -> fields.add(new Field(K, oct.toByteArray()));
+            default -> throw new IllegalArgumentException("Unsupported key type for COSE_Key: " + jwk.getKeyType());
+        }
+
+        try {
+            cbor.map(fields.size());
+            for (Field field : fields) {
+                cbor.integer(field.label());
+                switch (field.value()) {
+                    case Long number -> cbor.integer(number);
+                    case byte[] bytes -> cbor.bytes(bytes);
+                    case String text -> cbor.text(text);
+                    case List<?> items -> {
+                        cbor.array(items.size());
+                        for (Object item : items) {
+                            cbor.integer((Long) item);
+                        }
+                    }
+                    default -> throw new IllegalStateException("Unexpected COSE_Key value: " + field.value().getClass());
+                }
+            }
+        } finally {
+            for (Field field : fields) {
+                if (field.value() instanceof byte[] bytes) {
+                    Arrays.fill(bytes, (byte) 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a single key
+     *
+     * @param cbor The COSE_Key
+     * @return The key
+     * @throws ParseException If the input is not a COSE_Key for a supported key type
+     */
+    public static JWK parse(byte[] cbor) throws ParseException {
+        long start = System.nanoTime();
+        try {
+            JWK jwk = toJWK(Cbor.decode(cbor));
+            Metrics.ENCODING.observeSince(start, "cose_key_parse");
+            return jwk;
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid COSE_Key: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Decodes a COSE_KeySet
+     *
+     * @param cbor The COSE_KeySet
+     * @return The keys, in order
+     * @throws ParseException If the input is not a COSE_KeySet, or any key in it is invalid
+     */
+    public static List<JWK> parseKeySet(byte[] cbor) throws ParseException {
+        long start = System.nanoTime();
+        try {
+            if (!(Cbor.decode(cbor) instanceof List<?> items)) {
+                throw new IllegalArgumentException("not a CBOR array");
+            }
+            List<JWK> jwks = new ArrayList<>(items.size());
+            for (Object item : items) {
+                jwks.add(toJWK(item));
+            }
+            Metrics.ENCODING.observeSince(start, "cose_key_set_parse");
+            return jwks;
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid COSE_KeySet: " + e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Decodes a key stored in Vault by {@link #toSecretBytes}
+     *
+     * @param base64Url The base64url COSE_Key
+     * @return The key
+     * @throws ParseException If the text is not base64url, or not a valid COSE_Key
+     */
+    public static JWK parseBase64Url(String base64Url) throws ParseException {
+        byte[] cbor;
+        try {
+            cbor = Base64.getUrlDecoder().decode(base64Url);
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid COSE_Key: not base64url", 0);
+        }
+        try {
+            return parse(cbor);
+        } finally {
+            Arrays.fill(cbor, (byte) 0);
+        }
+    }
+
+    private static JWK toJWK(Object item) {
+        if (!(item instanceof Map<?, ?> map)) {
+            throw new IllegalArgumentException("key is not a CBOR map");
+        }
+        KeyType keyType = KEY_TYPES.inverse().get(intValue(map, KTY));
+        if (keyType == null) {
+            throw new IllegalArgumentException("unsupported kty " + map.get((long) KTY));
+        }
+
+        String kid = map.get((long) KID) instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : null;
+        Algorithm alg = algorithm(map.get((long) ALG));
+        KeyUse use = map.get((long) KEY_OPS) instanceof List<?> ops ? keyUse(ops) : null;
+
+        if (KeyType.EC.equals(keyType)) {
+            return new ECKey.Builder(curve(map), bytes(map, X), bytes(map, Y))
+                .d(optionalBytes(map, D))
+                .keyID(kid).algorithm(alg).keyUse(use)
+                .build();
+        } else if (KeyType.OKP.equals(keyType)) {
+            return new OctetKeyPair.Builder(curve(map), bytes(map, X))
+                .d(optionalBytes(map, D))
+                .keyID(kid).algorithm(alg).keyUse(use)
+                .build();
+        } else if (KeyType.RSA.equals(keyType)) {
+            return new RSAKey.Builder(bytes(map, RSA_N), bytes(map, RSA_E))
+                .privateExponent(optionalBytes(map, RSA_D))
+                .firstPrimeFactor(optionalBytes(map, RSA_P))
+                .secondPrimeFactor(optionalBytes(map, RSA_Q))
+                .firstFactorCRTExponent(optionalBytes(map, RSA_DP))
+                .secondFactorCRTExponent(optionalBytes(map, RSA_DQ))
+                .firstCRTCoefficient(optionalBytes(map, RSA_QI))
+                .keyID(kid).algorithm(alg).keyUse(use)
+                .build();
+        }
+        return new OctetSequenceKey.Builder(bytes(map, K))
+            .keyID(kid).algorithm(alg).keyUse(use)
+            .build();
+    }
+
+    private static Algorithm algorithm(Object alg) {
+        if (alg instanceof Long number) {
+            String name = ALGORITHMS.inverse().get(number.intValue());
+            if (name == null) {
+                throw new IllegalArgumentException("unsupported alg " + number);
+            }
+            return new Algorithm(name);
+        }
+        return alg instanceof String name ? new Algorithm(name) : null;
+    }
+
+    /**
+     * The key_ops a JWK's own key_ops or use allow: signing keys sign and verify, encryption keys decrypt and unwrap
+     * with the private half, encrypt and wrap with the public half, or derive with an ECDH curve
+     */
+    private static Set<KeyOperation> keyOperations(JWK jwk) {
+        if (jwk.getKeyOperations() != null) {
+            return jwk.getKeyOperations();
+        }
+        boolean isPrivate = jwk.isPrivate();
+        if (KeyUse.SIGNATURE.equals(jwk.getKeyUse())) {
+            return isPrivate ? EnumSet.of(KeyOperation.SIGN, KeyOperation.VERIFY) : EnumSet.of(KeyOperation.VERIFY);
+        }
+        if (KeyUse.ENCRYPTION.equals(jwk.getKeyUse())) {
+            if (jwk instanceof ECKey || jwk instanceof OctetKeyPair) {
+                return EnumSet.of(KeyOperation.DERIVE_KEY, KeyOperation.DERIVE_BITS);
+            }
+            if (jwk instanceof OctetSequenceKey) {
+                return EnumSet.of(KeyOperation.ENCRYPT, KeyOperation.DECRYPT, KeyOperation.WRAP_KEY, KeyOperation.UNWRAP_KEY);
+            }
+            return isPrivate ? EnumSet.of(KeyOperation.DECRYPT, KeyOperation.UNWRAP_KEY)
+                : EnumSet.of(KeyOperation.ENCRYPT, KeyOperation.WRAP_KEY);
+        }
+        return Set.of();
+    }
+
+    private static KeyUse keyUse(List<?> ops) {
+        if (ops.isEmpty()) {
+            return null;
+        }
+        for (Object op : ops) {
+            if (!(op instanceof Long number) || !KEY_OPERATIONS.containsValue(number.intValue())) {
+                throw new IllegalArgumentException("unsupported key_ops value " + op);
+            }
+        }
+        return ops.contains((long) KEY_OPERATIONS.get(KeyOperation.SIGN))
+            || ops.contains((long) KEY_OPERATIONS.get(KeyOperation.VERIFY)) ? KeyUse.SIGNATURE : KeyUse.ENCRYPTION;
+    }
+
+    private static int curve(Curve curve) {
+        Integer crv = CURVES.get(curve);
+        if (crv == null) {
+            throw new IllegalArgumentException("Unsupported curve for COSE_Key: " + curve);
+        }
+        return crv;
+    }
+
+    private static Curve curve(Map<?, ?> map) {
+        Curve curve = CURVES.inverse().get(intValue(map, CRV));
+        if (curve == null) {
+            throw new IllegalArgumentException("unsupported crv " + map.get((long) CRV));
+        }
+        return curve;
+    }
+
+    private static int intValue(Map<?, ?> map, int label) {
+        if (!(map.get((long) label) instanceof Long number) || number != number.intValue()) {
+            throw new IllegalArgumentException("missing or invalid integer at label " + label);
+        }
+        return number.intValue();
+    }
+
+    private static Base64URL bytes(Map<?, ?> map, int label) {
+        Base64URL value = optionalBytes(map, label);
+        if (value == null) {
+            throw new IllegalArgumentException("missing byte string at label " + label);
+        }
+        return value;
+    }
+
+    private static Base64URL optionalBytes(Map<?, ?> map, int label) {
+        Object value = map.get((long) label);
+        if (value == null) {
+            return null;
+        }
+        if (!(value instanceof byte[] bytes)) {
+            throw new IllegalArgumentException("expected a byte string at label " + label);
+        }
+        return new Base64URL(Base64.getUrlEncoder().withoutPadding().encodeToString(bytes));
+    }
+
+    private static void addIfPresent(List<Field> fields, int label, Base64URL value) {
+        if (value != null) {
+            fields.add(new Field(label, decode(value)));
+        }
+    }
+
+    /**
+     * Decodes with the JDK's codec, which is several times faster than Nimbus's own
+     */
+    private static byte[] decode(Base64URL value) {
+        return Base64.getUrlDecoder().decode(value.toString());
+    }
+
+    /**
+     * One COSE_Key parameter, collected before writing so the map size is known up front
+     */
+    private record Field(int label, Object value) {
+    }
+}
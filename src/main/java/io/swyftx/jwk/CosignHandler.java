@@ -2,9 +2,6 @@ package io.swyftx.jwk;
 
 import com.google.common.base.Strings;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,39 +19,20 @@ public class CosignHandler {
         try {
             System.out.println("Generating cosign key pair...");
 
-            // Set up environment with COSIGN_PASSWORD as empty string
-            ProcessBuilder processBuilder = new ProcessBuilder("cosign", "generate-key-pair");
-            Map<String, String> env = processBuilder.environment();
-            env.put("COSIGN_PASSWORD", "");
+            // Encrypt with an empty password, as cosign does with COSIGN_PASSWORD set to an empty string
+            long start = Timings.start();
+            CosignKeyGenerator.CosignKeyPair keyPair = new CosignKeyGenerator(new char[0]).generate();
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            Timings.record("key generation", start);
 
-            // Execute the cosign command
-            Process process = processBuilder.start();
-            int exitCode = process.waitFor();
-
-            if (exitCode != 0) {
-                throw new RuntimeException("Cosign command failed with exit code: " + exitCode);
-            }
-
-            System.out.println("Cosign key pair generated successfully");
-
-            // Read the generated files into memory
-            String privateKeyContent = new String(Files.readAllBytes(
-                    Paths.get("cosign.key")), java.nio.charset.StandardCharsets.UTF_8);
-            String publicKeyContent = new String(Files.readAllBytes(
-                    Paths.get("cosign.pub")), java.nio.charset.StandardCharsets.UTF_8);
+            System.out.println("Cosign key pair generated successfully in " + elapsedMs + "ms");
 
             // Display the public key to the terminal
             System.out.println("\nCosign Public Key:");
             System.out.println("------------------");
-            System.out.println(publicKeyContent);
+            System.out.println(keyPair.publicKey());
             System.out.println("------------------\n");
 
-            // Delete the files from the filesystem
-            Files.delete(Paths.get("cosign.key"));
-            Files.delete(Paths.get("cosign.pub"));
-
-            System.out.println("Cosign key files loaded into memory and removed from filesystem");
-
             // Store in Vault if path is provided
             if (Strings.isNullOrEmpty(options.secretPath)) {
                 System.out.println("Cosign keys discarded as no Vault path was specified");
@@ -63,9 +41,9 @@ public class CosignHandler {
                 VaultClient vaultClient = new VaultClient();
                 if (vaultClient.initialize()) {
                     Map<String, Object> secretData = new HashMap<>();
-                    secretData.put("privateKey", privateKeyContent);
+                    secretData.put("privateKey", keyPair.privateKey());
                     secretData.put("password", "");
-                    secretData.put("publicKey", publicKeyContent);
+                    secretData.put("publicKey", keyPair.publicKey());
                     boolean success = vaultClient.writeSecret(options.secretPath, secretData);
                     if (success) {
                         System.out.println("Cosign keys successfully stored in Vault at: " + options.secretPath);
@@ -76,11 +54,6 @@ public class CosignHandler {
                     System.err.println("Failed to initialize Vault client");
                 }
             }
-        } catch (IOException e) {
-            throw Options.printUsageAndExit("Failed to read cosign key files: " + e.getMessage());
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw Options.printUsageAndExit("Cosign process was interrupted: " + e.getMessage());
         } catch (Exception e) {
             throw Options.printUsageAndExit("Unexpected error during cosign key generation: " + e.getMessage());
         }
@@ -0,0 +1,229 @@
+package io.swyftx.jwk;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.bouncycastle.crypto.engines.XSalsa20Engine;
+import org.bouncycastle.crypto.generators.SCrypt;
+import org.bouncycastle.crypto.macs.Poly1305;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemReader;
+import org.bouncycastle.util.io.pem.PemWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Generates cosign compatible ECDSA P-256 key pairs in memory. The private key is PKCS#8 encrypted the way cosign
+ * does it: a secretbox (XSalsa20-Poly1305) key is derived from the password with scrypt, and the salt, nonce and
+ * ciphertext are stored as JSON inside an {@code ENCRYPTED SIGSTORE PRIVATE KEY} PEM block.
+ * <p>
+ * Scrypt is by design far slower than generating and sealing a key, so a generator derives the secretbox key once,
+ * with one random salt, and seals every key it generates with it under a fresh random nonce. Keys from one generator
+ * therefore share a salt, which is harmless as they share the password anyway.
+ */
+public class CosignKeyGenerator {
+    public static final String PRIVATE_KEY_PEM_TYPE = "ENCRYPTED SIGSTORE PRIVATE KEY";
+    public static final String PUBLIC_KEY_PEM_TYPE = "PUBLIC KEY";
+
+    /**
+     * The scrypt cost cosign uses when it generates keys
+     */
+    public static final int SCRYPT_N = 65536;
+    public static final int SCRYPT_R = 8;
+    public static final int SCRYPT_P = 1;
+
+    private static final int SALT_SIZE = 32;
+    private static final int KEY_SIZE = 32;
+    private static final int NONCE_SIZE = 24;
+    private static final int TAG_SIZE = 16;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<KeyPairGenerator> KEY_PAIR_GENERATOR = ThreadLocal.withInitial(() -> {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"), RANDOM);
+            return generator;
+        } catch (NoSuchAlgorithmException | InvalidAlgorithmParameterException e) {
+            throw new IllegalStateException("P-256 key generation is not available", e);
+        }
+    });
+
+    private final byte[] secretboxKey;
+    private final String kdfJson;
+
+    /**
+     * Creates a generator, deriving the encryption key from the password
+     *
+     * @param password The password to encrypt private keys with, may be empty
+     */
+    public CosignKeyGenerator(char[] password) {
+        byte[] salt = new byte[SALT_SIZE];
+        RANDOM.nextBytes(salt);
+        this.secretboxKey = deriveKey(password, salt, SCRYPT_N, SCRYPT_R, SCRYPT_P);
+        this.kdfJson = "{\"name\":\"scrypt\",\"params\":{\"N\":" + SCRYPT_N + ",\"r\":" + SCRYPT_R + ",\"p\":" + SCRYPT_P
+            + "},\"salt\":\"" + Base64.getEncoder().encodeToString(salt) + "\"}";
+    }
+
+    /**
+     * Generates a key pair. Safe to call from many threads at once.
+     *
+     * @return The encrypted private key and the public key, both as PEM
+     */
+    public CosignKeyPair generate() {
+        KeyPair keyPair = KEY_PAIR_GENERATOR.get().generateKeyPair();
+        byte[] pkcs8 = keyPair.getPrivate().getEncoded();
+        byte[] nonce = new byte[NONCE_SIZE];
+        RANDOM.nextBytes(nonce);
+        byte[] sealed = seal(secretboxKey, nonce, pkcs8);
+        Arrays.fill(pkcs8, (byte) 0);
+
+        // same member order as cosign writes
+        Base64.Encoder base64 = Base64.getEncoder();
+        String json = "{\"kdf\":" + kdfJson
+            + ",\"cipher\":{\"name\":\"nacl/secretbox\",\"nonce\":\"" + base64.encodeToString(nonce) + "\"}"
+            + ",\"ciphertext\":\"" + base64.encodeToString(sealed) + "\"}";
+
+        return new CosignKeyPair(
+            pem(PRIVATE_KEY_PEM_TYPE, json.getBytes(StandardCharsets.UTF_8)),
+            pem(PUBLIC_KEY_PEM_TYPE, keyPair.getPublic().getEncoded()));
+    }
+
+    /**
+     * Decrypts a cosign private key, using the scrypt parameters stored with it
+     *
+     * @param privateKeyPem The encrypted private key PEM
+     * @param password The password it was encrypted with
+     * @return The private key
+     * @throws IllegalArgumentException If the PEM is not a cosign private key or the password is wrong
+     */
+    public static PrivateKey decrypt(String privateKeyPem, char[] password) {
+        try (PemReader reader = new PemReader(new StringReader(privateKeyPem))) {
+            PemObject pem = reader.readPemObject();
+            // older cosign releases wrote the same content under a different PEM type
+            if (pem == null || !(pem.getType().equals(PRIVATE_KEY_PEM_TYPE) || pem.getType().equals("ENCRYPTED COSIGN PRIVATE KEY"))) {
+                throw new IllegalArgumentException("Not an encrypted cosign private key");
+            }
+
+            JsonObject json = JsonParser.parseString(new String(pem.getContent(), StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonObject kdf = json.getAsJsonObject("kdf");
+            JsonObject params = kdf.getAsJsonObject("params");
+            JsonObject cipher = json.getAsJsonObject("cipher");
+            if (!"scrypt".equals(kdf.get("name").getAsString()) || !"nacl/secretbox".equals(cipher.get("name").getAsString())) {
+                throw new IllegalArgumentException("Unsupported cosign key encryption: " + kdf.get("name") + ", " + cipher.get("name"));
+            }
+
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] key = deriveKey(password, base64.decode(kdf.get("salt").getAsString()),
+                params.get("N").getAsInt(), params.get("r").getAsInt(), params.get("p").getAsInt());
+            byte[] pkcs8 = open(key, base64.decode(cipher.get("nonce").getAsString()),
+                base64.decode(json.get("ciphertext").getAsString()));
+            Arrays.fill(key, (byte) 0);
+
+            try {
+                return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+            } finally {
+                Arrays.fill(pkcs8, (byte) 0);
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cosign private key: " + e.getMessage(), e);
+        }
+    }
+
+    private static byte[] deriveKey(char[] password, byte[] salt, int n, int r, int p) {
+        ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+        byte[] passwordBytes = new byte[encoded.remaining()];
+        encoded.get(passwordBytes);
+        if (encoded.hasArray()) {
+            Arrays.fill(encoded.array(), (byte) 0);
+        }
+        try {
+            return SCrypt.generate(passwordBytes, salt, n, r, p, KEY_SIZE);
+        } finally {
+            Arrays.fill(passwordBytes, (byte) 0);
+        }
+    }
+
+    /**
+     * NaCl secretbox: the first 32 bytes of the XSalsa20 keystream key Poly1305, the rest encrypts the message, and
+     * the tag goes in front of the ciphertext
+     */
+    static byte[] seal(byte[] key, byte[] nonce, byte[] message) {
+        XSalsa20Engine stream = new XSalsa20Engine();
+        stream.init(true, new ParametersWithIV(new KeyParameter(key), nonce));
+        byte[] macKey = new byte[KEY_SIZE];
+        stream.processBytes(macKey, 0, macKey.length, macKey, 0);
+
+        byte[] sealed = new byte[TAG_SIZE + message.length];
+        stream.processBytes(message, 0, message.length, sealed, TAG_SIZE);
+
+        Poly1305 mac = new Poly1305();
+        mac.init(new KeyParameter(macKey));
+        mac.update(sealed, TAG_SIZE, message.length);
+        mac.doFinal(sealed, 0);
+        Arrays.fill(macKey, (byte) 0);
+        return sealed;
+    }
+
+    static byte[] open(byte[] key, byte[] nonce, byte[] sealed) {
+        if (sealed.length < TAG_SIZE) {
+            throw new IllegalArgumentException("Cosign private key ciphertext is truncated");
+        }
+        XSalsa20Engine stream = new XSalsa20Engine();
+        stream.init(false, new ParametersWithIV(new KeyParameter(key), nonce));
+        byte[] macKey = new byte[KEY_SIZE];
+        stream.processBytes(macKey, 0, macKey.length, macKey, 0);
+
+        Poly1305 mac = new Poly1305();
+        mac.init(new KeyParameter(macKey));
+        mac.update(sealed, TAG_SIZE, sealed.length - TAG_SIZE);
+        byte[] tag = new byte[TAG_SIZE];
+        mac.doFinal(tag, 0);
+        Arrays.fill(macKey, (byte) 0);
+        if (!org.bouncycastle.util.Arrays.constantTimeAreEqual(TAG_SIZE, tag, 0, sealed, 0)) {
+            throw new IllegalArgumentException("Unable to decrypt cosign private key, the password is probably wrong");
+        }
+
+        byte[] message = new byte[sealed.length - TAG_SIZE];
+        stream.processBytes(sealed, TAG_SIZE, message.length, message, 0);
+        return message;
+    }
+
+    private static String pem(String type, byte[] content) {
+        StringWriter out = new StringWriter(content.length * 2);
+        try (PemWriter writer = new PemWriter(out)) {
+            writer.writeObject(new PemObject(type, content));
+        } catch (IOException e) {
+            throw new IllegalStateException("Error creating PEM format: " + e.getMessage(), e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * A generated cosign key pair
+     *
+     * @param privateKey The encrypted private key PEM, as written to {@code cosign.key}
+     * @param publicKey The public key PEM, as written to {@code cosign.pub}
+     */
+    public record CosignKeyPair(String privateKey, String publicKey) {
+    }
+}
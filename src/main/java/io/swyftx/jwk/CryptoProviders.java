@@ -0,0 +1,36 @@
+package io.swyftx.jwk;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.security.Provider;
+import java.security.Security;
+
+/**
+ * Registers the BouncyCastle JCA provider on first use. Every algorithm the tool uses by default is served by the JDK
+ * providers, and registering BouncyCastle loads several hundred classes, so it is only a fallback for keys the JDK
+ * cannot handle, such as CA keys on Brainpool curves.
+ */
+public class CryptoProviders {
+
+    private static class BouncyCastleHolder {
+        private static final Provider PROVIDER = register();
+    }
+
+    /**
+     * @return The BouncyCastle provider, registered with the JCA on the first call
+     */
+    public static Provider bouncyCastle() {
+        return BouncyCastleHolder.PROVIDER;
+    }
+
+    private static Provider register() {
+        long start = Timings.start();
+        Provider provider = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+        if (provider == null) {
+            provider = new BouncyCastleProvider();
+            Security.addProvider(provider);
+        }
+        Timings.record("crypto providers", start);
+        return provider;
+    }
+}
@@ -0,0 +1,67 @@
+package io.swyftx.jwk;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+
+import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.KeyUse;
+
+public class ECKeyMaker {
+
+    /**
+     * @param crv
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @return
+     */
+    public static ECKey make(Curve crv, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid) {
+        return make(crv, keyUse, keyAlg, kid, null);
+    }
+
+    /**
+     * @param crv
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @param random Source of randomness, or null for the provider default
+     * @return
+     */
+    public static ECKey make(Curve crv, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid, SecureRandom random) {
+
+        long start = System.nanoTime();
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            if (random != null) {
+                generator.initialize(crv.toECParameterSpec(), random);
+            } else {
+                generator.initialize(crv.toECParameterSpec());
+            }
+            KeyPair kp = generator.generateKeyPair();
+
+            ECPublicKey pub = (ECPublicKey) kp.getPublic();
+            ECPrivateKey priv = (ECPrivateKey) kp.getPrivate();
+
+            ECKey.Builder builder = new ECKey.Builder(crv, pub)
+                    .privateKey(priv)
+                    .keyUse(keyUse)
+                    .algorithm(keyAlg);
+            ECKey jwk = builder
+                    .keyID(kid.generate(keyUse, pub.getEncoded(), builder::build))
+                    .build();
+            Metrics.KEY_GENERATION.observeSince(start, "EC");
+            return jwk;
+        } catch (InvalidAlgorithmParameterException | NoSuchAlgorithmException e) {
+            Metrics.KEY_GENERATION_FAILURES.inc("EC");
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package io.swyftx.jwk;
 
 import com.google.common.base.Strings;
 
+import java.io.Console;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,32 +19,54 @@ public class EightcapHandler {
      */
     public static void handle(Options.EightcapOptions options) {
         System.out.println("Please enter the Eightcap credentials below. Note, these are masked input fields and entered text will not be visible on the screen.");
-        char[] eightcapEntityIdChars = System.console().readPassword("Enter Eightcap Entity ID: ");
-        String eightcapEntityId = new String(eightcapEntityIdChars);
-        char[] eightcapUsernameChars = System.console().readPassword("Enter Eightcap Username: ");
-        String eightcapUsername = new String(eightcapUsernameChars);
-        char[] eightcapPasswordChars = System.console().readPassword("Enter Eightcap Password: ");
-        String eightcapPassword = new String(eightcapPasswordChars);
+        Map<String, Object> secretData = new HashMap<>();
+        try {
+            // read inside the try, so the credentials already entered are wiped if a later prompt fails
+            secretData.put("EIGHTCAP_ENTITY_ID", readCredential("Enter Eightcap Entity ID: "));
+            secretData.put("EIGHTCAP_USERNAME", readCredential("Enter Eightcap Username: "));
+            secretData.put("EIGHTCAP_PASSWORD", readCredential("Enter Eightcap Password: "));
 
-        if (Strings.isNullOrEmpty(options.secretPath)) {
-            System.out.println("Eightcap credentials discarded as no Vault path was specified");
-        } else {
-            System.out.println("Attempting to store Eightcap credentials in Vault...");
-            VaultClient vaultClient = new VaultClient();
-            if (vaultClient.initialize()) {
-                Map<String, Object> secretData = new HashMap<>();
-                secretData.put("EIGHTCAP_ENTITY_ID", eightcapEntityId);
-                secretData.put("EIGHTCAP_USERNAME", eightcapUsername);
-                secretData.put("EIGHTCAP_PASSWORD", eightcapPassword);
-                boolean success = vaultClient.writeSecret(options.secretPath, secretData);
-                if (success) {
-                    System.out.println("Eightcap credentials successfully stored in Vault at: " + options.secretPath);
+            if (Strings.isNullOrEmpty(options.secretPath)) {
+                System.out.println("Eightcap credentials discarded as no Vault path was specified");
+            } else {
+                System.out.println("Attempting to store Eightcap credentials in Vault...");
+                VaultClient vaultClient = new VaultClient();
+                if (vaultClient.initialize()) {
+                    boolean success = vaultClient.writeSecret(options.secretPath, secretData);
+                    if (success) {
+                        System.out.println("Eightcap credentials successfully stored in Vault at: " + options.secretPath);
+                    } else {
+                        System.err.println("Failed to store Eightcap credentials in Vault");
+                    }
                 } else {
-                    System.err.println("Failed to store Eightcap credentials in Vault");
+                    System.err.println("Failed to initialize Vault client");
                 }
-            } else {
-                System.err.println("Failed to initialize Vault client");
             }
+        } finally {
+            SecretBytes.closeAll(secretData);
+        }
+    }
+
+    /**
+     * Reads a masked credential from the console, zeroing the characters once they are encoded
+     *
+     * @param prompt The prompt to show
+     * @return The credential as UTF-8, owned by the caller, who must close it
+     * @throws IllegalStateException If there is no console or the input ended before a credential was entered
+     */
+    private static SecretBytes readCredential(String prompt) {
+        Console console = System.console();
+        if (console == null) {
+            throw new IllegalStateException("Eightcap credentials need an interactive console");
+        }
+        char[] chars = console.readPassword(prompt);
+        if (chars == null) {
+            throw new IllegalStateException("Input ended before the Eightcap credentials were entered");
+        }
+        try {
+            return SecretBytes.copyOf(chars);
+        } finally {
+            Arrays.fill(chars, '\0');
         }
     }
 }
@@ -1,5 +1,7 @@
 package io.swyftx.jwk;
 
+import org.apache.commons.cli.CommandLine;
+
 /**
  * Factory for creating and executing the appropriate handler
  */
@@ -9,11 +11,17 @@ public class HandlerFactory {
      * Creates and executes the appropriate handler for the given secret type
      *
      * @param secretType The type of secret
-     * @param secretPath The path to store the secret
+     * @param cmd The parsed command line
      */
-    public static void executeHandler(String secretType, String secretPath) {
-        Options.BaseOptions options = Options.createOptions(secretType, secretPath);
+    public static void executeHandler(String secretType, CommandLine cmd) {
+        long start = Timings.start();
+        Options.BaseOptions options = Options.createOptions(secretType, cmd);
+        VaultClient.setDefaultRetryPolicy(Options.createRetryPolicy(cmd));
+        Options.enableSkipUnchanged(cmd);
+        Options.enableKeyPool(cmd);
+        Timings.record("handler options", start);
 
+        start = Timings.start();
         switch (secretType) {
             case "jwks":
                 JwksHandler.handle((Options.JwksOptions) options);
@@ -27,5 +35,33 @@ public class HandlerFactory {
             default:
                 throw Options.printUsageAndExit("Unsupported secret type: " + secretType);
         }
+        Timings.record(secretType + " handler", start);
+        printKeyPoolStats();
+    }
+
+    /**
+     * Creates and executes the handler for a manifest run
+     *
+     * @param cmd The parsed command line
+     */
+    public static void executeManifest(CommandLine cmd) {
+        long start = Timings.start();
+        Options.ManifestOptions options = Options.createManifestOptions(cmd);
+        VaultClient.setDefaultRetryPolicy(Options.createRetryPolicy(cmd));
+        Options.enableSkipUnchanged(cmd);
+        Options.enableKeyPool(cmd);
+        Timings.record("handler options", start);
+
+        start = Timings.start();
+        ManifestHandler.handle(options);
+        Timings.record("manifest handler", start);
+        printKeyPoolStats();
+    }
+
+    private static void printKeyPoolStats() {
+        KeyPool pool = KeyPool.shared();
+        if (pool != null) {
+            System.out.println(pool.stats());
+        }
     }
 }
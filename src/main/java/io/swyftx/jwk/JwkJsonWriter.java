@@ -0,0 +1,193 @@
+package io.swyftx.jwk;
+
+import com.google.gson.stream.JsonWriter;
+import com.nimbusds.jose.jwk.JWK;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams JWKs and JWK Sets as JSON in a single pass, straight from the Nimbus JSON object into a sink,
+ * without an intermediate JSON string or parse tree
+ */
+public class JwkJsonWriter {
+    private static final String PRETTY_INDENT = "  ";
+
+    /**
+     * Writes a single JWK
+     *
+     * @param jwk The JWK to write
+     * @param publicOnly If true, write only the public half of the key
+     * @param pretty If true, indent the output
+     * @param out The sink to write to, left open and flushed
+     * @throws IOException If the sink could not be written
+     */
+    public static void writeJWK(JWK jwk, boolean publicOnly, boolean pretty, Writer out) throws IOException {
+        JsonWriter json = newJsonWriter(out, pretty);
+        writeValue(json, toJSONObject(jwk, publicOnly));
+        json.flush();
+    }
+
+    /**
+     * Writes a JWK Set
+     *
+     * @param jwks The JWKs in the set
+     * @param publicOnly If true, write only the public halves, omitting symmetric keys entirely
+     * @param pretty If true, indent the output
+     * @param out The sink to write to, left open and flushed
+     * @throws IOException If the sink could not be written
+     */
+    public static void writeJWKSet(List<JWK> jwks, boolean publicOnly, boolean pretty, Writer out) throws IOException {
+        JsonWriter json = newJsonWriter(out, pretty);
+        json.beginObject();
+        json.name("keys");
+        json.beginArray();
+        for (JWK jwk : jwks) {
+            Map<String, Object> jsonObject = toJSONObject(jwk, publicOnly);
+            if (jsonObject != null) {
+                writeValue(json, jsonObject);
+            }
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Writes a JWK Set as UTF-8 to a byte stream, such as stdout or an HTTP response body
+     *
+     * @param jwks The JWKs in the set
+     * @param publicOnly If true, write only the public halves
+     * @param pretty If true, indent the output
+     * @param out The stream to write to, left open and flushed
+     * @throws IOException If the stream could not be written
+     */
+    public static void writeJWKSet(List<JWK> jwks, boolean publicOnly, boolean pretty, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeJWKSet(jwks, publicOnly, pretty, writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes a JWK Set as UTF-8 to a channel, such as a FileChannel
+     *
+     * @param jwks The JWKs in the set
+     * @param publicOnly If true, write only the public halves
+     * @param pretty If true, indent the output
+     * @param channel The channel to write to, left open
+     * @throws IOException If the channel could not be written
+     */
+    public static void writeJWKSet(List<JWK> jwks, boolean publicOnly, boolean pretty, WritableByteChannel channel) throws IOException {
+        Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+        writeJWKSet(jwks, publicOnly, pretty, writer);
+        writer.flush();
+    }
+
+    /**
+     * Serializes a single JWK to a string
+     *
+     * @param jwk The JWK to write
+     * @param publicOnly If true, write only the public half of the key
+     * @param pretty If true, indent the output
+     * @return The JSON, or null if publicOnly was requested for a key with no public half
+     */
+    public static String toJSONString(JWK jwk, boolean publicOnly, boolean pretty) {
+        Map<String, Object> jsonObject = toJSONObject(jwk, publicOnly);
+        if (jsonObject == null) {
+            return null;
+        }
+        try {
+            StringWriter out = new StringWriter(512);
+            JsonWriter json = newJsonWriter(out, pretty);
+            writeValue(json, jsonObject);
+            json.flush();
+            return out.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error writing JWK: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serializes a full JWK, private half included, straight into secret bytes for storing in Vault, so the JSON never
+     * becomes a String
+     *
+     * @param jwk The JWK to write
+     * @return The compact JSON, owned by the caller, who must close it
+     */
+    public static SecretBytes toSecretBytes(JWK jwk) {
+        SecretBytes bytes = SecretBytes.allocate();
+        try {
+            writeJWK(jwk, false, false, bytes.writer());
+            return bytes;
+        } catch (IOException | RuntimeException e) {
+            bytes.close();
+            throw new IllegalStateException("Error writing JWK: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serializes a JWK Set to a string
+     *
+     * @param jwks The JWKs in the set
+     * @param publicOnly If true, write only the public halves
+     * @param pretty If true, indent the output
+     * @return The JSON
+     */
+    public static String toJSONString(List<JWK> jwks, boolean publicOnly, boolean pretty) {
+        try {
+            StringWriter out = new StringWriter(512 * Math.max(1, jwks.size()));
+            writeJWKSet(jwks, publicOnly, pretty, out);
+            return out.toString();
+        } catch (IOException e) {
+            throw new IllegalStateException("Error writing JWK Set: " + e.getMessage(), e);
+        }
+    }
+
+    private static Map<String, Object> toJSONObject(JWK jwk, boolean publicOnly) {
+        JWK key = publicOnly ? jwk.toPublicJWK() : jwk;
+        return key != null ? key.toJSONObject() : null;
+    }
+
+    private static JsonWriter newJsonWriter(Writer out, boolean pretty) {
+        JsonWriter json = new JsonWriter(out);
+        if (pretty) {
+            json.setIndent(PRETTY_INDENT);
+        }
+        return json;
+    }
+
+    private static void writeValue(JsonWriter json, Object value) throws IOException {
+        switch (value) {
+            case null -> json.nullValue();
+            case String s -> json.value(s);
+            case Boolean b -> json.value(b);
+            case Number n -> json.value(n);
+            case Map<?, ?> map -> {
+                json.beginObject();
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    json.name(String.valueOf(entry.getKey()));
+                    writeValue(json, entry.getValue());
+                }
+                json.endObject();
+            }
+            case Collection<?> collection -> {
+                json.beginArray();
+                for (Object item : collection) {
+                    writeValue(json, item);
+                }
+                json.endArray();
+            }
+            default -> json.value(value.toString());
+        }
+    }
+}
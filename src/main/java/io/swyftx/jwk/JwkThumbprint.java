@@ -0,0 +1,115 @@
+package io.swyftx.jwk;
+
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes RFC 7638 SHA-256 JWK thumbprints. The canonical JSON of the required members is streamed straight into a
+ * per-thread digest through a per-thread scratch buffer, rather than building a JSON object and string per key.
+ */
+public class JwkThumbprint {
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    /**
+     * Computes the thumbprint of a key, which depends only on its public members
+     *
+     * @param jwk The key
+     * @return The base64url encoded SHA-256 thumbprint
+     * @throws IllegalArgumentException If the key type is not supported
+     */
+    public static String compute(JWK jwk) {
+        return Base64URL.encode(digest(jwk)).toString();
+    }
+
+    /**
+     * Computes the raw thumbprint of a key
+     *
+     * @param jwk The key
+     * @return The SHA-256 digest of the canonical JSON
+     * @throws IllegalArgumentException If the key type is not supported
+     */
+    public static byte[] digest(JWK jwk) {
+        // members in lexicographic order, as RFC 7638 requires
+        Canonical json = new Canonical(SHA256.get());
+        switch (jwk) {
+            case RSAKey rsa -> json.member("e", rsa.getPublicExponent()).member("kty", "RSA").member("n", rsa.getModulus());
+            case ECKey ec -> json.member("crv", ec.getCurve().getName()).member("kty", "EC")
+                .member("x", ec.getX()).member("y", ec.getY());
+            case OctetKeyPair okp -> json.member("crv", okp.getCurve().getName()).member("kty", "OKP").member("x", okp.getX());
+            case OctetSequenceKey oct -> json.member("k", oct.getKeyValue()).member("kty", "oct");
+            default -> throw new IllegalArgumentException("Unsupported key type for thumbprint: " + jwk.getKeyType());
+        }
+        return json.finish();
+    }
+
+    /**
+     * Writes the canonical JSON into a digest. Every member value is a curve name or base64url, so no escaping is needed.
+     */
+    private static class Canonical {
+        private final MessageDigest digest;
+        private boolean first = true;
+
+        Canonical(MessageDigest digest) {
+            this.digest = digest;
+            digest.reset();
+            digest.update((byte) '{');
+        }
+
+        Canonical member(String name, Base64URL value) {
+            return member(name, value.toString());
+        }
+
+        Canonical member(String name, String value) {
+            if (!first) {
+                digest.update((byte) ',');
+            }
+            first = false;
+            digest.update((byte) '"');
+            ascii(name);
+            digest.update((byte) '"');
+            digest.update((byte) ':');
+            digest.update((byte) '"');
+            ascii(value);
+            digest.update((byte) '"');
+            return this;
+        }
+
+        byte[] finish() {
+            digest.update((byte) '}');
+            return digest.digest();
+        }
+
+        private void ascii(String value) {
+            byte[] scratch = SCRATCH.get();
+            if (scratch.length < value.length()) {
+                scratch = new byte[Math.max(value.length(), scratch.length * 2)];
+                SCRATCH.set(scratch);
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    // members are base64url or registered names, but hash anything else as the UTF-8 RFC 7638 asks for
+                    digest.update(value.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                scratch[i] = (byte) c;
+            }
+            digest.update(scratch, 0, value.length());
+        }
+    }
+}
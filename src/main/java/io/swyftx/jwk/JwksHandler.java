@@ -2,14 +2,27 @@ package io.swyftx.jwk;
 
 import com.google.common.base.Strings;
 import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyType;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Handler for JWKS secret type operations
  */
 public class JwksHandler {
+    public static final String COSE_KEY_FIELD = "COSE_KEY";
+
+    private static final Duration SERVE_REFRESH_INTERVAL = Duration.ofSeconds(10);
 
     /**
      * Handles the JWKS secret type
@@ -17,29 +30,57 @@ public class JwksHandler {
      * @param options The JWKS options
      */
     public static void handle(Options.JwksOptions options) {
+        if (options.rotationPeriod != null) {
+            handleDaemon(options);
+            return;
+        }
+        if (options.servePort > 0) {
+            handleServe(options);
+            return;
+        }
+        if (options.count > 1) {
+            handleBulk(options);
+            return;
+        }
+
         try {
             System.out.println("Generating key...");
+            long start = Timings.start();
             JWK jwk = KeyGenerator.makeKey(
                 options.size,
                 options.generator,
+                options.keyType,
                 options.keyUse,
-                options.keyAlg
+                options.keyAlg,
+                options.keyCurve
             );
+            Timings.record("key generation", start);
 
-            System.out.println("Displaying keys in JWK format...");
-            KeyWriter.displayJWK(
-                jwk,
-                true,
-                false,
-                true
-            );
+            if (options.format == Options.KeyFormat.COSE) {
+                System.out.println("Displaying keys in COSE_Key format...");
+                KeyWriter.displayCoseKey(jwk, false, true);
+            } else {
+                System.out.println("Displaying keys in JWK format...");
+                KeyWriter.displayJWK(
+                    jwk,
+                    true,
+                    false,
+                    true
+                );
+            }
 
-            System.out.println("Displaying keys in PEM format...");
-            KeyWriter.displayPEM(
-                jwk,
-                false,
-                true
-            );
+            // symmetric keys have no public half to encode
+            if (!KeyType.OCT.equals(jwk.getKeyType())) {
+                System.out.println("Displaying keys in PEM format...");
+                KeyWriter.displayPEM(
+                    jwk,
+                    false,
+                    true
+                );
+            }
+
+            writeToFile(options, List.of(jwk));
+            writeCertificates(options, List.of(jwk));
 
             // Initialize Vault client and perform update secret operation for JWKS
             if (Strings.isNullOrEmpty(options.secretPath)) {
@@ -48,13 +89,110 @@ public class JwksHandler {
                 System.out.println("Attempting to store private key in Vault...");
                 VaultClient vaultClient = new VaultClient();
                 if (vaultClient.initialize()) {
-                    Map<String, Object> secretData = new HashMap<>();
-                    secretData.put("GEN2_BALANCE_SERVICE_PRIVATE_KEY", KeyWriter.privateKeyToString(jwk.toRSAKey().toPrivateKey()));
-                    boolean success = vaultClient.writeSecret(options.secretPath, secretData);
-                    if (success) {
-                        System.out.println("Private key successfully stored in Vault at: " + options.secretPath);
+                    if (options.rotate) {
+                        JwksRotator rotator = new JwksRotator(vaultClient, VaultClient.DEFAULT_KV_MOUNT_PATH, options.secretPath, options.keep);
+                        JwksRotator.Result result = rotator.rotate(jwk);
+                        System.out.println("JWKS rotated in Vault at: " + options.secretPath + " (version " + result.version()
+                            + ", " + result.attempts() + " attempt(s)), published kids: " + result.kids());
+                    } else {
+                        Map<String, Object> secretData = privateKeyData(jwk, options.format);
+                        boolean success;
+                        try {
+                            success = vaultClient.writeSecret(options.secretPath, secretData);
+                        } finally {
+                            SecretBytes.closeAll(secretData);
+                        }
+                        if (success) {
+                            System.out.println("Private key successfully stored in Vault at: " + options.secretPath);
+                        } else {
+                            System.err.println("Failed to store private key in Vault");
+                        }
+                    }
+                } else {
+                    System.err.println("Failed to initialize Vault client");
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw Options.printUsageAndExit("Invalid key size: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw Options.printUsageAndExit(e.getMessage());
+        } catch (Exception e) {
+            throw Options.printUsageAndExit("Unexpected error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles the JWKS secret type when more than one key is requested, generating all keys in parallel
+     *
+     * @param options The JWKS options
+     */
+    private static void handleBulk(Options.JwksOptions options) {
+        try {
+            KeyGenerator.primeKeyPool(options.size, options.keyType, options.keyUse, options.keyAlg);
+            System.out.println("Generating " + options.count + " keys...");
+            KeyGenerator.BulkResult result = KeyGenerator.makeKeys(
+                options.count,
+                options.size,
+                options.generator,
+                options.keyType,
+                options.keyUse,
+                options.keyAlg,
+                options.keyCurve
+            );
+            System.out.printf("Generated %d keys on %d threads in %d ms (%.2f keys/sec)%n",
+                result.keys().size(), result.workers(), result.elapsed().toMillis(), result.keysPerSecond());
+            if (result.kidCollisions() > 0) {
+                System.out.println("Suffixed " + result.kidCollisions() + " colliding kids to keep them unique");
+            }
+
+            if (options.format == Options.KeyFormat.COSE) {
+                System.out.println("Displaying keys in COSE_Key format...");
+                for (JWK jwk : result.keys()) {
+                    KeyWriter.displayCoseKey(jwk, false, true);
+                }
+            } else {
+                System.out.println("Displaying keys in JWK format...");
+                KeyWriter.displayJWKSet(result.keys(), false, true);
+            }
+
+            writeToFile(options, result.keys());
+            writeCertificates(options, result.keys());
+
+            if (Strings.isNullOrEmpty(options.secretPath)) {
+                System.out.println("Private keys discarded as no Vault path was specified");
+            } else {
+                System.out.println("Attempting to store private keys in Vault...");
+                VaultClient vaultClient = new VaultClient();
+                if (vaultClient.initialize()) {
+                    List<VaultClient.SecretWrite> writes = new ArrayList<>(result.keys().size());
+                    for (int i = 0; i < result.keys().size(); i++) {
+                        JWK jwk = result.keys().get(i);
+                        String keyPath = options.secretPath + "/" + (jwk.getKeyID() != null ? jwk.getKeyID() : String.valueOf(i));
+                        writes.add(new VaultClient.SecretWrite(keyPath, privateKeyData(jwk, options.format)));
+                    }
+
+                    VaultClient.BatchResult batch;
+                    try {
+                        batch = vaultClient.writeSecrets(writes, options.parallelism);
+                    } finally {
+                        writes.forEach(write -> SecretBytes.closeAll(write.secretData()));
+                    }
+                    System.out.printf("Wrote %d secrets in %d ms (mean %d ms, max %d ms per request)%n",
+                        batch.results().size(), batch.elapsed().toMillis(),
+                        batch.meanLatency().toMillis(), batch.maxLatency().toMillis());
+                    if (batch.unchanged() > 0) {
+                        System.out.println("Skipped " + batch.unchanged() + " writes to secrets that were already up to date");
+                    }
+                    for (VaultClient.WriteResult writeResult : batch.results()) {
+                        if (!writeResult.success()) {
+                            System.err.println("Failed to store private key at " + writeResult.write().secretPath()
+                                + ", " + writeResult.result().describe());
+                        }
+                    }
+                    if (batch.failed() == 0) {
+                        System.out.println("Private keys successfully stored in Vault under: " + options.secretPath);
                     } else {
-                        System.err.println("Failed to store private key in Vault");
+                        System.err.println("Failed to store " + batch.failed() + " of " + batch.results().size() + " private keys in Vault");
                     }
                 } else {
                     System.err.println("Failed to initialize Vault client");
@@ -68,4 +206,193 @@ public class JwksHandler {
             throw Options.printUsageAndExit("Unexpected error: " + e.getMessage());
         }
     }
+
+    /**
+     * Rotates the JWKS at the Vault path on a schedule until the process is stopped, also serving it and the metrics
+     * if a port was specified
+     *
+     * @param options The JWKS options
+     */
+    private static void handleDaemon(Options.JwksOptions options) {
+        if (Strings.isNullOrEmpty(options.secretPath)) {
+            throw Options.printUsageAndExit("A Vault path (-p) is required to run the rotation daemon");
+        }
+        VaultClient vaultClient = new VaultClient();
+        if (!vaultClient.initialize()) {
+            throw Options.printUsageAndExit("Failed to initialize Vault client");
+        }
+
+        KeyGenerator.primeKeyPool(options.size, options.keyType, options.keyUse, options.keyAlg);
+        // replaced keys are retired by the daemon once the overlap window passes, not by count
+        JwksRotator rotator = new JwksRotator(vaultClient, VaultClient.DEFAULT_KV_MOUNT_PATH, options.secretPath, Integer.MAX_VALUE);
+        Supplier<JWK> keyFactory = () -> KeyGenerator.makeKey(
+            options.size,
+            options.generator,
+            options.keyType,
+            options.keyUse,
+            options.keyAlg,
+            options.keyCurve
+        );
+
+        JwksRotationDaemon daemon;
+        try {
+            daemon = new JwksRotationDaemon(rotator, keyFactory, options.rotationPeriod, options.rotationLead, options.rotationOverlap);
+        } catch (IllegalArgumentException e) {
+            throw Options.printUsageAndExit(e.getMessage());
+        }
+        System.out.println("Rotating JWKS at " + options.secretPath + " every " + options.rotationPeriod
+            + ", publishing the next key " + options.rotationLead + " ahead, retiring old keys after " + options.rotationOverlap);
+        // on a fresh path this creates the first key, which the server needs to load before it can start
+        daemon.resume();
+
+        if (options.servePort > 0) {
+            startServer(options.servePort, vaultSource(vaultClient, options));
+        }
+
+        try {
+            daemon.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Serves the public JWKS over HTTP until the process is stopped, reloading it from Vault or the file as it changes
+     *
+     * @param options The JWKS options
+     */
+    private static void handleServe(Options.JwksOptions options) {
+        Supplier<List<JWK>> source;
+        if (!Strings.isNullOrEmpty(options.secretPath)) {
+            VaultClient vaultClient = new VaultClient();
+            if (!vaultClient.initialize()) {
+                throw Options.printUsageAndExit("Failed to initialize Vault client");
+            }
+            source = vaultSource(vaultClient, options);
+        } else {
+            String file = options.publicOutputFile != null ? options.publicOutputFile : options.outputFile;
+            if (Strings.isNullOrEmpty(file)) {
+                throw Options.printUsageAndExit("A Vault path (-p) or JWK Set file (-P or -o) is required to serve a JWKS");
+            }
+            source = () -> loadFromFile(file);
+        }
+        startServer(options.servePort, source);
+    }
+
+    private static void startServer(int port, Supplier<List<JWK>> source) {
+        try {
+            JwksServer server = new JwksServer(port, SERVE_REFRESH_INTERVAL, source);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "jwks-server-stop"));
+            server.start();
+        } catch (IOException e) {
+            throw Options.printUsageAndExit("Unable to listen on port " + port + ": " + e.getMessage());
+        } catch (IllegalStateException e) {
+            throw Options.printUsageAndExit(e.getMessage());
+        }
+    }
+
+    private static Supplier<List<JWK>> vaultSource(VaultClient vaultClient, Options.JwksOptions options) {
+        // unless -E says otherwise, each reload only costs a metadata read unless the JWKS actually changed
+        SecretCache cache = vaultClient.enableReadCache(1, Duration.ZERO, Duration.ofHours(1));
+        options.cacheTtls.forEach(cache::ttl);
+        return () -> loadFromVault(cache, options.secretPath);
+    }
+
+    /**
+     * @return The keys, empty if the secret or its current version was deleted so a revoked JWKS stops being served,
+     * or null to keep serving the last keys if Vault could not be read
+     */
+    private static List<JWK> loadFromVault(SecretCache cache, String secretPath) {
+        Map<String, Object> secretData;
+        try {
+            secretData = cache.get(VaultClient.DEFAULT_KV_MOUNT_PATH, secretPath);
+        } catch (RuntimeException e) {
+            System.err.println("Error reading secret from Vault: " + e.getMessage());
+            return null;
+        }
+        if (secretData == null) {
+            System.err.println("No JWKS at " + secretPath + ", or its current version was deleted, serving an empty set");
+            return List.of();
+        }
+        if (!(secretData.get(JwksRotator.JWKS_FIELD) instanceof String json)) {
+            System.err.println("No " + JwksRotator.JWKS_FIELD + " field at " + secretPath + ", write it with --rotate");
+            return null;
+        }
+        try {
+            return JWKSet.parse(json).getKeys();
+        } catch (ParseException e) {
+            System.err.println("Invalid JWK Set at " + secretPath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static List<JWK> loadFromFile(String file) {
+        try {
+            return JWKSet.load(new File(file)).getKeys();
+        } catch (IOException | ParseException e) {
+            System.err.println("Error reading JWK Set from " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Builds the Vault secret data for a private key: PEM, or base64url for oct keys, in the JWK format, and the full
+     * COSE_Key as base64url in the COSE format
+     *
+     * @param jwk The key
+     * @param format The key format
+     * @return The secret data, whose values the caller must close once written
+     */
+    static Map<String, Object> privateKeyData(JWK jwk, Options.KeyFormat format) {
+        Map<String, Object> secretData = new HashMap<>();
+        if (format == Options.KeyFormat.COSE) {
+            secretData.put(COSE_KEY_FIELD, CoseKey.toSecretBytes(jwk));
+        } else {
+            secretData.put(JwksRotator.PRIVATE_KEY_FIELD, KeyWriter.privateKeyToBytes(jwk));
+        }
+        return secretData;
+    }
+
+    /**
+     * Adds generated keys to the JWK Set or COSE_KeySet files, if an output file was specified
+     *
+     * @param options The JWKS options
+     * @param jwks The generated keys
+     * @throws IOException If the files could not be written
+     * @throws ParseException If an existing file is not a valid JWK Set
+     */
+    private static void writeToFile(Options.JwksOptions options, List<JWK> jwks) throws IOException, ParseException {
+        if (!Strings.isNullOrEmpty(options.outputFile)) {
+            if (options.format == Options.KeyFormat.COSE) {
+                KeyWriter.writeCoseKeysToFile(options.outputFile, options.publicOutputFile, jwks);
+            } else {
+                KeyWriter.writeKeysToFile(options.outputFile, options.publicOutputFile, jwks);
+            }
+            System.out.println("Keys written to: " + options.outputFile
+                + (options.publicOutputFile != null ? " (public keys: " + options.publicOutputFile + ")" : ""));
+        }
+    }
+
+    /**
+     * Issues a certificate for each generated key and writes the PEM chains, if a certificate directory was specified
+     *
+     * @param options The JWKS options
+     * @param jwks The generated keys
+     * @throws IOException If the CA could not be loaded or the files could not be written
+     */
+    private static void writeCertificates(Options.JwksOptions options, List<JWK> jwks) throws IOException {
+        if (Strings.isNullOrEmpty(options.certDir)) {
+            return;
+        }
+        CertificateIssuer issuer = options.caKeyFile != null
+            ? CertificateIssuer.loadCa(Path.of(options.caKeyFile), Path.of(options.caCertFile), options.certValidity)
+            : CertificateIssuer.selfSigned(options.certValidity);
+
+        long start = System.nanoTime();
+        List<CertificateIssuer.Issued> issued = issuer.issueAll(jwks);
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - start).toMillis();
+        issuer.writePemChains(Path.of(options.certDir), issued);
+        System.out.println("Issued " + issued.size() + (options.caKeyFile != null ? " CA-signed" : " self-signed")
+            + " certificates in " + elapsedMillis + " ms, written to: " + options.certDir);
+    }
 }
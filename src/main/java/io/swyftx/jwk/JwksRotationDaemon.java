@@ -0,0 +1,210 @@
+package io.swyftx.jwk;
+
+import com.nimbusds.jose.jwk.JWK;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Rotates the JWKS secret on a fixed schedule. Each cycle the next key is generated in the background as soon as the
+ * previous one is promoted, published as the next key {@code lead} before it is due so verifiers can fetch it, then
+ * promoted to the active signing key. Keys it replaced stay in the JWK Set for the {@code overlap} window and are
+ * then retired. Key generation therefore never runs at a rotation deadline. The schedule is taken from the times the
+ * rotator records in the secret, so a daemon that restarts more often than its period still rotates on time.
+ */
+public class JwksRotationDaemon {
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final JwksRotator rotator;
+    private final Supplier<JWK> keyFactory;
+    private final Duration period;
+    private final Duration lead;
+    private final Duration overlap;
+    private final ExecutorService generator;
+    private final Map<String, Instant> retireAt = new HashMap<>();
+
+    private CompletableFuture<JWK> pendingNext;
+    private JWK next;
+    private Instant rotateAt;
+
+    /**
+     * Creates a rotation daemon
+     *
+     * @param rotator The rotator for the JWKS secret, which should keep every previous key as retirement is time based
+     * @param keyFactory Generates a new key with a kid
+     * @param period Time between rotations
+     * @param lead How long before a rotation the next key is published
+     * @param overlap How long a replaced key stays published after a rotation
+     */
+    public JwksRotationDaemon(JwksRotator rotator, Supplier<JWK> keyFactory, Duration period, Duration lead, Duration overlap) {
+        if (lead.compareTo(period) >= 0) {
+            throw new IllegalArgumentException("Rotation lead time must be shorter than the rotation period, got " + lead + " for " + period);
+        }
+        this.rotator = rotator;
+        this.keyFactory = keyFactory;
+        this.period = period;
+        this.lead = lead;
+        this.overlap = overlap;
+        this.generator = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "jwks-next-key");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs rotations until the thread is interrupted
+     *
+     * @throws InterruptedException If the thread is interrupted
+     */
+    public void run() throws InterruptedException {
+        if (rotateAt == null) {
+            resume();
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            Instant publishAt = rotateAt.minus(lead);
+            Instant due = next == null ? publishAt : rotateAt;
+            for (Instant retirement : retireAt.values()) {
+                if (retirement.isBefore(due)) {
+                    due = retirement;
+                }
+            }
+
+            Duration wait = Duration.between(Instant.now(), due);
+            if (!wait.isNegative()) {
+                Thread.sleep(wait);
+            }
+
+            try {
+                Instant now = Instant.now();
+                if (next == null && !now.isBefore(publishAt)) {
+                    publishNext();
+                } else if (next != null && !now.isBefore(rotateAt)) {
+                    promoteNext();
+                } else {
+                    retireDue(now);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("JWKS rotation step failed, retrying in " + RETRY_DELAY.toSeconds() + "s: " + e.getMessage());
+                Thread.sleep(RETRY_DELAY);
+            }
+        }
+    }
+
+    /**
+     * Picks up from the keys already in the secret, creating the first key if there are none, so the secret holds a
+     * JWK Set once this returns. {@link #run} calls it if it has not been called yet.
+     *
+     * @throws org.springframework.vault.VaultException If the secret could not be read or the first key written
+     */
+    public void resume() {
+        JwksRotator.State state = rotator.read();
+        Instant now = Instant.now();
+
+        Instant rotatedAt;
+        if (state.publicKeys().isEmpty()) {
+            System.out.println("No JWKS published yet, creating the first key...");
+            JwksRotator.Result result = rotator.rotate(keyFactory.get());
+            System.out.println("Active key " + result.kids().getFirst() + " published at version " + result.version());
+            rotatedAt = now;
+        } else if (state.rotatedAt() != null) {
+            rotatedAt = state.rotatedAt();
+        } else {
+            // rotated before rotation times were recorded, so the period can only count from now
+            rotatedAt = now;
+        }
+        rotateAt = rotatedAt.plus(period);
+
+        if (!state.publicKeys().isEmpty() && state.nextKey() != null) {
+            next = state.nextKey();
+            // verifiers get a full lead time from its publication, or from now if that was not recorded
+            Instant publishedAt = state.nextPublishedAt() != null ? state.nextPublishedAt() : now;
+            rotateAt = latest(rotateAt, publishedAt.plus(lead));
+            System.out.println("Resuming with next key " + next.getKeyID() + ", promoting at " + rotateAt);
+        }
+
+        // keys beyond the active and next ones were replaced by the last rotation, and are retired by kid
+        List<JWK> publicKeys = state.publicKeys();
+        for (int i = 1; i < publicKeys.size(); i++) {
+            String kid = publicKeys.get(i).getKeyID();
+            if (kid != null && (next == null || !kid.equals(next.getKeyID()))) {
+                retireAt.put(kid, rotatedAt.plus(overlap));
+            }
+        }
+
+        if (next == null) {
+            generateNext();
+            System.out.println("Next rotation at " + rotateAt + ", next key published at " + rotateAt.minus(lead));
+        }
+    }
+
+    private void generateNext() {
+        pendingNext = CompletableFuture.supplyAsync(keyFactory, generator);
+    }
+
+    private void publishNext() {
+        if (!pendingNext.isDone()) {
+            System.err.println("Next key was not ready by its publish time, waiting for it...");
+        }
+        JWK key;
+        try {
+            key = pendingNext.join();
+        } catch (RuntimeException e) {
+            // start over so the retry doesn't rejoin the same failed generation
+            generateNext();
+            throw e;
+        }
+        JwksRotator.Result result = rotator.publishNext(key);
+        next = key;
+        // a late or overdue publication still gives verifiers a full lead time
+        rotateAt = latest(rotateAt, Instant.now().plus(lead));
+        System.out.println("Published next key " + key.getKeyID() + " at version " + result.version()
+            + ", promoting at " + rotateAt);
+    }
+
+    private void promoteNext() {
+        JwksRotator.Result result = rotator.rotate(next);
+        Instant rotatedAt = Instant.now();
+        Instant retirement = rotatedAt.plus(overlap);
+        for (String kid : result.kids()) {
+            if (kid != null && !kid.equals(next.getKeyID())) {
+                retireAt.putIfAbsent(kid, retirement);
+            }
+        }
+        System.out.println("Promoted " + next.getKeyID() + " to active key at version " + result.version()
+            + ", published kids: " + result.kids());
+
+        next = null;
+        // counted from the promotion, as a restart counts it from the time recorded in the secret
+        rotateAt = rotatedAt.plus(period);
+        generateNext();
+    }
+
+    private static Instant latest(Instant a, Instant b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private void retireDue(Instant now) {
+        List<String> due = new ArrayList<>();
+        for (Map.Entry<String, Instant> entry : retireAt.entrySet()) {
+            if (!now.isBefore(entry.getValue())) {
+                due.add(entry.getKey());
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        JwksRotator.Result result = rotator.retire(due);
+        due.forEach(retireAt::remove);
+        System.out.println("Retired " + due + " at version " + result.version() + ", published kids: " + result.kids());
+    }
+}
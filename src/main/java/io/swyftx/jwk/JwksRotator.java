@@ -0,0 +1,310 @@
+package io.swyftx.jwk;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import org.springframework.vault.VaultException;
+import org.springframework.vault.support.Versioned;
+
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Rotates the JWKS secret in Vault with a read-modify-write cycle guarded by KV v2 check-and-set.
+ * The new private key replaces the active one, while the public JWK Set keeps the new key plus a
+ * number of previous public keys so verifiers holding tokens signed by older keys keep working.
+ * A key can also be published as the next key ahead of its promotion, and old public keys retired explicitly.
+ * Concurrent rotators are safe without a global lock: a rotator whose write loses the race re-reads
+ * and re-merges. Only keys with a public half can be rotated, as the JWK Set is published to verifiers.
+ */
+public class JwksRotator {
+    public static final String PRIVATE_KEY_FIELD = "GEN2_BALANCE_SERVICE_PRIVATE_KEY";
+    public static final String JWKS_FIELD = "JWKS";
+    public static final String NEXT_KEY_FIELD = "NEXT_JWK";
+    public static final String ROTATED_AT_FIELD = "JWKS_ROTATED_AT";
+    public static final String NEXT_PUBLISHED_AT_FIELD = "NEXT_JWK_PUBLISHED_AT";
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+
+    private final VaultClient vaultClient;
+    private final String kvMountPath;
+    private final String secretPath;
+    private final int keep;
+
+    /**
+     * Creates a rotator for one JWKS secret
+     *
+     * @param vaultClient An initialized Vault client
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path of the JWKS secret
+     * @param keep Number of previous public keys to keep alongside the new one
+     */
+    public JwksRotator(VaultClient vaultClient, String kvMountPath, String secretPath, int keep) {
+        if (keep < 0) {
+            throw new IllegalArgumentException("Number of previous keys to keep cannot be negative, got " + keep);
+        }
+        this.vaultClient = vaultClient;
+        this.kvMountPath = kvMountPath;
+        this.secretPath = secretPath;
+        this.keep = keep;
+    }
+
+    /**
+     * Makes a key the active signing key, keeping the configured number of previous public keys, and records when it
+     * was made active. If the key was published as the next key, it is cleared from that slot.
+     *
+     * @param newKey The new key, including its private part
+     * @return The outcome of the rotation
+     * @throws IllegalArgumentException If the key is symmetric and so has no public half to publish
+     * @throws VaultException If Vault could not be read or written after all retries
+     */
+    public Result rotate(JWK newKey) {
+        return update((secretData, publicKeys) -> {
+            List<JWK> retained = new ArrayList<>();
+            retained.add(publicJWK(newKey));
+            for (JWK previous : publicKeys) {
+                if (retained.size() > keep) {
+                    break;
+                }
+                if (!sameKid(previous, newKey)) {
+                    retained.add(previous);
+                }
+            }
+
+            secretData.put(PRIVATE_KEY_FIELD, KeyWriter.privateKeyToBytes(newKey));
+            secretData.put(ROTATED_AT_FIELD, Instant.now().toString());
+            if (secretData.get(NEXT_KEY_FIELD) instanceof String nextJson && sameKid(parseKey(nextJson), newKey)) {
+                secretData.remove(NEXT_KEY_FIELD);
+                secretData.remove(NEXT_PUBLISHED_AT_FIELD);
+            }
+            return retained;
+        });
+    }
+
+    /**
+     * Publishes a key as the next signing key: its public half joins the JWK Set so verifiers can fetch it ahead of
+     * time, and the full key is held in the secret, with when it was published, until it is promoted with
+     * {@link #rotate}
+     *
+     * @param nextKey The next key, including its private part
+     * @return The outcome of the update
+     * @throws IllegalArgumentException If the key is symmetric and so has no public half to publish
+     * @throws VaultException If Vault could not be read or written after all retries
+     */
+    public Result publishNext(JWK nextKey) {
+        return update((secretData, publicKeys) -> {
+            List<JWK> retained = new ArrayList<>(publicKeys.size() + 1);
+            for (JWK existing : publicKeys) {
+                if (!sameKid(existing, nextKey)) {
+                    retained.add(existing);
+                }
+            }
+            retained.add(publicJWK(nextKey));
+            secretData.put(NEXT_KEY_FIELD, JwkJsonWriter.toSecretBytes(nextKey));
+            secretData.put(NEXT_PUBLISHED_AT_FIELD, Instant.now().toString());
+            return retained;
+        });
+    }
+
+    /**
+     * Removes public keys from the JWK Set once verifiers no longer need them
+     *
+     * @param kids The kids to remove
+     * @return The outcome of the update
+     * @throws VaultException If Vault could not be read or written after all retries
+     */
+    public Result retire(Collection<String> kids) {
+        return update((secretData, publicKeys) ->
+            publicKeys.stream().filter(jwk -> !kids.contains(jwk.getKeyID())).toList());
+    }
+
+    /**
+     * Reads the keys currently held in the secret
+     *
+     * @return The current state, empty if the secret does not exist yet
+     * @throws VaultException If Vault could not be read
+     */
+    public State read() {
+        Versioned<Map<String, Object>> current = vaultClient.readVersionedSecret(kvMountPath, secretPath);
+        Map<String, Object> secretData = current != null ? current.getRequiredData() : Map.of();
+        JWK nextKey = secretData.get(NEXT_KEY_FIELD) instanceof String nextJson ? parseKey(nextJson) : null;
+        return new State(versionOf(current), publicKeys(secretData), nextKey,
+            instant(secretData, ROTATED_AT_FIELD), nextKey != null ? instant(secretData, NEXT_PUBLISHED_AT_FIELD) : null);
+    }
+
+    /**
+     * Applies a change to the secret with check-and-set, re-reading and re-applying it whenever another writer got in
+     * first. Other failures are thrown at once. Key material written into the merged data is wiped once the update is
+     * done.
+     *
+     * @param change Updates the secret data in place and returns the public keys to publish
+     * @return The outcome of the update
+     */
+    private Result update(Change change) {
+        Versioned<Map<String, Object>> current = vaultClient.readVersionedSecret(kvMountPath, secretPath);
+        int version = versionOf(current);
+        Merged merged = merge(current, change);
+
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    int newVersion = vaultClient.writeSecretCas(kvMountPath, secretPath, merged.secretData(), version);
+                    return new Result(newVersion, merged.kids(), attempt);
+                } catch (VaultClient.CasConflictException e) {
+                    // transient failures were already retried by the write, anything else would fail the same way again
+                    if (attempt >= MAX_ATTEMPTS) {
+                        throw e;
+                    }
+                    Metrics.VAULT_RETRIES.inc("write_cas");
+                    backoff(attempt);
+
+                    current = vaultClient.readVersionedSecret(kvMountPath, secretPath);
+                    int latest = versionOf(current);
+                    System.out.println("JWKS secret moved from version " + version + " to " + latest + ", re-merging...");
+                    version = latest;
+                    SecretBytes.closeAll(merged.secretData());
+                    merged = merge(current, change);
+                }
+            }
+        } finally {
+            SecretBytes.closeAll(merged.secretData());
+        }
+    }
+
+    /**
+     * Builds the secret data for an update from the current secret
+     *
+     * @param current The current secret, or null if it does not exist yet
+     * @param change The change to apply
+     * @return The merged secret data and the kids of the public keys it retains
+     */
+    private Merged merge(Versioned<Map<String, Object>> current, Change change) {
+        Map<String, Object> secretData = new HashMap<>();
+        if (current != null) {
+            secretData.putAll(current.getRequiredData());
+        }
+
+        List<JWK> publicKeys;
+        try {
+            publicKeys = change.apply(secretData, publicKeys(secretData));
+            secretData.put(JWKS_FIELD, JwkJsonWriter.toJSONString(publicKeys, false, false));
+        } catch (RuntimeException e) {
+            SecretBytes.closeAll(secretData);
+            throw e;
+        }
+
+        List<String> kids = publicKeys.stream().map(JWK::getKeyID).toList();
+        return new Merged(secretData, kids);
+    }
+
+    private List<JWK> publicKeys(Map<String, Object> secretData) {
+        if (secretData.get(JWKS_FIELD) instanceof String json) {
+            try {
+                return JWKSet.parse(json).getKeys();
+            } catch (ParseException e) {
+                System.err.println("Existing JWKS at " + secretPath + " is not a valid JWK Set and will be replaced: " + e.getMessage());
+            }
+        }
+        return List.of();
+    }
+
+    private Instant instant(Map<String, Object> secretData, String field) {
+        if (secretData.get(field) instanceof String value) {
+            try {
+                return Instant.parse(value);
+            } catch (DateTimeParseException e) {
+                System.err.println(field + " at " + secretPath + " is not a valid timestamp and will be ignored: " + value);
+            }
+        }
+        return null;
+    }
+
+    private JWK parseKey(String json) {
+        try {
+            return JWK.parse(json);
+        } catch (ParseException e) {
+            System.err.println("Next key at " + secretPath + " is not a valid JWK and will be ignored: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static JWK publicJWK(JWK jwk) {
+        JWK publicJWK = jwk.toPublicJWK();
+        if (publicJWK == null) {
+            // a symmetric key's only form is its secret, which must never go into the published set
+            throw new IllegalArgumentException("Symmetric (" + jwk.getKeyType() + ") keys have no public half to publish in a JWK Set");
+        }
+        return publicJWK;
+    }
+
+    private static boolean sameKid(JWK a, JWK b) {
+        return a != null && b != null && a.getKeyID() != null && a.getKeyID().equals(b.getKeyID());
+    }
+
+    /**
+     * Returns the version to check-and-set against. A secret whose latest version was deleted has no data,
+     * but still has a current version in its metadata that the write must match.
+     */
+    private int versionOf(Versioned<Map<String, Object>> versioned) {
+        if (versioned != null && versioned.getVersion().isVersioned()) {
+            return versioned.getVersion().getVersion();
+        }
+        return vaultClient.readCurrentVersion(kvMountPath, secretPath);
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = BASE_BACKOFF_MILLIS << (attempt - 1);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VaultException("Interrupted while rotating JWKS at " + kvMountPath + "/data/" + secretPath);
+        }
+    }
+
+    /**
+     * Outcome of a rotation
+     *
+     * @param version The version of the secret written
+     * @param kids Kids of the public keys now published, newest first
+     * @param attempts Number of write attempts it took
+     */
+    public record Result(int version, List<String> kids, int attempts) {
+    }
+
+    /**
+     * Keys held in the JWKS secret
+     *
+     * @param version The version of the secret read, or 0 if it does not exist
+     * @param publicKeys The published public keys
+     * @param nextKey The key published as next, including its private part, or null if there is none
+     * @param rotatedAt When the active key was made active, or null if that was not recorded
+     * @param nextPublishedAt When the next key was published, or null if there is none or that was not recorded
+     */
+    public record State(int version, List<JWK> publicKeys, JWK nextKey, Instant rotatedAt, Instant nextPublishedAt) {
+    }
+
+    private record Merged(Map<String, Object> secretData, List<String> kids) {
+    }
+
+    /**
+     * A change to the JWKS secret, re-applied on every check-and-set attempt
+     */
+    @FunctionalInterface
+    private interface Change {
+
+        /**
+         * @param secretData The current secret data, to update in place
+         * @param publicKeys The currently published public keys
+         * @return The public keys to publish
+         */
+        List<JWK> apply(Map<String, Object> secretData, List<JWK> publicKeys);
+    }
+}
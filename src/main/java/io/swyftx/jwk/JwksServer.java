@@ -0,0 +1,234 @@
+package io.swyftx.jwk;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.util.Base64URL;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the public JWK Set at {@code /.well-known/jwks.json}. The set is serialized and gzipped once per change
+ * into an immutable snapshot, so requests only copy bytes. A background thread reloads the keys on an interval and
+ * swaps the snapshot in when its content changes. Responses carry a strong ETag derived from the content, and
+ * conditional requests that match it get a 304. The process metrics are served at {@link Metrics#PATH} for scraping.
+ */
+public final class JwksServer {
+    public static final String JWKS_PATH = "/.well-known/jwks.json";
+    private static final String CONTENT_TYPE = "application/jwk-set+json";
+
+    private final HttpServer server;
+    private final Duration refreshInterval;
+    private final Supplier<List<JWK>> source;
+    private final String cacheControl;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Creates a server, loading the initial key set
+     *
+     * @param port The port to listen on
+     * @param refreshInterval How often to reload the keys, also used as the response max-age
+     * @param source Loads the current keys, returning null if they could not be loaded
+     * @throws IOException If the port could not be bound
+     * @throws IllegalStateException If the initial key set could not be loaded
+     */
+    public JwksServer(int port, Duration refreshInterval, Supplier<List<JWK>> source) throws IOException {
+        this.refreshInterval = refreshInterval;
+        this.source = source;
+        this.cacheControl = "public, max-age=" + refreshInterval.toSeconds();
+        if (!reload()) {
+            throw new IllegalStateException("Unable to load the initial JWK Set");
+        }
+
+        // small responses on keep-alive connections otherwise stall on Nagle's algorithm and delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext(JWKS_PATH, this::handle);
+        this.server.createContext(Metrics.PATH, JwksServer::handleMetrics);
+    }
+
+    /**
+     * Starts serving and reloading in the background
+     */
+    public void start() {
+        server.start();
+        Thread.ofVirtual().name("jwks-refresh").start(this::refreshLoop);
+        System.out.println("Serving " + snapshot.get().keyCount() + " public keys at http://0.0.0.0:"
+            + server.getAddress().getPort() + JWKS_PATH);
+    }
+
+    /**
+     * Stops the server, waiting briefly for in-flight requests
+     */
+    public void stop() {
+        server.stop(1);
+    }
+
+    /**
+     * Reloads the keys and swaps the snapshot if they changed
+     *
+     * @return true if a key set is being served, whether or not it changed
+     */
+    boolean reload() {
+        List<JWK> keys;
+        try {
+            keys = source.get();
+        } catch (RuntimeException e) {
+            System.err.println("Error loading JWK Set: " + e.getMessage());
+            keys = null;
+        }
+        if (keys == null) {
+            return snapshot.get() != null;
+        }
+
+        Snapshot next = Snapshot.of(keys);
+        Snapshot previous = snapshot.get();
+        if (previous == null || !previous.etag().equals(next.etag())) {
+            snapshot.set(next);
+            if (previous != null) {
+                System.out.println("JWK Set changed, now serving " + next.keyCount() + " public keys with ETag " + next.etag());
+            }
+        }
+        return true;
+    }
+
+    private void refreshLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(refreshInterval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            reload();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Headers responseHeaders = exchange.getResponseHeaders();
+            if (!JWKS_PATH.equals(exchange.getRequestURI().getPath())) {
+                sendStatus(exchange, 404, -1);
+                return;
+            }
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                responseHeaders.set("Allow", "GET, HEAD");
+                sendStatus(exchange, 405, -1);
+                return;
+            }
+
+            Snapshot current = snapshot.get();
+            responseHeaders.set("ETag", current.etag());
+            responseHeaders.set("Cache-Control", cacheControl);
+            responseHeaders.set("Vary", "Accept-Encoding");
+
+            if (current.matches(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                sendStatus(exchange, 304, -1);
+                return;
+            }
+
+            byte[] body = current.body();
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip") && current.gzipped().length < body.length) {
+                body = current.gzipped();
+                responseHeaders.set("Content-Encoding", "gzip");
+            }
+            responseHeaders.set("Content-Type", CONTENT_TYPE);
+
+            if (method.equals("HEAD")) {
+                responseHeaders.set("Content-Length", String.valueOf(body.length));
+                sendStatus(exchange, 200, -1);
+                return;
+            }
+            sendStatus(exchange, 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private static void sendStatus(HttpExchange exchange, int status, long length) throws IOException {
+        Metrics.JWKS_REQUESTS.inc(String.valueOf(status));
+        exchange.sendResponseHeaders(status, length);
+    }
+
+    private static void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!Metrics.PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            byte[] body = Metrics.render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", Metrics.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * An immutable, pre-encoded response
+     *
+     * @param body The public JWK Set as UTF-8 JSON
+     * @param gzipped The body, gzipped
+     * @param etag Strong ETag over the body
+     * @param keyCount Number of keys in the set
+     */
+    record Snapshot(byte[] body, byte[] gzipped, String etag, int keyCount) {
+
+        static Snapshot of(List<JWK> keys) {
+            try {
+                ByteArrayOutputStream json = new ByteArrayOutputStream(512 * Math.max(1, keys.size()));
+                JwkJsonWriter.writeJWKSet(keys, true, false, json);
+                byte[] body = json.toByteArray();
+
+                ByteArrayOutputStream gzipped = new ByteArrayOutputStream(body.length / 2);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+                    gzip.write(body);
+                }
+
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+                String etag = "\"" + Base64URL.encode(Arrays.copyOf(digest, 16)) + "\"";
+                int keyCount = (int) keys.stream().filter(jwk -> jwk.toPublicJWK() != null).count();
+                return new Snapshot(body, gzipped.toByteArray(), etag, keyCount);
+            } catch (IOException | NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Error encoding JWK Set: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * @param ifNoneMatch The If-None-Match request header, may be null
+         * @return true if the client already holds this snapshot
+         */
+        boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String trimmed = tag.trim();
+                if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
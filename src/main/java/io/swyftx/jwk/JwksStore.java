@@ -0,0 +1,420 @@
+package io.swyftx.jwk;
+
+import com.google.gson.JsonParser;
+import com.nimbusds.jose.jwk.JWK;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File-backed JWK Set that keeps a kid index of raw JSON entries. Opening a store scans the existing files for entry
+ * boundaries and kids without parsing the keys, and adding or removing a key only serializes that key; untouched
+ * entries are copied out verbatim. Changes are published by writing a temporary file next to the target and atomically
+ * renaming it into place, so readers never see a partially written set.
+ */
+public class JwksStore {
+    private static final String ENTRY_INDENT = "    ";
+
+    private final Path file;
+    private final Path publicFile;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private JwksStore(Path file, Path publicFile) {
+        this.file = file;
+        this.publicFile = publicFile;
+    }
+
+    /**
+     * Opens a store, indexing any keys already present in the files. Each existing key's public entry is taken from
+     * the public file when it has one with the same kid, so only keys missing from it are parsed.
+     *
+     * @param file The JWK Set file holding private keys
+     * @param publicFile The JWK Set file holding only public keys, may be null
+     * @return The store
+     * @throws IOException If an existing file could not be read
+     * @throws ParseException If an existing file is not a JWK Set
+     */
+    public static JwksStore open(Path file, Path publicFile) throws IOException, ParseException {
+        JwksStore store = new JwksStore(file, publicFile);
+        if (!Files.exists(file)) {
+            return store;
+        }
+
+        Map<String, String> publicJson = new LinkedHashMap<>();
+        if (publicFile != null && Files.exists(publicFile)) {
+            for (String raw : RawJwkSet.entries(Files.readString(publicFile, StandardCharsets.UTF_8))) {
+                String kid = RawJwkSet.kid(raw);
+                if (kid != null) {
+                    publicJson.put(kid, raw);
+                }
+            }
+        }
+        for (String raw : RawJwkSet.entries(Files.readString(file, StandardCharsets.UTF_8))) {
+            String kid = RawJwkSet.kid(raw);
+            if (kid == null) {
+                // kid-less keys are indexed by thumbprint, which needs the parsed key
+                store.put(JWK.parse(raw));
+            } else {
+                store.entries.put(kid, new Entry(raw, publicJson.get(kid)));
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Adds a key, replacing any existing key with the same kid
+     *
+     * @param jwk The key to add
+     * @return The kid the key is indexed under
+     */
+    public String add(JWK jwk) {
+        return put(jwk);
+    }
+
+    /**
+     * Removes a key by kid
+     *
+     * @param kid The kid to remove
+     * @return true if a key was removed
+     */
+    public boolean remove(String kid) {
+        return entries.remove(kid) != null;
+    }
+
+    /**
+     * @param kid The kid to look up
+     * @return true if a key with the kid is present
+     */
+    public boolean contains(String kid) {
+        return entries.containsKey(kid);
+    }
+
+    /**
+     * @return Number of keys in the store
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Atomically writes the current key set to the private file and, if configured, the public file
+     *
+     * @throws IOException If either file could not be written
+     */
+    public void publish() throws IOException {
+        writeAtomically(file, false);
+        if (publicFile != null) {
+            writeAtomically(publicFile, true);
+        }
+    }
+
+    private String put(JWK jwk) {
+        String kid = jwk.getKeyID();
+        if (kid == null) {
+            kid = JwkThumbprint.compute(jwk);
+        }
+
+        Entry entry = new Entry(serialize(jwk, false), serialize(jwk, true));
+        entry.publicResolved = true;
+        entries.put(kid, entry);
+        return kid;
+    }
+
+    private static String serialize(JWK jwk, boolean publicOnly) {
+        String json = JwkJsonWriter.toJSONString(jwk, publicOnly, true);
+        return json != null ? json.replace("\n", "\n" + ENTRY_INDENT) : null;
+    }
+
+    private void writeAtomically(Path target, boolean publicOnly) throws IOException {
+        Collection<String> serialized = publicOnly ? publicEntries() : privateEntries();
+        replaceAtomically(target, channel -> {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            writeSet(writer, serialized);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Replaces a file by writing a temporary file next to it, forcing it to disk and renaming it into place
+     *
+     * @param target The file to replace
+     * @param content Writes the new content
+     * @throws IOException If the file could not be written
+     */
+    static void replaceAtomically(Path target, Content content) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                content.writeTo(channel);
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            forceDirectory(dir);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Forces a directory's entries to disk, so a rename into it survives a crash
+     *
+     * @param dir The directory
+     */
+    private static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // directories cannot be opened or forced on every platform, Windows among them
+        }
+    }
+
+    private void writeSet(Writer writer, Collection<String> serialized) throws IOException {
+        writer.write("{\n  \"keys\": [");
+        boolean first = true;
+        for (String entry : serialized) {
+            writer.write(first ? "\n" : ",\n");
+            writer.write(ENTRY_INDENT);
+            writer.write(entry);
+            first = false;
+        }
+        writer.write(first ? "]\n}" : "\n  ]\n}");
+    }
+
+    private Collection<String> privateEntries() {
+        return entries.values().stream().map(entry -> entry.privateJson).toList();
+    }
+
+    private Collection<String> publicEntries() throws IOException {
+        List<String> serialized = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            String json = entry.publicJson();
+            if (json != null) {
+                serialized.add(json);
+            }
+        }
+        return serialized;
+    }
+
+    /**
+     * Writes the content of a file being replaced
+     */
+    @FunctionalInterface
+    interface Content {
+        void writeTo(WritableByteChannel channel) throws IOException;
+    }
+
+    /**
+     * Serialized JSON for one key, the public half worked out from the private one only if the public file lacked it
+     */
+    private static final class Entry {
+        private final String privateJson;
+        private String publicJson;
+        private boolean publicResolved;
+
+        /**
+         * @param privateJson The full key, as written to the private file
+         * @param publicJson The public half of the key as found in the public file, or null if it was not there
+         */
+        Entry(String privateJson, String publicJson) {
+            this.privateJson = privateJson;
+            this.publicJson = publicJson;
+            this.publicResolved = publicJson != null;
+        }
+
+        /**
+         * @return The public half of the key, or null for symmetric keys
+         * @throws IOException If the private entry read from the file is not a valid JWK
+         */
+        String publicJson() throws IOException {
+            if (!publicResolved) {
+                try {
+                    publicJson = serialize(JWK.parse(privateJson), true);
+                } catch (ParseException e) {
+                    throw new IOException("Invalid JWK in key set: " + e.getMessage(), e);
+                }
+                publicResolved = true;
+            }
+            return publicJson;
+        }
+    }
+
+    /**
+     * Splits a JWK Set document into the raw text of its entries without parsing the keys themselves
+     */
+    static final class RawJwkSet {
+        private final String json;
+        private int pos;
+
+        private RawJwkSet(String json) {
+            this.json = json;
+        }
+
+        /**
+         * @param json A JWK Set document
+         * @return The raw text of each object in its {@code keys} array, in order
+         * @throws ParseException If the document is not an object with a {@code keys} array of objects
+         */
+        static List<String> entries(String json) throws ParseException {
+            return new RawJwkSet(json).readEntries();
+        }
+
+        /**
+         * @param entry The raw text of one JWK object
+         * @return The value of its top-level {@code kid} member, or null if it has none
+         * @throws ParseException If the entry is not a JSON object
+         */
+        static String kid(String entry) throws ParseException {
+            RawJwkSet scanner = new RawJwkSet(entry);
+            scanner.expect('{');
+            if (scanner.peek() == '}') {
+                return null;
+            }
+            do {
+                String name = scanner.readString();
+                scanner.expect(':');
+                if ("kid".equals(name) && scanner.peek() == '"') {
+                    return scanner.readString();
+                }
+                scanner.skipValue();
+            } while (scanner.next(',', '}') == ',');
+            return null;
+        }
+
+        private List<String> readEntries() throws ParseException {
+            List<String> entries = new ArrayList<>();
+            expect('{');
+            if (peek() == '}') {
+                throw new ParseException("JWK Set has no \"keys\" member", pos);
+            }
+            boolean found = false;
+            do {
+                String name = readString();
+                expect(':');
+                if (!"keys".equals(name)) {
+                    skipValue();
+                    continue;
+                }
+                found = true;
+                expect('[');
+                if (peek() == ']') {
+                    pos++;
+                    continue;
+                }
+                do {
+                    if (peek() != '{') {
+                        throw new ParseException("JWK Set entry is not an object", pos);
+                    }
+                    int start = pos;
+                    skipValue();
+                    entries.add(json.substring(start, pos));
+                } while (next(',', ']') == ',');
+            } while (next(',', '}') == ',');
+            if (!found) {
+                throw new ParseException("JWK Set has no \"keys\" member", pos);
+            }
+            return entries;
+        }
+
+        /**
+         * Skips whitespace and returns the next character without consuming it
+         */
+        private char peek() throws ParseException {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+            if (pos >= json.length()) {
+                throw new ParseException("Unexpected end of JWK Set", pos);
+            }
+            return json.charAt(pos);
+        }
+
+        private void expect(char c) throws ParseException {
+            if (peek() != c) {
+                throw new ParseException("Expected '" + c + "' in JWK Set, got '" + json.charAt(pos) + "'", pos);
+            }
+            pos++;
+        }
+
+        /**
+         * Consumes the next character, which must be one of the two given
+         */
+        private char next(char a, char b) throws ParseException {
+            char c = peek();
+            if (c != a && c != b) {
+                throw new ParseException("Expected '" + a + "' or '" + b + "' in JWK Set, got '" + c + "'", pos);
+            }
+            pos++;
+            return c;
+        }
+
+        private String readString() throws ParseException {
+            peek();
+            int start = pos;
+            skipString();
+            String literal = json.substring(start, pos);
+            // names and kids rarely hold escapes, so only hand those to a full JSON parser
+            return literal.indexOf('\\') < 0 ? literal.substring(1, literal.length() - 1)
+                : JsonParser.parseString(literal).getAsString();
+        }
+
+        private void skipString() throws ParseException {
+            expect('"');
+            while (pos < json.length()) {
+                char c = json.charAt(pos++);
+                if (c == '\\') {
+                    pos++;
+                } else if (c == '"') {
+                    return;
+                }
+            }
+            throw new ParseException("Unterminated string in JWK Set", pos);
+        }
+
+        private void skipValue() throws ParseException {
+            char c = peek();
+            if (c == '"') {
+                skipString();
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                do {
+                    c = peek();
+                    if (c == '"') {
+                        skipString();
+                        continue;
+                    }
+                    if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                    pos++;
+                } while (depth > 0);
+            } else {
+                // number, true, false or null
+                while (pos < json.length() && ",}] \t\r\n".indexOf(json.charAt(pos)) < 0) {
+                    pos++;
+                }
+            }
+        }
+    }
+}
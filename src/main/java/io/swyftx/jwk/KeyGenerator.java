@@ -2,17 +2,36 @@ package io.swyftx.jwk;
 
 import com.google.common.base.Strings;
 import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
 import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.KeyType;
 import com.nimbusds.jose.jwk.KeyUse;
 
+import java.security.DrbgParameters;
+import java.security.KeyPair;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 /**
  * Helper class to generate Json Web Keys of different types
  */
 public class KeyGenerator {
 
     /**
-     * Creates a JWK based on the specified parameters
+     * One DRBG per worker thread so bulk generation never contends on a shared entropy source
+     */
+    private static final ThreadLocal<SecureRandom> WORKER_RANDOM = ThreadLocal.withInitial(KeyGenerator::newDrbg);
+
+    /**
+     * Creates an RSA JWK based on the specified parameters
      * @param size Key size (required for RSA keys)
      * @param kid Key ID generator
      * @param keyUse Key usage (signing, encryption)
@@ -20,28 +39,265 @@ public class KeyGenerator {
      * @return The generated JWK
      */
     public static JWK makeKey(String size, KeyIdGenerator kid, KeyUse keyUse, Algorithm keyAlg) {
-        return makeRsaKey(size, kid, keyUse, keyAlg);
+        return makeRsaKey(parseKeySize(size), kid, keyUse, keyAlg, null);
     }
 
     /**
-     * Creates an RSA JWK with the specified parameters
-     * @param size Key size in bits
+     * Creates a JWK based on the specified parameters
+     * @param size Key size (required for RSA and oct keys)
+     * @param kid Key ID generator
+     * @param keyType Key type (RSA, EC, OKP, oct)
+     * @param keyUse Key usage (signing, encryption)
+     * @param keyAlg Algorithm for the key
+     * @param keyCurve Curve (required for EC and OKP keys)
+     * @return The generated JWK
+     */
+    public static JWK makeKey(String size, KeyIdGenerator kid, KeyType keyType, KeyUse keyUse, Algorithm keyAlg, Curve keyCurve) {
+        return makeKey(size, kid, keyType, keyUse, keyAlg, keyCurve, null);
+    }
+
+    /**
+     * Creates a JWK on a worker thread of a caller-managed pool, using that thread's own DRBG as {@link #makeKeys}
+     * does, so pools that interleave keys with other work get the same uncontended randomness
+     * @param size Key size (required for RSA and oct keys)
+     * @param kid Key ID generator
+     * @param keyType Key type (RSA, EC, OKP, oct)
+     * @param keyUse Key usage (signing, encryption)
+     * @param keyAlg Algorithm for the key
+     * @param keyCurve Curve (required for EC and OKP keys)
+     * @return The generated JWK
+     */
+    public static JWK makeWorkerKey(String size, KeyIdGenerator kid, KeyType keyType, KeyUse keyUse, Algorithm keyAlg,
+                                    Curve keyCurve) {
+        return makeKey(size, kid, keyType, keyUse, keyAlg, keyCurve, WORKER_RANDOM.get());
+    }
+
+    /**
+     * Creates many RSA JWKs in parallel across all available cores
+     * @param count Number of keys to generate
+     * @param size Key size (required for RSA keys)
+     * @param kid Key ID generator
+     * @param keyUse Key usage (signing, encryption)
+     * @param keyAlg Algorithm for the key
+     * @return The generated JWKs together with the time taken to generate them
+     */
+    public static BulkResult makeKeys(int count, String size, KeyIdGenerator kid, KeyUse keyUse, Algorithm keyAlg) {
+        return makeKeys(count, size, kid, KeyType.RSA, keyUse, keyAlg, null);
+    }
+
+    /**
+     * Creates many JWKs in parallel across all available cores
+     * @param count Number of keys to generate
+     * @param size Key size (required for RSA and oct keys)
+     * @param kid Key ID generator
+     * @param keyType Key type (RSA, EC, OKP, oct)
+     * @param keyUse Key usage (signing, encryption)
+     * @param keyAlg Algorithm for the key
+     * @param keyCurve Curve (required for EC and OKP keys)
+     * @return The generated JWKs, each with a unique kid, together with the time taken to generate them
+     */
+    public static BulkResult makeKeys(int count, String size, KeyIdGenerator kid, KeyType keyType, KeyUse keyUse,
+                                      Algorithm keyAlg, Curve keyCurve) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Key count must be at least 1, got " + count);
+        }
+
+        // validate once up front rather than failing on every worker
+        validate(size, keyType, keyAlg, keyCurve);
+        KidRegistry registry = new KidRegistry();
+        KeyIdGenerator uniqueKid = kid.uniqueIn(registry);
+        int workers = Math.min(count, Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<JWK>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(executor.submit(() -> makeKey(size, uniqueKid, keyType, keyUse, keyAlg, keyCurve, WORKER_RANDOM.get())));
+            }
+
+            List<JWK> keys = new ArrayList<>(count);
+            for (Future<JWK> future : futures) {
+                keys.add(future.get());
+            }
+            return new BulkResult(keys, workers, Duration.ofNanos(System.nanoTime() - start), registry.collisions());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Bulk key generation was interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Bulk key generation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a JWK of any supported type with the specified parameters and source of randomness
+     * @param size Key size (required for RSA and oct keys)
+     * @param kid Key ID generator
+     * @param keyType Key type (RSA, EC, OKP, oct)
+     * @param keyUse Key usage (signing, encryption)
+     * @param keyAlg Algorithm for the key
+     * @param keyCurve Curve (required for EC and OKP keys)
+     * @param random Source of randomness, or null for the provider default
+     * @return The generated JWK
+     */
+    private static JWK makeKey(String size, KeyIdGenerator kid, KeyType keyType, KeyUse keyUse, Algorithm keyAlg,
+                               Curve keyCurve, SecureRandom random) {
+        validate(size, keyType, keyAlg, keyCurve);
+
+        if (keyType.equals(KeyType.RSA)) {
+            return makeRsaKey(parseKeySize(size), kid, keyUse, keyAlg, random);
+        } else if (keyType.equals(KeyType.EC)) {
+            return ECKeyMaker.make(keyCurve, keyUse, keyAlg, kid, random);
+        } else if (keyType.equals(KeyType.OKP)) {
+            return OKPKeyMaker.make(keyCurve, keyUse, keyAlg, kid, random);
+        } else {
+            return OctetSequenceKeyMaker.make(parseKeySize(size), keyUse, keyAlg, kid, random);
+        }
+    }
+
+    /**
+     * Validates that the parameters required by the key type are present
+     * @param size Key size (required for RSA and oct keys)
+     * @param keyType Key type
+     * @param keyAlg Algorithm for the key, which sets the minimum size of oct keys
+     * @param keyCurve Curve (required for EC and OKP keys)
+     */
+    private static void validate(String size, KeyType keyType, Algorithm keyAlg, Curve keyCurve) {
+        if (keyType.equals(KeyType.RSA) || keyType.equals(KeyType.OCT)) {
+            if (Strings.isNullOrEmpty(size)) {
+                throw new IllegalArgumentException("Key size (in bits) is required for key type " + keyType);
+            }
+            int keySize = parseKeySize(size);
+            if (keyType.equals(KeyType.OCT) && keySize < minimumOctKeySize(keyAlg)) {
+                throw new IllegalArgumentException("Key size (in bits) must be at least " + minimumOctKeySize(keyAlg)
+                    + " for key type " + keyType + (keyAlg != null ? " with " + keyAlg : "") + ", got " + keySize);
+            }
+        } else if (keyType.equals(KeyType.EC)) {
+            if (keyCurve == null) {
+                throw new IllegalArgumentException("Curve is required for key type " + keyType);
+            }
+            if (!Curve.P_256.equals(keyCurve) && !Curve.P_384.equals(keyCurve) && !Curve.P_521.equals(keyCurve)) {
+                throw new IllegalArgumentException("Curve " + keyCurve + " is not valid for key type " + keyType);
+            }
+        } else if (keyType.equals(KeyType.OKP)) {
+            if (keyCurve == null) {
+                throw new IllegalArgumentException("Curve is required for key type " + keyType);
+            }
+            if (!Curve.Ed25519.equals(keyCurve) && !Curve.X25519.equals(keyCurve)) {
+                throw new IllegalArgumentException("Curve " + keyCurve + " is not valid for key type " + keyType);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported key type: " + keyType);
+        }
+    }
+
+    /**
+     * RFC 7518 section 3.2 requires an HMAC key at least as long as the hash output. Other oct keys get the same 256 bit
+     * floor as HS256.
+     * @param keyAlg Algorithm for the key, may be null
+     * @return The minimum key size in bits
+     */
+    private static int minimumOctKeySize(Algorithm keyAlg) {
+        if (JWSAlgorithm.HS512.equals(keyAlg)) {
+            return 512;
+        } else if (JWSAlgorithm.HS384.equals(keyAlg)) {
+            return 384;
+        }
+        return 256;
+    }
+
+    /**
+     * Creates an RSA JWK with the specified parameters, taking a pre-generated key pair from the
+     * shared {@link KeyPool} when one is enabled and falling back to generating inline
+     * @param keySize Key size in bits
      * @param kid Key ID generator
      * @param keyUse Key usage (signing, encryption)
      * @param keyAlg Algorithm for the key
+     * @param random Source of randomness for inline generation, or null for the provider default
      * @return The generated RSA JWK
      */
-    private static JWK makeRsaKey(String size, KeyIdGenerator kid, KeyUse keyUse, Algorithm keyAlg) {
+    private static JWK makeRsaKey(Integer keySize, KeyIdGenerator kid, KeyUse keyUse, Algorithm keyAlg, SecureRandom random) {
+        KeyPool pool = KeyPool.shared();
+        if (pool != null) {
+            KeyPair kp = pool.take(new KeyPool.Spec(keySize, keyUse, keyAlg));
+            if (kp != null) {
+                return RSAKeyMaker.toJWK(kp, keyUse, keyAlg, kid);
+            }
+        }
+
+        return RSAKeyMaker.make(keySize, keyUse, keyAlg, kid, random);
+    }
+
+    /**
+     * Starts filling the shared {@link KeyPool}, if one is enabled, with key pairs for RSA keys of these parameters
+     * @param size Key size in bits
+     * @param keyType Key type, nothing is pooled unless it is RSA
+     * @param keyUse Key usage (signing, encryption)
+     * @param keyAlg Algorithm for the key
+     */
+    public static void primeKeyPool(String size, KeyType keyType, KeyUse keyUse, Algorithm keyAlg) {
+        KeyPool pool = KeyPool.shared();
+        if (pool == null || !KeyType.RSA.equals(keyType)) {
+            return;
+        }
+        try {
+            pool.prime(new KeyPool.Spec(parseKeySize(size), keyUse, keyAlg));
+        } catch (IllegalArgumentException e) {
+            // an invalid size is reported when the key itself is generated
+        }
+    }
+
+    /**
+     * Parses and validates an RSA or oct key size
+     * @param size Key size in bits
+     * @return The parsed key size
+     */
+    private static Integer parseKeySize(String size) {
         if (Strings.isNullOrEmpty(size)) {
             throw new IllegalArgumentException("Key size (in bits) is required for key type " + KeyType.RSA);
         }
 
         // Parse the key size
         Integer keySize = Integer.decode(size);
+        if (keySize <= 0) {
+            throw new IllegalArgumentException("Key size (in bits) must be positive, got " + keySize);
+        }
         if (keySize % 8 != 0) {
             throw new IllegalArgumentException("Key size (in bits) must be divisible by 8, got " + keySize);
         }
+        return keySize;
+    }
 
-        return RSAKeyMaker.make(keySize, keyUse, keyAlg, kid);
+    /**
+     * Creates a new, independently seeded DRBG instance
+     * @return The DRBG
+     */
+    private static SecureRandom newDrbg() {
+        try {
+            return SecureRandom.getInstance("DRBG",
+                DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom();
+        }
+    }
+
+    /**
+     * Result of a bulk key generation run
+     * @param keys The generated keys
+     * @param workers Number of worker threads used
+     * @param elapsed Wall clock time taken
+     * @param kidCollisions Number of keys whose kid collided with an earlier one and was given a suffix
+     */
+    public record BulkResult(List<JWK> keys, int workers, Duration elapsed, long kidCollisions) {
+
+        /**
+         * @return Throughput of the run in keys per second
+         */
+        public double keysPerSecond() {
+            long nanos = Math.max(1, elapsed.toNanos());
+            return keys.size() * 1_000_000_000.0 / nanos;
+        }
     }
 }
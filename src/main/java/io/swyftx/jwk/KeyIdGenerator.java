@@ -1,17 +1,24 @@
 package io.swyftx.jwk;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import com.google.common.hash.Hashing;
+import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.KeyUse;
 import com.nimbusds.jose.util.Base64;
 import com.nimbusds.jose.util.Base64URL;
 
 public class KeyIdGenerator {
+	private static final ThreadLocal<MessageDigest> SHA256_DIGEST = ThreadLocal.withInitial(() -> digest("SHA-256"));
+	private static final ThreadLocal<MessageDigest> SHA1_DIGEST = ThreadLocal.withInitial(() -> digest("SHA-1"));
+
 	public static KeyIdGenerator TIMESTAMP = new KeyIdGenerator("timestamp", (use, pubKey) -> {
 		return Optional.ofNullable(use).map(KeyUse::getValue).map(s -> s + "-").orElse("")
 			+ Instant.now().getEpochSecond();
@@ -23,48 +30,95 @@ public class KeyIdGenerator {
 	});
 
 	public static KeyIdGenerator SHA256 = new KeyIdGenerator("sha256", (use, pubKey) -> {
-		byte[] bytes = Hashing.sha256().hashBytes(pubKey).asBytes();
+		byte[] bytes = SHA256_DIGEST.get().digest(pubKey);
 		return Base64URL.encode(bytes).toString();
 	});
 
 	public static KeyIdGenerator SHA1 = new KeyIdGenerator("sha1", (use, pubKey) -> {
-		byte[] bytes = Hashing.sha1().hashBytes(pubKey).asBytes();
+		byte[] bytes = SHA1_DIGEST.get().digest(pubKey);
 		return Base64.encode(bytes).toString();
 	});
 
+	/**
+	 * RFC 7638 JWK thumbprint, computed from the key's public members rather than its encoding
+	 */
+	public static KeyIdGenerator THUMBPRINT = new KeyIdGenerator("thumbprint", null, JwkThumbprint::compute);
+
 	public static KeyIdGenerator NONE = new KeyIdGenerator("none", (use, pubKey) -> {
 		return null;
 	});
 
 	private final String name;
 	private final BiFunction<KeyUse, byte[], String> fn;
+	private final Function<JWK, String> jwkFn;
 
 	public KeyIdGenerator(String name, BiFunction<KeyUse, byte[], String> fn) {
+		this(name, fn, null);
+	}
+
+	private KeyIdGenerator(String name, BiFunction<KeyUse, byte[], String> fn, Function<JWK, String> jwkFn) {
 		this.name = name;
 		this.fn = fn;
+		this.jwkFn = jwkFn;
 	}
 
 	public String generate(KeyUse keyUse, byte[] pubKey) {
+		if (this.fn == null) {
+			throw new IllegalStateException("Key ID generator " + this.name + " needs the JWK, not just its encoded public key");
+		}
 		return this.fn.apply(keyUse, pubKey);
 	}
 
+	/**
+	 * Generates a kid for a key being built
+	 *
+	 * @param keyUse Key usage
+	 * @param pubKey The encoded public key
+	 * @param jwk Builds the key without a kid, only called by generators that need it
+	 * @return The kid
+	 */
+	public String generate(KeyUse keyUse, byte[] pubKey, Supplier<JWK> jwk) {
+		return this.jwkFn != null ? this.jwkFn.apply(jwk.get()) : generate(keyUse, pubKey);
+	}
+
+	/**
+	 * Wraps this generator so every kid it produces is unique within a registry
+	 *
+	 * @param registry The registry of kids already issued
+	 * @return The wrapped generator
+	 */
+	public KeyIdGenerator uniqueIn(KidRegistry registry) {
+		return new KeyIdGenerator(
+			this.name,
+			this.fn != null ? (use, pubKey) -> registry.claim(this.fn.apply(use, pubKey)) : null,
+			this.jwkFn != null ? jwk -> registry.claim(this.jwkFn.apply(jwk)) : null
+		);
+	}
+
 	public String getName() {
 		return this.name;
 	}
 
 	public static List<KeyIdGenerator> values() {
-		return List.of(DATE, TIMESTAMP, SHA256, SHA1, NONE);
+		return List.of(DATE, TIMESTAMP, SHA256, SHA1, THUMBPRINT, NONE);
 	}
 
 	public static KeyIdGenerator get(String name) {
 		return values().stream()
 			.filter(g -> g.getName().equals(name))
 			.findFirst()
-			.orElse(TIMESTAMP);
+			.orElseThrow(() -> new IllegalArgumentException("Unknown key ID generator: " + name));
 	}
 
 	public static KeyIdGenerator specified(String kid) {
 		return new KeyIdGenerator(null, (u, p) -> kid);
 	}
-}
 
+	private static MessageDigest digest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(algorithm);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(algorithm + " is not available", e);
+		}
+	}
+}
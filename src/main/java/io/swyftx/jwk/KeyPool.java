@@ -0,0 +1,176 @@
+package io.swyftx.jwk;
+
+import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+
+import java.security.KeyPair;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-memory pool of pre-generated key pairs, kept topped up by background producer threads.
+ * Key pairs are stored without a kid; the kid is assigned by the caller when a pair is taken.
+ * Enabled for a run with {@code --key-pool}, after which every RSA key {@link KeyGenerator} makes is taken from it
+ * when one is ready. Takes are counted in {@link Metrics#KEY_POOL_TAKES}.
+ */
+public class KeyPool {
+    private static volatile KeyPool shared;
+
+    private final int capacity;
+    private final int producersPerSpec;
+    private final Map<Spec, BlockingQueue<KeyPair>> queues = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final ExecutorService producers;
+
+    /**
+     * Creates a key pool
+     *
+     * @param capacity Maximum number of ready key pairs held per spec
+     * @param producersPerSpec Number of background threads refilling each spec
+     */
+    public KeyPool(int capacity, int producersPerSpec) {
+        if (capacity < 1 || producersPerSpec < 1) {
+            throw new IllegalArgumentException("Key pool capacity and producer count must be at least 1");
+        }
+        this.capacity = capacity;
+        this.producersPerSpec = producersPerSpec;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.producers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "key-pool-producer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Enables the process-wide pool consulted by {@link KeyGenerator} for every RSA key
+     *
+     * @param capacity Maximum number of ready key pairs held per spec
+     * @param producersPerSpec Number of background threads refilling each spec
+     * @return The shared pool
+     */
+    public static synchronized KeyPool enable(int capacity, int producersPerSpec) {
+        if (shared == null) {
+            shared = new KeyPool(capacity, producersPerSpec);
+        }
+        return shared;
+    }
+
+    /**
+     * @return The process-wide pool, or null if pooling has not been enabled
+     */
+    public static KeyPool shared() {
+        return shared;
+    }
+
+    /**
+     * Starts background producers for a spec so its queue fills before the first take
+     *
+     * @param spec The key parameters to pre-generate
+     */
+    public void prime(Spec spec) {
+        queueFor(spec);
+    }
+
+    /**
+     * Takes a ready key pair from the pool without blocking
+     *
+     * @param spec The key parameters required
+     * @return A key pair, or null if none is ready and the caller should generate inline
+     */
+    public KeyPair take(Spec spec) {
+        KeyPair kp = queueFor(spec).poll();
+        if (kp != null) {
+            hits.increment();
+            Metrics.KEY_POOL_TAKES.inc("hit");
+        } else {
+            misses.increment();
+            Metrics.KEY_POOL_TAKES.inc("miss");
+        }
+        return kp;
+    }
+
+    /**
+     * @return Number of takes served from the pool
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Number of takes that found the pool empty
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @param spec The key parameters
+     * @return Number of key pairs currently ready for the spec
+     */
+    public int available(Spec spec) {
+        BlockingQueue<KeyPair> queue = queues.get(spec);
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Stops all background producers
+     */
+    public void shutdown() {
+        producers.shutdownNow();
+    }
+
+    /**
+     * @return Summary of the pool counters
+     */
+    public String stats() {
+        return "Key pool hits: " + hits() + ", misses: " + misses();
+    }
+
+    private BlockingQueue<KeyPair> queueFor(Spec spec) {
+        return queues.computeIfAbsent(spec, s -> {
+            BlockingQueue<KeyPair> queue = new ArrayBlockingQueue<>(capacity);
+            for (int i = 0; i < producersPerSpec; i++) {
+                producers.submit(() -> produce(s, queue));
+            }
+            return queue;
+        });
+    }
+
+    private void produce(Spec spec, BlockingQueue<KeyPair> queue) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long start = System.nanoTime();
+                KeyPair kp = RSAKeyMaker.generateKeyPair(spec.keySize(), null);
+                if (kp == null) {
+                    Metrics.KEY_GENERATION_FAILURES.inc("RSA");
+                    return;
+                }
+                Metrics.KEY_GENERATION.observeSince(start, "RSA");
+                // blocks while the pool is full, resuming as soon as a pair is taken
+                queue.put(kp);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Key parameters identifying one pool queue
+     *
+     * @param keySize Key size in bits
+     * @param keyUse Key usage
+     * @param keyAlg Key algorithm
+     */
+    public record Spec(int keySize, KeyUse keyUse, Algorithm keyAlg) {
+    }
+}
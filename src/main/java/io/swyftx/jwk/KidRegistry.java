@@ -0,0 +1,61 @@
+package io.swyftx.jwk;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe set of issued kids that hands out a unique kid for every key. A kid that was already issued gets a
+ * numeric suffix, {@code -2}, {@code -3} and so on, taken from a per-kid counter so resolving a collision does not
+ * rescan earlier suffixes.
+ */
+public class KidRegistry {
+    private final Set<String> issued = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> suffixes = new ConcurrentHashMap<>();
+    private final LongAdder collisions = new LongAdder();
+
+    /**
+     * Registers a kid, resolving a collision with one already issued
+     *
+     * @param kid The kid to register, may be null for keys without a kid
+     * @return The kid itself if it was unused, otherwise a suffixed kid that is
+     */
+    public String claim(String kid) {
+        if (kid == null || issued.add(kid)) {
+            return kid;
+        }
+
+        collisions.increment();
+        AtomicInteger counter = suffixes.computeIfAbsent(kid, k -> new AtomicInteger(1));
+        while (true) {
+            String candidate = kid + "-" + counter.incrementAndGet();
+            if (issued.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * @param kid The kid to look up
+     * @return true if the kid has been issued
+     */
+    public boolean contains(String kid) {
+        return issued.contains(kid);
+    }
+
+    /**
+     * @return Number of kids issued
+     */
+    public int size() {
+        return issued.size();
+    }
+
+    /**
+     * @return Number of kids that had to be suffixed
+     */
+    public long collisions() {
+        return collisions.sum();
+    }
+}
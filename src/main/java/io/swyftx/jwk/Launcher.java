@@ -1,14 +1,10 @@
 package io.swyftx.jwk;
 
-// Standard Java Security & Crypto
-import java.security.Security;
-
 // Apache Commons CLI
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.ParseException;
 
-// BouncyCastle
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import java.nio.file.Path;
 
 /**
  * Small Helper App to generate Json Web Keys
@@ -16,20 +12,32 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 public class Launcher {
 
     public static void main(String[] args) {
-        Security.addProvider(new BouncyCastleProvider());
+        long mainStart = Timings.start();
 
         try {
             CommandLine cmd = Options.parseCommandLine(args);
+            if (cmd.hasOption("T")) {
+                Timings.enable(mainStart);
+            }
+            if (cmd.hasOption("M")) {
+                Metrics.writeOnExit(Path.of(cmd.getOptionValue("M")));
+            }
 
             if (cmd.hasOption("h")) {
                 throw Options.printUsageAndExit("Vault JWKS Generator\n");
             }
 
+            if (cmd.hasOption("m")) {
+                Timings.record("parse arguments", mainStart);
+                HandlerFactory.executeManifest(cmd);
+                return;
+            }
+
             String secretTypeValue = Options.validateSecretType(cmd.getOptionValue("s"));
-            String secretPath = cmd.getOptionValue("p");
+            Timings.record("parse arguments", mainStart);
 
-            // Use the handler factory to execute the appropriate handler
-            HandlerFactory.executeHandler(secretTypeValue, secretPath);
+            // Use the handler factory to execute the appropriate handler, which sets up only the subsystems it needs
+            HandlerFactory.executeHandler(secretTypeValue, cmd);
 
         } catch (ParseException e) {
             throw Options.printUsageAndExit("Failed to parse arguments: " + e.getMessage());
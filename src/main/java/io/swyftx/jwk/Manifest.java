@@ -0,0 +1,137 @@
+package io.swyftx.jwk;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A JSON list of secrets to generate and store in one run. Each entry names its secret type, Vault path and,
+ * optionally, the key-value mount, plus the same parameters the command line takes for that type under the long
+ * option names:
+ * <pre>
+ * {"secrets": [
+ *   {"secret": "jwks", "path": "auth/signing", "type": "EC", "curve": "P-384"},
+ *   {"secret": "jwks", "path": "auth/fleet", "count": 50, "kid": "thumbprint"},
+ *   {"secret": "cosign", "path": "ci/cosign"},
+ *   {"secret": "eightcap", "path": "trading/eightcap", "mount": "kv"}
+ * ]}
+ * </pre>
+ */
+public class Manifest {
+    private static final Set<String> COMMON_FIELDS = Set.of("secret", "path", "mount");
+    private static final Map<String, Set<String>> TYPE_FIELDS = ImmutableMap.of(
+        "jwks", Set.of("count", "type", "kid", "size", "curve", "use", "algorithm", "format"),
+        "cosign", Set.of(),
+        "eightcap", Set.of()
+    );
+
+    /**
+     * One secret, or for a JWKS entry with a count, one set of keys
+     *
+     * @param index Position of the entry in the manifest, from 1
+     * @param secretType The secret type
+     * @param kvMountPath The key-value mount to write to
+     * @param options The options for the secret type, including its Vault path
+     */
+    public record Entry(int index, String secretType, String kvMountPath, Options.BaseOptions options) {
+
+        /**
+         * @return The Vault path of the entry
+         */
+        public String secretPath() {
+            return options.secretPath;
+        }
+    }
+
+    /**
+     * Reads and validates a manifest
+     *
+     * @param file The manifest file
+     * @return The entries in manifest order
+     * @throws IOException If the file could not be read
+     * @throws IllegalArgumentException If the manifest is malformed, naming the entry at fault
+     */
+    public static List<Entry> load(Path file) throws IOException {
+        JsonElement root;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            root = JsonParser.parseReader(reader);
+        } catch (JsonParseException e) {
+            throw new IllegalArgumentException("Invalid manifest JSON in " + file + ": " + e.getMessage());
+        }
+        if (!root.isJsonObject() || !root.getAsJsonObject().has("secrets") || !root.getAsJsonObject().get("secrets").isJsonArray()) {
+            throw new IllegalArgumentException("Manifest " + file + " must be an object with a \"secrets\" array");
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        int index = 0;
+        for (JsonElement element : root.getAsJsonObject().getAsJsonArray("secrets")) {
+            index++;
+            if (!element.isJsonObject()) {
+                throw new IllegalArgumentException("Manifest entry " + index + " is not an object");
+            }
+            entries.add(parseEntry(index, element.getAsJsonObject()));
+        }
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException("Manifest " + file + " lists no secrets");
+        }
+        return ImmutableList.copyOf(entries);
+    }
+
+    private static Entry parseEntry(int index, JsonObject json) {
+        String secretType = string(json, "secret");
+        if (!TYPE_FIELDS.containsKey(secretType)) {
+            throw new IllegalArgumentException("Manifest entry " + index + " has invalid secret type: "
+                + (secretType == null ? "none supplied" : secretType));
+        }
+        for (String field : json.keySet()) {
+            if (!COMMON_FIELDS.contains(field) && !TYPE_FIELDS.get(secretType).contains(field)) {
+                throw new IllegalArgumentException("Manifest entry " + index + " has unsupported field for " + secretType + ": " + field);
+            }
+        }
+        String secretPath = string(json, "path");
+        if (Strings.isNullOrEmpty(secretPath)) {
+            throw new IllegalArgumentException("Manifest entry " + index + " has no Vault path");
+        }
+        String kvMountPath = json.has("mount") ? string(json, "mount") : VaultClient.DEFAULT_KV_MOUNT_PATH;
+
+        Options.BaseOptions options = switch (secretType) {
+            case "jwks" -> {
+                int count = json.has("count") ? json.get("count").getAsInt() : 1;
+                if (count < 1) {
+                    throw new IllegalArgumentException("Manifest entry " + index + " has invalid key count, must be at least 1: " + count);
+                }
+                yield new Options.JwksOptions.Builder(secretPath)
+                    .count(count)
+                    .type(string(json, "type"))
+                    .kid(string(json, "kid"))
+                    .size(string(json, "size"))
+                    .curve(string(json, "curve"))
+                    .use(string(json, "use"))
+                    .algorithm(string(json, "algorithm"))
+                    .format(string(json, "format"))
+                    .build();
+            }
+            case "cosign" -> new Options.CosignOptions(secretPath);
+            default -> new Options.EightcapOptions(secretPath);
+        };
+        return new Entry(index, secretType, kvMountPath, options);
+    }
+
+    private static String string(JsonObject json, String field) {
+        JsonElement value = json.get(field);
+        return value == null || value.isJsonNull() ? null : value.getAsString();
+    }
+}
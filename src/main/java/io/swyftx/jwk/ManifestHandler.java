@@ -0,0 +1,179 @@
+package io.swyftx.jwk;
+
+import com.google.common.base.Suppliers;
+
+import java.io.Console;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Handler for manifest runs, which generate and store every secret listed in a manifest through one pipeline
+ */
+public class ManifestHandler {
+
+    /**
+     * Handles a manifest run
+     *
+     * @param options The manifest options
+     */
+    public static void handle(Options.ManifestOptions options) {
+        List<Manifest.Entry> entries;
+        try {
+            entries = Manifest.load(Path.of(options.manifestFile));
+        } catch (NoSuchFileException e) {
+            throw Options.printUsageAndExit("Manifest not found: " + options.manifestFile);
+        } catch (IOException e) {
+            throw Options.printUsageAndExit("Unable to read manifest " + options.manifestFile + ": " + e.getMessage());
+        } catch (IllegalArgumentException | IllegalStateException | UnsupportedOperationException e) {
+            throw Options.printUsageAndExit(e.getMessage());
+        }
+
+        // scrypt is only worth running if there are cosign entries, and then only once, on a generation worker
+        Supplier<CosignKeyGenerator> cosign = Suppliers.memoize(() -> new CosignKeyGenerator(new char[0]));
+        List<SecretPipeline.Task<?>> tasks = new ArrayList<>();
+        // every credential prompted for, wiped once the run is over whether or not its task got that far
+        List<char[]> credentials = new ArrayList<>();
+        SecretPipeline.Result result;
+        try {
+            for (Manifest.Entry entry : entries) {
+                switch (entry.secretType()) {
+                    case "jwks" -> addJwksTasks(entry, tasks);
+                    case "cosign" -> tasks.add(cosignTask(entry, cosign));
+                    default -> tasks.add(eightcapTask(entry, credentials));
+                }
+            }
+
+            System.out.println("Provisioning " + tasks.size() + " secrets from " + entries.size() + " manifest entries...");
+            long start = Timings.start();
+            result = new SecretPipeline(new VaultClient(), options.parallelism).run(tasks);
+            Timings.record("manifest pipeline", start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            credentials.forEach(chars -> Arrays.fill(chars, '\0'));
+        }
+
+        for (SecretPipeline.StageStats stage : result.stages()) {
+            System.out.printf("  %-10s %5d secrets in %6d ms (%.2f secrets/sec, %d ms busy, %d %s)%n",
+                stage.name(), stage.items(), stage.wall().toMillis(), stage.itemsPerSecond(), stage.busy().toMillis(),
+                stage.threads(), "write".equals(stage.name()) ? "in flight" : stage.threads() == 1 ? "thread" : "threads");
+        }
+        for (SecretPipeline.Outcome outcome : result.outcomes()) {
+            if (!outcome.success()) {
+                System.err.println("Failed to provision " + outcome.label()
+                    + (outcome.secretPath() != null ? " at " + outcome.secretPath() : "") + ": " + outcome.error());
+            }
+        }
+        if (result.unchanged() > 0) {
+            System.out.println("Skipped " + result.unchanged() + " writes to secrets that were already up to date");
+        }
+        if (result.failed() == 0) {
+            System.out.println("Provisioned " + tasks.size() + " secrets from " + options.manifestFile + " in "
+                + result.elapsed().toMillis() + " ms");
+        } else {
+            System.err.println("Failed to provision " + result.failed() + " of " + tasks.size() + " secrets from "
+                + options.manifestFile);
+        }
+    }
+
+    /**
+     * Adds a task per key. A single key is written to the entry's path, more are written to {@code <path>/<kid>}
+     * with kids made unique across the entry, as with {@code -n}.
+     */
+    private static void addJwksTasks(Manifest.Entry entry, List<SecretPipeline.Task<?>> tasks) {
+        Options.JwksOptions options = (Options.JwksOptions) entry.options();
+        KeyGenerator.primeKeyPool(options.size, options.keyType, options.keyUse, options.keyAlg);
+        KeyIdGenerator kid = options.count > 1 ? options.generator.uniqueIn(new KidRegistry()) : options.generator;
+        for (int i = 0; i < options.count; i++) {
+            String fallbackName = String.valueOf(i);
+            tasks.add(new SecretPipeline.Task<>(
+                "jwks " + entry.secretPath(),
+                () -> KeyGenerator.makeWorkerKey(options.size, kid, options.keyType, options.keyUse, options.keyAlg, options.keyCurve),
+                jwk -> {
+                    String secretPath = options.count == 1 ? entry.secretPath()
+                        : entry.secretPath() + "/" + (jwk.getKeyID() != null ? jwk.getKeyID() : fallbackName);
+                    return new VaultClient.SecretWrite(entry.kvMountPath(), secretPath,
+                        JwksHandler.privateKeyData(jwk, options.format));
+                }
+            ));
+        }
+    }
+
+    private static SecretPipeline.Task<CosignKeyGenerator.CosignKeyPair> cosignTask(Manifest.Entry entry,
+                                                                                  Supplier<CosignKeyGenerator> cosign) {
+        return new SecretPipeline.Task<>(
+            "cosign " + entry.secretPath(),
+            () -> cosign.get().generate(),
+            keyPair -> {
+                Map<String, Object> secretData = new HashMap<>();
+                secretData.put("privateKey", keyPair.privateKey());
+                secretData.put("password", "");
+                secretData.put("publicKey", keyPair.publicKey());
+                return new VaultClient.SecretWrite(entry.kvMountPath(), entry.secretPath(), secretData);
+            }
+        );
+    }
+
+    /**
+     * Prompts for the credentials up front, as the console can only take one prompt at a time and the pipeline
+     * should not stall on one mid-run
+     *
+     * @param credentials Collects each credential read, for the caller to wipe once the run is over
+     */
+    private static SecretPipeline.Task<char[][]> eightcapTask(Manifest.Entry entry, List<char[]> credentials) {
+        Console console = System.console();
+        if (console == null) {
+            throw Options.printUsageAndExit("Manifest entry " + entry.index() + " is an eightcap secret, which needs an interactive console");
+        }
+        System.out.println("Please enter the Eightcap credentials for " + entry.secretPath()
+            + " below. Note, these are masked input fields and entered text will not be visible on the screen.");
+        char[][] values = {
+            readCredential(console, "Enter Eightcap Entity ID: ", entry, credentials),
+            readCredential(console, "Enter Eightcap Username: ", entry, credentials),
+            readCredential(console, "Enter Eightcap Password: ", entry, credentials)
+        };
+        return new SecretPipeline.Task<>(
+            "eightcap " + entry.secretPath(),
+            () -> values,
+            chars -> {
+                Map<String, Object> secretData = new HashMap<>();
+                try {
+                    secretData.put("EIGHTCAP_ENTITY_ID", SecretBytes.copyOf(chars[0]));
+                    secretData.put("EIGHTCAP_USERNAME", SecretBytes.copyOf(chars[1]));
+                    secretData.put("EIGHTCAP_PASSWORD", SecretBytes.copyOf(chars[2]));
+                } catch (RuntimeException e) {
+                    SecretBytes.closeAll(secretData);
+                    throw e;
+                } finally {
+                    for (char[] value : chars) {
+                        Arrays.fill(value, '\0');
+                    }
+                }
+                return new VaultClient.SecretWrite(entry.kvMountPath(), entry.secretPath(), secretData);
+            }
+        );
+    }
+
+    /**
+     * Reads a masked credential from the console, ending the run with every credential read so far wiped if the input
+     * ends first
+     */
+    private static char[] readCredential(Console console, String prompt, Manifest.Entry entry, List<char[]> credentials) {
+        char[] chars = console.readPassword(prompt);
+        if (chars == null) {
+            credentials.forEach(read -> Arrays.fill(read, '\0'));
+            throw Options.printUsageAndExit("Input ended before the Eightcap credentials for manifest entry "
+                + entry.index() + " were entered");
+        }
+        credentials.add(chars);
+        return chars;
+    }
+}
@@ -0,0 +1,292 @@
+package io.swyftx.jwk;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide latency histograms and counters, rendered in the OpenMetrics text format. Recording is lock-free and
+ * always on, as it costs a clock read and a few adder increments. CLI runs write the metrics to a file on exit with
+ * {@code --metrics}, and the JWKS server exposes them at {@link #PATH} for scraping.
+ */
+public class Metrics {
+    public static final String PATH = "/metrics";
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String PREFIX = "jwk_to_vault_";
+    private static final double[] LATENCY_BUCKETS = {
+        0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final List<Family<?>> FAMILIES = new CopyOnWriteArrayList<>();
+
+    public static final Histogram KEY_GENERATION = new Histogram("key_generation_seconds",
+        "Time to generate a key pair or secret key", "type");
+    public static final Counter KEY_GENERATION_FAILURES = new Counter("key_generation_failures",
+        "Keys that could not be generated", "type");
+    public static final Counter KEY_POOL_TAKES = new Counter("key_pool_takes",
+        "RSA keys taken from the --key-pool by outcome: hit for a ready key pair, miss when it was generated inline", "result");
+    public static final Histogram ENCODING = new Histogram("encoding_seconds",
+        "Time to encode keys for storage or output", "format");
+    public static final Histogram VAULT_REQUEST = new Histogram("vault_request_seconds",
+        "Latency of Vault requests, successful or not", "operation");
+    public static final Counter VAULT_REQUESTS = new Counter("vault_requests",
+        "Vault requests by outcome: success, failure, or conflict for a check-and-set that lost a race", "operation", "result");
+    public static final Counter VAULT_RETRIES = new Counter("vault_retries",
+        "Vault requests that were retried", "operation");
+    public static final Counter VAULT_WRITES_UNCHANGED = new Counter("vault_writes_unchanged",
+        "Writes skipped because the secret already held the same data");
+    public static final Counter VAULT_HEDGES = new Counter("vault_hedges",
+        "Reads that were slow enough to send a second, hedged request", "operation");
+    public static final Counter SECRET_CACHE_READS = new Counter("secret_cache_reads",
+        "Cached Vault reads by outcome: hit, revalidated after a version check, miss, or stale while Vault failed", "result");
+    public static final Counter SECRET_CACHE_EVICTIONS = new Counter("secret_cache_evictions",
+        "Cached secrets evicted to keep the read cache within its size");
+    public static final Counter JWKS_REQUESTS = new Counter("jwks_requests",
+        "Requests to the JWKS server by response status", "status");
+
+    /**
+     * Writes the metrics to a file when the process exits, replacing the file atomically
+     *
+     * @param file The file to write
+     */
+    public static void writeOnExit(Path file) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                write(file);
+            } catch (IOException e) {
+                System.err.println("Unable to write metrics to " + file + ": " + e.getMessage());
+            }
+        }, "metrics-writer"));
+    }
+
+    /**
+     * Writes the metrics to a file via a temporary file in the same directory, so a scraper or collector reading it
+     * never sees a partial file
+     *
+     * @param file The file to write
+     * @throws IOException If the file could not be written
+     */
+    public static void write(Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temp, render(), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return Every metric in the OpenMetrics text format, terminated by {@code # EOF}
+     */
+    public static String render() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Family<?> family : FAMILIES) {
+            family.render(out);
+        }
+        return out.append("# EOF\n").toString();
+    }
+
+    /**
+     * A named metric with labelled children, one per distinct set of label values
+     *
+     * @param <C> The child type
+     */
+    private abstract static class Family<C> {
+        final String name;
+        final String help;
+        final String[] labelNames;
+        final Map<List<String>, C> children = new ConcurrentHashMap<>();
+
+        Family(String name, String help, String... labelNames) {
+            this.name = PREFIX + name;
+            this.help = help;
+            this.labelNames = labelNames;
+            FAMILIES.add(this);
+        }
+
+        C child(String... labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(name + " takes " + labelNames.length + " labels, got " + labelValues.length);
+            }
+            return children.computeIfAbsent(Arrays.asList(labelValues), values -> newChild());
+        }
+
+        abstract C newChild();
+
+        abstract String type();
+
+        abstract void renderChild(StringBuilder out, List<String> labelValues, C child);
+
+        void render(StringBuilder out) {
+            out.append("# TYPE ").append(name).append(' ').append(type()).append('\n');
+            if (name.endsWith("_seconds")) {
+                out.append("# UNIT ").append(name).append(" seconds\n");
+            }
+            out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+
+            List<Map.Entry<List<String>, C>> sorted = new ArrayList<>(children.entrySet());
+            sorted.sort(Comparator.comparing(entry -> String.join("\u0000", entry.getKey())));
+            for (Map.Entry<List<String>, C> entry : sorted) {
+                renderChild(out, entry.getKey(), entry.getValue());
+            }
+        }
+
+        void sample(StringBuilder out, String suffix, List<String> labelValues, String extraName, String extraValue,
+                    String value) {
+            out.append(name).append(suffix);
+            if (labelNames.length > 0 || extraName != null) {
+                out.append('{');
+                for (int i = 0; i < labelNames.length; i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    out.append(labelNames[i]).append("=\"");
+                    escape(out, labelValues.get(i));
+                    out.append('"');
+                }
+                if (extraName != null) {
+                    if (labelNames.length > 0) {
+                        out.append(',');
+                    }
+                    out.append(extraName).append("=\"").append(extraValue).append('"');
+                }
+                out.append('}');
+            }
+            out.append(' ').append(value).append('\n');
+        }
+
+        private static void escape(StringBuilder out, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\' -> out.append("\\\\");
+                    case '"' -> out.append("\\\"");
+                    case '\n' -> out.append("\\n");
+                    default -> out.append(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * A monotonically increasing count
+     */
+    public static class Counter extends Family<LongAdder> {
+
+        Counter(String name, String help, String... labelNames) {
+            super(name, help, labelNames);
+        }
+
+        /**
+         * Adds one
+         *
+         * @param labelValues The label values, in the order the labels were declared
+         */
+        public void inc(String... labelValues) {
+            child(labelValues).increment();
+        }
+
+        @Override
+        LongAdder newChild() {
+            return new LongAdder();
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void renderChild(StringBuilder out, List<String> labelValues, LongAdder child) {
+            sample(out, "_total", labelValues, null, null, String.valueOf(child.sum()));
+        }
+    }
+
+    /**
+     * A latency distribution over fixed buckets, from half a millisecond to ten seconds
+     */
+    public static class Histogram extends Family<Histogram.Buckets> {
+
+        Histogram(String name, String help, String... labelNames) {
+            super(name, help, labelNames);
+        }
+
+        /**
+         * Records the time since {@code start}
+         *
+         * @param start A {@link System#nanoTime()} taken when the operation began
+         * @param labelValues The label values, in the order the labels were declared
+         */
+        public void observeSince(long start, String... labelValues) {
+            child(labelValues).observe(System.nanoTime() - start);
+        }
+
+        @Override
+        Buckets newChild() {
+            return new Buckets();
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void renderChild(StringBuilder out, List<String> labelValues, Buckets child) {
+            // read the total first so the +Inf bucket is never below the finite buckets read after it
+            long count = child.count.sum();
+            long cumulative = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += child.counts[i].sum();
+                sample(out, "_bucket", labelValues, "le", String.valueOf(LATENCY_BUCKETS[i]), String.valueOf(Math.min(cumulative, count)));
+            }
+            sample(out, "_bucket", labelValues, "le", "+Inf", String.valueOf(count));
+            sample(out, "_count", labelValues, null, null, String.valueOf(count));
+            sample(out, "_sum", labelValues, null, null, String.valueOf(child.sumNanos.sum() / 1e9));
+        }
+
+        /**
+         * Per-bucket, not cumulative, counts. Observations above the last bucket only count towards the total.
+         */
+        static class Buckets {
+            final LongAdder[] counts = new LongAdder[LATENCY_BUCKETS.length];
+            final LongAdder count = new LongAdder();
+            final LongAdder sumNanos = new LongAdder();
+
+            Buckets() {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = new LongAdder();
+                }
+            }
+
+            void observe(long nanos) {
+                double seconds = nanos / 1e9;
+                for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                    if (seconds <= LATENCY_BUCKETS[i]) {
+                        counts[i].increment();
+                        break;
+                    }
+                }
+                sumNanos.add(nanos);
+                count.increment();
+            }
+        }
+    }
+}
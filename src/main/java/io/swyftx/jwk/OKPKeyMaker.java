@@ -0,0 +1,130 @@
+package io.swyftx.jwk;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.edec.EdECObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PrivateKeyInfo;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+
+import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetKeyPair;
+import com.nimbusds.jose.util.Base64URL;
+
+public class OKPKeyMaker {
+
+    /**
+     * @param keyCurve
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @return
+     */
+    public static OctetKeyPair make(Curve keyCurve, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid) {
+        return make(keyCurve, keyUse, keyAlg, kid, null);
+    }
+
+    /**
+     * @param keyCurve
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @param random Source of randomness, or null for the provider default
+     * @return
+     */
+    public static OctetKeyPair make(Curve keyCurve, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid, SecureRandom random) {
+
+        long start = System.nanoTime();
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(jcaName(keyCurve));
+            if (random != null) {
+                generator.initialize(255, random);
+            }
+            KeyPair kp = generator.generateKeyPair();
+
+            byte[] pubEncoded = kp.getPublic().getEncoded();
+            byte[] x = SubjectPublicKeyInfo.getInstance(pubEncoded).getPublicKeyData().getBytes();
+            byte[] d = ASN1OctetString.getInstance(
+                    PrivateKeyInfo.getInstance(kp.getPrivate().getEncoded()).parsePrivateKey()).getOctets();
+
+            OctetKeyPair.Builder builder = new OctetKeyPair.Builder(keyCurve, Base64URL.encode(x))
+                    .d(Base64URL.encode(d))
+                    .keyUse(keyUse)
+                    .algorithm(keyAlg);
+            OctetKeyPair jwk = builder
+                    .keyID(kid.generate(keyUse, pubEncoded, builder::build))
+                    .build();
+            Metrics.KEY_GENERATION.observeSince(start, "OKP");
+            return jwk;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            Metrics.KEY_GENERATION_FAILURES.inc("OKP");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Converts the public half of an octet key pair to a JCA public key
+     *
+     * @param okp
+     * @return
+     */
+    public static PublicKey toPublicKey(OctetKeyPair okp) throws InvalidKeyException {
+        try {
+            SubjectPublicKeyInfo info = new SubjectPublicKeyInfo(algorithmIdentifier(okp.getCurve()), okp.getDecodedX());
+            return KeyFactory.getInstance(jcaName(okp.getCurve()))
+                    .generatePublic(new X509EncodedKeySpec(info.getEncoded()));
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new InvalidKeyException("Unable to convert OKP public key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Converts the private half of an octet key pair to a JCA private key
+     *
+     * @param okp
+     * @return The private key, or null if the JWK holds no private part
+     */
+    public static PrivateKey toPrivateKey(OctetKeyPair okp) throws InvalidKeyException {
+        if (!okp.isPrivate()) {
+            return null;
+        }
+        try {
+            PrivateKeyInfo info = new PrivateKeyInfo(algorithmIdentifier(okp.getCurve()), new DEROctetString(okp.getDecodedD()));
+            return KeyFactory.getInstance(jcaName(okp.getCurve()))
+                    .generatePrivate(new PKCS8EncodedKeySpec(info.getEncoded()));
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new InvalidKeyException("Unable to convert OKP private key: " + e.getMessage(), e);
+        }
+    }
+
+    private static AlgorithmIdentifier algorithmIdentifier(Curve keyCurve) {
+        ASN1ObjectIdentifier oid = Curve.X25519.equals(keyCurve)
+                ? EdECObjectIdentifiers.id_X25519
+                : EdECObjectIdentifiers.id_Ed25519;
+        return new AlgorithmIdentifier(oid);
+    }
+
+    private static String jcaName(Curve keyCurve) {
+        if (Curve.Ed25519.equals(keyCurve) || Curve.X25519.equals(keyCurve)) {
+            return keyCurve.getName();
+        }
+        throw new IllegalArgumentException("Unsupported curve for key type OKP: " + keyCurve);
+    }
+}
@@ -0,0 +1,58 @@
+package io.swyftx.jwk;
+
+import java.security.SecureRandom;
+
+import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jose.util.Base64URL;
+
+public class OctetSequenceKeyMaker {
+
+    /**
+     * Size of the random stand-in that kids are generated from
+     */
+    private static final int KID_SEED_BYTES = 32;
+
+    /**
+     * @param keySize
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @return
+     */
+    public static OctetSequenceKey make(Integer keySize, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid) {
+        return make(keySize, keyUse, keyAlg, kid, null);
+    }
+
+    /**
+     * @param keySize
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @param random Source of randomness, or null for a new SecureRandom
+     * @return
+     */
+    public static OctetSequenceKey make(Integer keySize, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid, SecureRandom random) {
+
+        long start = System.nanoTime();
+
+        // holder for the random bytes
+        byte[] bytes = new byte[keySize / 8];
+        // the kid goes into every token header, so it comes from independent bytes standing in for the key: a hash of
+        // the key itself would let anyone holding a token check guesses of it
+        byte[] kidSeed = new byte[KID_SEED_BYTES];
+
+        SecureRandom source = random != null ? random : new SecureRandom();
+        source.nextBytes(bytes);
+        source.nextBytes(kidSeed);
+
+        OctetSequenceKey jwk = new OctetSequenceKey.Builder(Base64URL.encode(bytes))
+                .keyUse(keyUse)
+                .algorithm(keyAlg)
+                .keyID(kid.generate(keyUse, kidSeed, () -> new OctetSequenceKey.Builder(Base64URL.encode(kidSeed)).build()))
+                .build();
+        Metrics.KEY_GENERATION.observeSince(start, "oct");
+        return jwk;
+    }
+}
@@ -1,8 +1,11 @@
 package io.swyftx.jwk;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.JWEAlgorithm;
 import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
 import com.nimbusds.jose.jwk.KeyType;
 import com.nimbusds.jose.jwk.KeyUse;
 import org.apache.commons.cli.CommandLine;
@@ -11,8 +14,14 @@ import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.ParseException;
 
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Handles command line options for the JWK to Vault application
@@ -25,7 +34,13 @@ public class Options {
         "cosign"
     );
 
-    private static final List<String> OPTION_ORDER = ImmutableList.of("p", "h", "s");
+    private static final int DEFAULT_PARALLELISM = 8;
+    private static final int DEFAULT_KEEP = 2;
+    private static final int DEFAULT_KEY_POOL_PRODUCERS = 2;
+
+    private static final Pattern SIMPLE_DURATION = Pattern.compile("(\\d+)([smhd])");
+
+    private static final List<String> OPTION_ORDER = ImmutableList.of("p", "h", "s", "m", "n", "t", "i", "b", "c", "u", "a", "o", "P", "f", "x", "K", "C", "v", "j", "r", "k", "d", "l", "w", "S", "R", "D", "H", "E", "I", "g", "T", "M");
 
     static {
         configureCommandLineOptions();
@@ -38,6 +53,36 @@ public class Options {
         options.addOption("h", "help", false, "Print this help message");
         options.addOption("p", "path", true, "Vault path to write secret to, if not supplied no vault secret will be written");
         options.addOption("s", "secret", true, "Secret type to update. Can be one of: " + String.join(", ", SECRET_TYPES));
+        options.addOption("m", "manifest", true, "JSON manifest of secrets to generate and store in one run, in place of -s. Vault writes run up to -j at a time");
+        options.addOption("n", "count", true, "Number of keys to generate in parallel (jwks only), each is written to <path>/<kid>. Defaults to 1");
+        options.addOption("t", "type", true, "Key type (jwks only). Can be one of: RSA, EC, OKP, oct. Defaults to RSA");
+        options.addOption("i", "kid", true, "Key ID generator (jwks only). Can be one of: thumbprint, sha256, sha1, date, timestamp, none. Defaults to sha256");
+        options.addOption("b", "size", true, "Key size in bits (jwks only, RSA and oct). Defaults to 2048 for RSA and 256 for oct");
+        options.addOption("c", "curve", true, "Key curve (jwks only). P-256, P-384, P-521 for EC; Ed25519, X25519 for OKP");
+        options.addOption("u", "use", true, "Key usage (jwks only). Can be one of: sig, enc. Defaults to sig");
+        options.addOption("a", "algorithm", true, "Key algorithm (jwks only). Defaults to one matching the key type and curve");
+        options.addOption("o", "output", true, "File to add the generated keys to as a JWK Set (jwks only)");
+        options.addOption("f", "format", true, "Key encoding (jwks only). jwk: JWK Set files and a PEM private key in Vault; cose: COSE_KeySet CBOR files and a base64url COSE_Key in Vault. Defaults to jwk");
+        options.addOption("x", "certs", true, "Directory to write a certificate chain (<kid>.crt) and private key (<kid>.key) for each generated key to (jwks only)");
+        options.addOption("K", "ca-key", true, "PEM private key of the CA that signs certificates written with -x, self-signed if not supplied (jwks only)");
+        options.addOption("C", "ca-cert", true, "PEM certificate of the CA that signs certificates written with -x (jwks only)");
+        options.addOption("v", "validity", true, "Validity of certificates written with -x, e.g. 90d (jwks only). Defaults to 300d");
+        options.addOption("j", "parallelism", true, "Maximum number of concurrent Vault writes when storing many keys (jwks only). Defaults to 8");
+        options.addOption("r", "rotate", false, "Rotate the JWKS secret at the Vault path with check-and-set, keeping previous public keys (jwks only)");
+        options.addOption("k", "keep", true, "Number of previous public keys to keep in the JWKS when rotating (jwks only). Defaults to 2");
+        options.addOption("P", "public-output", true, "File to add the public half of the generated keys to as a JWK Set (jwks only)");
+        options.addOption("d", "daemon", true, "Keep running and rotate the JWKS at the Vault path on this interval, e.g. 24h (jwks only)");
+        options.addOption("l", "lead", true, "How long before each daemon rotation the next key is published, e.g. 6h (jwks only). Defaults to a quarter of the interval");
+        options.addOption("w", "overlap", true, "How long a replaced key stays in the JWKS after a daemon rotation, e.g. 6h (jwks only). Defaults to a quarter of the interval");
+        options.addOption("S", "serve", true, "Serve the public JWKS from the Vault path, or else the -P/-o file, at /.well-known/jwks.json on this port instead of generating a key, with OpenMetrics at /metrics. With -d, serves the JWKS the daemon rotates (jwks only)");
+        options.addOption("R", "retries", true, "Times to retry a Vault read or write that timed out or got a 5xx, 429 or 412, with jittered exponential backoff. Defaults to " + (RetryPolicy.DEFAULT_MAX_ATTEMPTS - 1));
+        options.addOption("D", "deadline", true, "Maximum time for each Vault operation across all its retries, e.g. 30s. Defaults to " + RetryPolicy.DEFAULT_DEADLINE.toSeconds() + "s");
+        options.addOption("H", "hedge", true, "Send a second Vault read when the first takes longer than this percentile of recent reads, e.g. 95, and use whichever answers first. Off by default");
+        options.addOption("E", "cache-ttl", true, "How long the JWKS server serves a JWKS it read from Vault before checking its version again, e.g. 30s, or <prefix>=<ttl> for secrets whose <mount>/<path> starts with the prefix. May be repeated, the longest matching prefix wins. Defaults to checking on every reload (jwks only)");
+        options.addOption("I", "idempotent", false, "Skip a Vault write when the secret's current version already holds the same data, checked against a hash kept in its custom metadata and keyed with a local key (JWK_TO_VAULT_CONTENT_KEY_FILE, default ~/.jwk-to-vault-content-key)");
+        options.addOption("g", "key-pool", true, "Keep up to this many RSA key pairs per key size generated ahead on background threads, and take each RSA key the run needs from them when one is ready (jwks and manifests). Off by default");
+        options.addOption("T", "timings", false, "Print how long each startup phase took to stderr");
+        options.addOption("M", "metrics", true, "File to write key generation, encoding and Vault request metrics to in the OpenMetrics text format on exit");
     }
 
     /**
@@ -102,24 +147,295 @@ public class Options {
      * Options specific to JWKS secret type
      */
     public static class JwksOptions extends BaseOptions {
+        public final int count;
         public final String size;
         public final KeyIdGenerator generator;
         public final KeyType keyType;
         public final KeyUse keyUse;
         public final Algorithm keyAlg;
+        public final Curve keyCurve;
+        public final String outputFile;
+        public final String publicOutputFile;
+        public final int parallelism;
+        public final boolean rotate;
+        public final int keep;
+        public final int servePort;
+        public final Duration rotationPeriod;
+        public final Duration rotationLead;
+        public final Duration rotationOverlap;
+        public final String certDir;
+        public final String caKeyFile;
+        public final String caCertFile;
+        public final Duration certValidity;
+        public final KeyFormat format;
+        public final Map<String, Duration> cacheTtls;
 
         public JwksOptions(String secretPath) {
-            super(secretPath);
-            this.size = "2048";
-            this.generator = KeyIdGenerator.get("sha256");
+            this(new Builder(secretPath));
+        }
+
+        private JwksOptions(Builder builder) {
+            super(builder.secretPath);
+            if ((builder.caKeyFile == null) != (builder.caCertFile == null)) {
+                throw printUsageAndExit("A CA key (-K) and CA certificate (-C) must be supplied together");
+            }
+            this.format = KeyFormat.parse(builder.format);
+            if (this.format == KeyFormat.COSE && (builder.rotate || builder.rotationPeriod != null || builder.servePort > 0)) {
+                throw printUsageAndExit("COSE keys (-f cose) cannot be rotated or served (-r, -d, -S), which keep a JSON JWKS for verifiers");
+            }
+            this.certDir = builder.certDir;
+            this.caKeyFile = builder.caKeyFile;
+            this.caCertFile = builder.caCertFile;
+            this.certValidity = builder.certValidity != null ? builder.certValidity : CertificateIssuer.DEFAULT_VALIDITY;
+            this.servePort = builder.servePort;
+            this.rotationPeriod = builder.rotationPeriod;
+            this.rotationLead = builder.rotationLead != null || builder.rotationPeriod == null ? builder.rotationLead : builder.rotationPeriod.dividedBy(4);
+            this.rotationOverlap = builder.rotationOverlap != null || builder.rotationPeriod == null ? builder.rotationOverlap : builder.rotationPeriod.dividedBy(4);
+            this.count = builder.count;
+            this.parallelism = builder.parallelism;
+            this.rotate = builder.rotate;
+            this.keep = builder.keep;
+            this.outputFile = builder.outputFile;
+            this.publicOutputFile = builder.publicOutputFile;
+            this.cacheTtls = ImmutableMap.copyOf(builder.cacheTtls);
+            try {
+                this.generator = KeyIdGenerator.get(builder.kid != null ? builder.kid : "sha256");
+            } catch (IllegalArgumentException e) {
+                throw printUsageAndExit(e.getMessage());
+            }
+            if (this.generator == KeyIdGenerator.NONE && (builder.rotate || builder.rotationPeriod != null)) {
+                throw printUsageAndExit("Rotated keys (-r, -d) are replaced and retired by kid, so they cannot use -i none");
+            }
 
             try {
-                this.keyType = KeyType.parse("RSA");
-                this.keyUse = KeyUse.parse("sig");
-                this.keyAlg = JWSAlgorithm.parse("RS256");
+                this.keyType = KeyType.parse(builder.type != null ? builder.type : "RSA");
+                if (!KeyType.RSA.equals(keyType) && !KeyType.EC.equals(keyType)
+                        && !KeyType.OKP.equals(keyType) && !KeyType.OCT.equals(keyType)) {
+                    throw printUsageAndExit("Unsupported key type: " + builder.type);
+                }
+                this.size = builder.size != null ? builder.size : defaultSize(keyType);
+                this.keyCurve = builder.curve != null ? Curve.parse(builder.curve) : defaultCurve(keyType);
+                this.keyUse = KeyUse.parse(builder.use != null ? builder.use : defaultUse(keyCurve));
+                this.keyAlg = builder.alg != null ? new Algorithm(builder.alg) : defaultAlgorithm(keyType, keyCurve);
             } catch (java.text.ParseException e) {
                 throw printUsageAndExit("Could not parse key parameters: " + e.getMessage());
             }
+            if (KeyType.OCT.equals(keyType) && (builder.rotate || builder.rotationPeriod != null)) {
+                throw printUsageAndExit("Symmetric keys (-t oct) cannot be rotated (-r, -d), which publish each key's public half in the JWKS");
+            }
+        }
+
+        private static String defaultSize(KeyType keyType) {
+            if (KeyType.RSA.equals(keyType)) {
+                return "2048";
+            } else if (KeyType.OCT.equals(keyType)) {
+                return "256";
+            }
+            return null;
+        }
+
+        private static Curve defaultCurve(KeyType keyType) {
+            if (KeyType.EC.equals(keyType)) {
+                return Curve.P_256;
+            } else if (KeyType.OKP.equals(keyType)) {
+                return Curve.Ed25519;
+            }
+            return null;
+        }
+
+        private static String defaultUse(Curve keyCurve) {
+            // X25519 is a key agreement curve and cannot sign
+            return Curve.X25519.equals(keyCurve) ? "enc" : "sig";
+        }
+
+        private static Algorithm defaultAlgorithm(KeyType keyType, Curve keyCurve) {
+            if (KeyType.EC.equals(keyType)) {
+                if (Curve.P_384.equals(keyCurve)) {
+                    return JWSAlgorithm.ES384;
+                } else if (Curve.P_521.equals(keyCurve)) {
+                    return JWSAlgorithm.ES512;
+                }
+                return JWSAlgorithm.ES256;
+            } else if (KeyType.OKP.equals(keyType)) {
+                return Curve.X25519.equals(keyCurve) ? JWEAlgorithm.ECDH_ES : JWSAlgorithm.EdDSA;
+            } else if (KeyType.OCT.equals(keyType)) {
+                return JWSAlgorithm.HS256;
+            }
+            return JWSAlgorithm.RS256;
+        }
+
+        /**
+         * Builds {@link JwksOptions} from named settings, each left unset taking the same default as its command line
+         * option
+         */
+        public static class Builder {
+            private final String secretPath;
+            private int count = 1;
+            private String type;
+            private String kid;
+            private String size;
+            private String curve;
+            private String use;
+            private String alg;
+            private String outputFile;
+            private String publicOutputFile;
+            private int parallelism = DEFAULT_PARALLELISM;
+            private boolean rotate;
+            private int keep = DEFAULT_KEEP;
+            private int servePort;
+            private Duration rotationPeriod;
+            private Duration rotationLead;
+            private Duration rotationOverlap;
+            private String certDir;
+            private String caKeyFile;
+            private String caCertFile;
+            private Duration certValidity;
+            private String format;
+            private Map<String, Duration> cacheTtls = Map.of();
+
+            /**
+             * @param secretPath Vault path to write to, or null to write no secret
+             */
+            public Builder(String secretPath) {
+                this.secretPath = secretPath;
+            }
+
+            public Builder count(int count) {
+                this.count = count;
+                return this;
+            }
+
+            public Builder type(String type) {
+                this.type = type;
+                return this;
+            }
+
+            public Builder kid(String kid) {
+                this.kid = kid;
+                return this;
+            }
+
+            public Builder size(String size) {
+                this.size = size;
+                return this;
+            }
+
+            public Builder curve(String curve) {
+                this.curve = curve;
+                return this;
+            }
+
+            public Builder use(String use) {
+                this.use = use;
+                return this;
+            }
+
+            public Builder algorithm(String alg) {
+                this.alg = alg;
+                return this;
+            }
+
+            public Builder outputFile(String outputFile) {
+                this.outputFile = outputFile;
+                return this;
+            }
+
+            public Builder publicOutputFile(String publicOutputFile) {
+                this.publicOutputFile = publicOutputFile;
+                return this;
+            }
+
+            public Builder parallelism(int parallelism) {
+                this.parallelism = parallelism;
+                return this;
+            }
+
+            public Builder rotate(boolean rotate) {
+                this.rotate = rotate;
+                return this;
+            }
+
+            public Builder keep(int keep) {
+                this.keep = keep;
+                return this;
+            }
+
+            public Builder servePort(int servePort) {
+                this.servePort = servePort;
+                return this;
+            }
+
+            public Builder rotationPeriod(Duration rotationPeriod) {
+                this.rotationPeriod = rotationPeriod;
+                return this;
+            }
+
+            public Builder rotationLead(Duration rotationLead) {
+                this.rotationLead = rotationLead;
+                return this;
+            }
+
+            public Builder rotationOverlap(Duration rotationOverlap) {
+                this.rotationOverlap = rotationOverlap;
+                return this;
+            }
+
+            public Builder certDir(String certDir) {
+                this.certDir = certDir;
+                return this;
+            }
+
+            public Builder caKeyFile(String caKeyFile) {
+                this.caKeyFile = caKeyFile;
+                return this;
+            }
+
+            public Builder caCertFile(String caCertFile) {
+                this.caCertFile = caCertFile;
+                return this;
+            }
+
+            public Builder certValidity(Duration certValidity) {
+                this.certValidity = certValidity;
+                return this;
+            }
+
+            public Builder format(String format) {
+                this.format = format;
+                return this;
+            }
+
+            /**
+             * @param cacheTtls Read cache TTLs by {@code <mount>/<path>} prefix, the empty prefix setting the default
+             * @return This builder
+             */
+            public Builder cacheTtls(Map<String, Duration> cacheTtls) {
+                this.cacheTtls = cacheTtls;
+                return this;
+            }
+
+            public JwksOptions build() {
+                return new JwksOptions(this);
+            }
+        }
+    }
+
+    /**
+     * Encoding of generated keys in files and in Vault
+     */
+    public enum KeyFormat {
+        /** JWK Set JSON files, and a PEM private key in Vault */
+        JWK,
+        /** COSE_KeySet CBOR files, and a base64url COSE_Key in Vault */
+        COSE;
+
+        private static KeyFormat parse(String value) {
+            if (value == null || "jwk".equals(value)) {
+                return JWK;
+            } else if ("cose".equals(value)) {
+                return COSE;
+            }
+            throw printUsageAndExit("Unsupported key format: " + value);
         }
     }
 
@@ -141,10 +457,112 @@ public class Options {
         }
     }
 
-    public static BaseOptions createOptions(String secretType, String secretPath) {
+    /**
+     * Builds the Vault retry policy from the -R, -D and -H options
+     *
+     * @param cmd The parsed command line
+     * @return The retry policy
+     */
+    public static RetryPolicy createRetryPolicy(CommandLine cmd) {
+        if (!cmd.hasOption("R") && !cmd.hasOption("D") && !cmd.hasOption("H")) {
+            return RetryPolicy.DEFAULT;
+        }
+        int retries = parseNonNegative("number of retries", cmd.getOptionValue("R", String.valueOf(RetryPolicy.DEFAULT_MAX_ATTEMPTS - 1)));
+        Duration deadline = cmd.hasOption("D") ? parseDuration("deadline", cmd.getOptionValue("D")) : RetryPolicy.DEFAULT_DEADLINE;
+        double hedgePercentile = 0;
+        if (cmd.hasOption("H")) {
+            try {
+                hedgePercentile = Double.parseDouble(cmd.getOptionValue("H"));
+            } catch (NumberFormatException e) {
+                throw printUsageAndExit("Invalid hedge percentile: " + cmd.getOptionValue("H"));
+            }
+            if (hedgePercentile <= 0 || hedgePercentile >= 100) {
+                throw printUsageAndExit("Invalid hedge percentile, must be above 0 and below 100: " + cmd.getOptionValue("H"));
+            }
+        }
+        return new RetryPolicy(retries + 1, RetryPolicy.DEFAULT.baseDelay(), RetryPolicy.DEFAULT.maxDelay(), deadline, hedgePercentile);
+    }
+
+    /**
+     * Enables the shared key pool if -g was given
+     *
+     * @param cmd The parsed command line
+     */
+    public static void enableKeyPool(CommandLine cmd) {
+        if (cmd.hasOption("g")) {
+            KeyPool.enable(parsePositive("key pool size", cmd.getOptionValue("g")), DEFAULT_KEY_POOL_PRODUCERS);
+        }
+    }
+
+    /**
+     * Makes Vault writes skip unchanged data if -I was given, loading the local content hash key first so a key that
+     * cannot be read stops the run before any write
+     *
+     * @param cmd The parsed command line
+     */
+    public static void enableSkipUnchanged(CommandLine cmd) {
+        if (cmd.hasOption("I")) {
+            try {
+                ContentHash.loadKey();
+            } catch (IllegalStateException e) {
+                throw printUsageAndExit(e.getMessage());
+            }
+        }
+        VaultClient.setDefaultSkipUnchanged(cmd.hasOption("I"));
+    }
+
+    /**
+     * Options for a manifest run, which takes the secret types and paths from the manifest
+     */
+    public static class ManifestOptions extends BaseOptions {
+        public final String manifestFile;
+        public final int parallelism;
+
+        public ManifestOptions(String manifestFile, int parallelism) {
+            super(null);
+            this.manifestFile = manifestFile;
+            this.parallelism = parallelism;
+        }
+    }
+
+    public static ManifestOptions createManifestOptions(CommandLine cmd) {
+        if (cmd.hasOption("s") || cmd.hasOption("p")) {
+            throw printUsageAndExit("A manifest (-m) sets the secret types and Vault paths, so -s and -p cannot be used with it");
+        }
+        return new ManifestOptions(
+            cmd.getOptionValue("m"),
+            parsePositive("parallelism", cmd.getOptionValue("j", String.valueOf(DEFAULT_PARALLELISM)))
+        );
+    }
+
+    public static BaseOptions createOptions(String secretType, CommandLine cmd) {
+        String secretPath = cmd.getOptionValue("p");
         switch (secretType) {
             case "jwks":
-                return new JwksOptions(secretPath);
+                return new JwksOptions.Builder(secretPath)
+                    .count(parsePositive("key count", cmd.getOptionValue("n", "1")))
+                    .type(cmd.getOptionValue("t"))
+                    .kid(cmd.getOptionValue("i"))
+                    .size(cmd.getOptionValue("b"))
+                    .curve(cmd.getOptionValue("c"))
+                    .use(cmd.getOptionValue("u"))
+                    .algorithm(cmd.getOptionValue("a"))
+                    .outputFile(cmd.getOptionValue("o"))
+                    .publicOutputFile(cmd.getOptionValue("P"))
+                    .parallelism(parsePositive("parallelism", cmd.getOptionValue("j", String.valueOf(DEFAULT_PARALLELISM))))
+                    .rotate(cmd.hasOption("r"))
+                    .keep(parseNonNegative("number of keys to keep", cmd.getOptionValue("k", String.valueOf(DEFAULT_KEEP))))
+                    .servePort(cmd.hasOption("S") ? parsePositive("port", cmd.getOptionValue("S")) : 0)
+                    .rotationPeriod(cmd.hasOption("d") ? parseDuration("rotation interval", cmd.getOptionValue("d")) : null)
+                    .rotationLead(cmd.hasOption("l") ? parseDuration("rotation lead time", cmd.getOptionValue("l")) : null)
+                    .rotationOverlap(cmd.hasOption("w") ? parseDuration("rotation overlap", cmd.getOptionValue("w")) : null)
+                    .certDir(cmd.getOptionValue("x"))
+                    .caKeyFile(cmd.getOptionValue("K"))
+                    .caCertFile(cmd.getOptionValue("C"))
+                    .certValidity(cmd.hasOption("v") ? parseDuration("certificate validity", cmd.getOptionValue("v")) : null)
+                    .format(cmd.getOptionValue("f"))
+                    .cacheTtls(parseCacheTtls(cmd.getOptionValues("E")))
+                    .build();
             case "eightcap":
                 return new EightcapOptions(secretPath);
             case "cosign":
@@ -153,4 +571,92 @@ public class Options {
                 throw printUsageAndExit("Unsupported secret type: " + secretType);
         }
     }
+
+    /**
+     * Parses a numeric argument that must be at least 1
+     *
+     * @param name The name of the argument, used in error messages
+     * @param value The argument value
+     * @return The parsed value
+     */
+    private static int parsePositive(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 1) {
+                throw printUsageAndExit("Invalid " + name + ", must be at least 1: " + parsed);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw printUsageAndExit("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Parses a numeric argument that must be zero or more
+     *
+     * @param name The name of the argument, used in error messages
+     * @param value The argument value
+     * @return The parsed value
+     */
+    private static int parseNonNegative(String name, String value) {
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw printUsageAndExit("Invalid " + name + ", cannot be negative: " + parsed);
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw printUsageAndExit("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Parses the -E read cache TTLs, each either a duration for every secret or {@code <prefix>=<duration>}
+     *
+     * @param values The argument values, or null if none were given
+     * @return The TTLs by {@code <mount>/<path>} prefix, a bare duration keyed by the empty prefix
+     */
+    private static Map<String, Duration> parseCacheTtls(String[] values) {
+        Map<String, Duration> ttls = new LinkedHashMap<>();
+        if (values == null) {
+            return ttls;
+        }
+        for (String value : values) {
+            int separator = value.lastIndexOf('=');
+            String prefix = separator >= 0 ? value.substring(0, separator) : "";
+            ttls.put(prefix, parseDuration("cache TTL", value.substring(separator + 1)));
+        }
+        return ttls;
+    }
+
+    /**
+     * Parses a duration argument such as {@code 90s}, {@code 15m}, {@code 24h}, {@code 7d} or {@code PT1H30M}
+     *
+     * @param name The name of the argument, used in error messages
+     * @param value The argument value
+     * @return The parsed value
+     */
+    private static Duration parseDuration(String name, String value) {
+        Duration parsed;
+        Matcher matcher = SIMPLE_DURATION.matcher(value);
+        if (matcher.matches()) {
+            long amount = Long.parseLong(matcher.group(1));
+            parsed = switch (matcher.group(2)) {
+                case "s" -> Duration.ofSeconds(amount);
+                case "m" -> Duration.ofMinutes(amount);
+                case "h" -> Duration.ofHours(amount);
+                default -> Duration.ofDays(amount);
+            };
+        } else {
+            try {
+                parsed = Duration.parse(value);
+            } catch (DateTimeParseException e) {
+                throw printUsageAndExit("Invalid " + name + ": " + value);
+            }
+        }
+        if (parsed.isZero() || parsed.isNegative()) {
+            throw printUsageAndExit("Invalid " + name + ", must be positive: " + value);
+        }
+        return parsed;
+    }
 }
@@ -3,6 +3,7 @@ package io.swyftx.jwk;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.interfaces.RSAPublicKey;
 
@@ -20,24 +21,71 @@ public class RSAKeyMaker {
      * @return
      */
     public static RSAKey make(Integer keySize, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid) {
+        return make(keySize, keyUse, keyAlg, kid, null);
+    }
+
+    /**
+     * @param keySize
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @param random Source of randomness for the prime search, or null for the provider default
+     * @return
+     */
+    public static RSAKey make(Integer keySize, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid, SecureRandom random) {
+
+        long start = System.nanoTime();
+        KeyPair kp = generateKeyPair(keySize, random);
+        if (kp == null) {
+            Metrics.KEY_GENERATION_FAILURES.inc("RSA");
+            return null;
+        }
+        RSAKey jwk = toJWK(kp, keyUse, keyAlg, kid);
+        Metrics.KEY_GENERATION.observeSince(start, "RSA");
+        return jwk;
+    }
 
+    /**
+     * Generates a raw RSA key pair without assigning any JWK metadata
+     *
+     * @param keySize
+     * @param random Source of randomness for the prime search, or null for the provider default
+     * @return The key pair, or null if RSA is not available
+     */
+    public static KeyPair generateKeyPair(Integer keySize, SecureRandom random) {
         try {
             KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
-            generator.initialize(keySize);
-            KeyPair kp = generator.generateKeyPair();
-
-            RSAPublicKey pub = (RSAPublicKey) kp.getPublic();
-            RSAPrivateCrtKey priv = (RSAPrivateCrtKey) kp.getPrivate();
-
-            return new RSAKey.Builder(pub)
-                    .privateKey(priv)
-                    .keyUse(keyUse)
-                    .algorithm(keyAlg)
-                    .keyID(kid.generate(keyUse, pub.getEncoded()))
-                    .build();
+            if (random != null) {
+                generator.initialize(keySize, random);
+            } else {
+                generator.initialize(keySize);
+            }
+            return generator.generateKeyPair();
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
             return null;
         }
     }
+
+    /**
+     * Wraps an existing RSA key pair as a JWK, assigning the kid at this point
+     *
+     * @param kp
+     * @param keyUse
+     * @param keyAlg
+     * @param kid
+     * @return
+     */
+    public static RSAKey toJWK(KeyPair kp, KeyUse keyUse, Algorithm keyAlg, KeyIdGenerator kid) {
+        RSAPublicKey pub = (RSAPublicKey) kp.getPublic();
+        RSAPrivateCrtKey priv = (RSAPrivateCrtKey) kp.getPrivate();
+
+        RSAKey.Builder builder = new RSAKey.Builder(pub)
+                .privateKey(priv)
+                .keyUse(keyUse)
+                .algorithm(keyAlg);
+        return builder
+                .keyID(kid.generate(keyUse, pub.getEncoded(), builder::build))
+                .build();
+    }
 }
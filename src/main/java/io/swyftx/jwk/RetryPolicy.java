@@ -0,0 +1,64 @@
+package io.swyftx.jwk;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How Vault requests are retried, hedged and bounded. Only requests that are safe to repeat are retried: reads, plain
+ * KV writes, which at worst store the same data as an extra version, and check-and-set writes, whose retry after a write
+ * that timed out but landed conflicts with it instead of writing twice.
+ *
+ * @param maxAttempts Maximum attempts per request, including the first
+ * @param baseDelay Backoff ceiling after the first failure, doubled after each further failure
+ * @param maxDelay Upper bound on the backoff ceiling
+ * @param deadline Maximum time for one operation across all of its attempts and backoff
+ * @param hedgePercentile Percentile of recent read latency after which a read sends a second request and takes
+ *                        whichever answers first, or 0 to never hedge
+ */
+public record RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, Duration deadline, double hedgePercentile) {
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final Duration DEFAULT_DEADLINE = Duration.ofSeconds(60);
+
+    public static final RetryPolicy DEFAULT = new RetryPolicy(DEFAULT_MAX_ATTEMPTS, Duration.ofMillis(100),
+        Duration.ofSeconds(5), DEFAULT_DEADLINE, 0);
+
+    /**
+     * A single attempt with no hedging, as requests were made before retries existed
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, Duration.ZERO, Duration.ZERO, DEFAULT_DEADLINE, 0);
+
+    public RetryPolicy {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1, got " + maxAttempts);
+        }
+        if (deadline.isZero() || deadline.isNegative()) {
+            throw new IllegalArgumentException("Deadline must be positive, got " + deadline);
+        }
+        if (hedgePercentile < 0 || hedgePercentile >= 100) {
+            throw new IllegalArgumentException("Hedge percentile must be from 0 up to but not including 100, got " + hedgePercentile);
+        }
+    }
+
+    /**
+     * @return true if reads should be hedged
+     */
+    public boolean hedges() {
+        return hedgePercentile > 0;
+    }
+
+    /**
+     * Picks a random delay between half and all of the exponential ceiling for the attempt, so clients that failed
+     * together do not retry in lockstep
+     *
+     * @param attempt The attempt that just failed, from 1
+     * @return How long to wait before the next attempt
+     */
+    public Duration backoff(int attempt) {
+        long ceiling = baseDelay.toMillis() << Math.min(attempt - 1, 20);
+        ceiling = Math.min(ceiling, maxDelay.toMillis());
+        if (ceiling <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1));
+    }
+}
@@ -0,0 +1,330 @@
+package io.swyftx.jwk;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Secret material as UTF-8 bytes in an off-heap buffer that is zeroed when released. Unlike a {@link String}, the
+ * bytes are never copied by the garbage collector, never interned, and do not outlive their use waiting for a
+ * collection. Encoders write secrets straight into one of these, and Vault writes send it as the request body
+ * without another copy.
+ *
+ * <p>Buffers are reference counted: {@link #close()} releases the owner's reference, and a request still sending the
+ * bytes holds its own with {@link #retain()}, so a buffer is only wiped once nothing reads it. Wiped buffers go back
+ * to a small pool for reuse, since direct buffers are slow to allocate and are only freed by the garbage collector.</p>
+ *
+ * <p>Not thread-safe while being written. Once written it may be read from several threads.</p>
+ */
+public final class SecretBytes implements AutoCloseable {
+    private static final int DEFAULT_CAPACITY = 4096;
+    private static final int MAX_POOLED_CAPACITY = 64 * 1024;
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(32);
+
+    private volatile ByteBuffer buffer;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SecretBytes(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return An empty buffer, taken from the pool if one is free
+     */
+    public static SecretBytes allocate() {
+        ByteBuffer pooled = POOL.poll();
+        return new SecretBytes(pooled != null ? pooled : ByteBuffer.allocateDirect(DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Encodes characters, such as a password read from the console, as UTF-8 without going through a String. The
+     * caller still owns the array and should zero it once it is no longer needed.
+     *
+     * @param chars The characters
+     * @return The encoded bytes
+     */
+    public static SecretBytes copyOf(char[] chars) {
+        SecretBytes bytes = allocate();
+        bytes.append(chars, 0, chars.length);
+        return bytes;
+    }
+
+    /**
+     * Closes every {@link SecretBytes} value in a map of secret data, leaving other values alone
+     *
+     * @param secretData The secret data, may be null
+     */
+    public static void closeAll(Map<String, ?> secretData) {
+        if (secretData == null) {
+            return;
+        }
+        for (Object value : secretData.values()) {
+            if (value instanceof SecretBytes bytes) {
+                bytes.close();
+            }
+        }
+    }
+
+    /**
+     * @return Number of bytes written
+     */
+    public int length() {
+        return open().position();
+    }
+
+    /**
+     * @param index The byte index, from 0
+     * @return The byte at that index
+     */
+    public byte get(int index) {
+        ByteBuffer open = open();
+        if (index < 0 || index >= open.position()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return open.get(index);
+    }
+
+    /**
+     * @param b The byte to append
+     * @return This buffer
+     */
+    public SecretBytes append(byte b) {
+        ensureRemaining(1);
+        buffer.put(b);
+        return this;
+    }
+
+    /**
+     * @param src The bytes to append
+     * @param offset Index of the first byte
+     * @param length Number of bytes
+     * @return This buffer
+     */
+    public SecretBytes append(byte[] src, int offset, int length) {
+        ensureRemaining(length);
+        buffer.put(src, offset, length);
+        return this;
+    }
+
+    /**
+     * Appends characters encoded as UTF-8. A surrogate pair split across two calls is not supported.
+     *
+     * @param chars The characters
+     * @param offset Index of the first character
+     * @param length Number of characters
+     * @return This buffer
+     */
+    public SecretBytes append(char[] chars, int offset, int length) {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        ensureRemaining((int) Math.ceil(length * (double) encoder.maxBytesPerChar()));
+        CoderResult result = encoder.encode(CharBuffer.wrap(chars, offset, length), buffer, true);
+        if (result.isError()) {
+            throw new IllegalArgumentException("Characters are not valid UTF-16: " + result);
+        }
+        encoder.flush(buffer);
+        return this;
+    }
+
+    /**
+     * Appends text that is not secret, such as a PEM header
+     *
+     * @param text The text, encoded as UTF-8
+     * @return This buffer
+     */
+    public SecretBytes append(String text) {
+        return append(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * @return A read-only view of the bytes written, valid until the buffer is released
+     */
+    public ByteBuffer contents() {
+        return open().duplicate().flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return A stream that appends to this buffer
+     */
+    public OutputStream outputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                append((byte) b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                append(b, off, len);
+            }
+        };
+    }
+
+    /**
+     * @return A writer that appends characters to this buffer as UTF-8, with no buffer of its own
+     */
+    public Writer writer() {
+        return new Writer() {
+            private char highSurrogate;
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    write(cbuf[i]);
+                }
+            }
+
+            @Override
+            public void write(String str, int off, int len) {
+                for (int i = off; i < off + len; i++) {
+                    write(str.charAt(i));
+                }
+            }
+
+            @Override
+            public void write(int c) {
+                char ch = (char) c;
+                if (highSurrogate != 0 && Character.isLowSurrogate(ch)) {
+                    appendCodePoint(Character.toCodePoint(highSurrogate, ch));
+                    highSurrogate = 0;
+                    return;
+                }
+                if (highSurrogate != 0) {
+                    appendCodePoint(highSurrogate);
+                    highSurrogate = 0;
+                }
+                if (Character.isHighSurrogate(ch)) {
+                    highSurrogate = ch;
+                } else {
+                    appendCodePoint(ch);
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Appends a code point as UTF-8, replacing an unpaired surrogate with '?' as the JDK encoders do
+     *
+     * @param codePoint The code point
+     * @return This buffer
+     */
+    public SecretBytes appendCodePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            return append((byte) codePoint);
+        } else if (codePoint < 0x800) {
+            return append((byte) (0xC0 | codePoint >> 6)).append((byte) (0x80 | codePoint & 0x3F));
+        } else if (Character.isSurrogate((char) codePoint)) {
+            return append((byte) '?');
+        } else if (codePoint < 0x10000) {
+            return append((byte) (0xE0 | codePoint >> 12)).append((byte) (0x80 | codePoint >> 6 & 0x3F))
+                .append((byte) (0x80 | codePoint & 0x3F));
+        }
+        return append((byte) (0xF0 | codePoint >> 18)).append((byte) (0x80 | codePoint >> 12 & 0x3F))
+            .append((byte) (0x80 | codePoint >> 6 & 0x3F)).append((byte) (0x80 | codePoint & 0x3F));
+    }
+
+    /**
+     * Takes an extra reference, so the bytes stay valid until {@link #release()} even if the owner closes the buffer
+     *
+     * @return This buffer
+     * @throws IllegalStateException If the buffer has already been wiped
+     */
+    public SecretBytes retain() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) {
+                throw new IllegalStateException("Secret bytes have already been wiped");
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Drops a reference, wiping the buffer and returning it to the pool when it was the last
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            ByteBuffer released = buffer;
+            buffer = null;
+            wipe(released);
+            if (released.capacity() <= MAX_POOLED_CAPACITY) {
+                POOL.offer(released);
+            }
+        }
+    }
+
+    /**
+     * Releases the owner's reference. Closing more than once has no further effect.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    /**
+     * Never reveals the contents, so a secret logged by mistake is not leaked
+     */
+    @Override
+    public String toString() {
+        ByteBuffer current = buffer;
+        return current == null ? "SecretBytes[wiped]" : "SecretBytes[" + current.position() + " bytes]";
+    }
+
+    private ByteBuffer open() {
+        ByteBuffer current = buffer;
+        if (current == null) {
+            throw new IllegalStateException("Secret bytes have already been wiped");
+        }
+        return current;
+    }
+
+    /**
+     * Grows into a larger buffer when needed, wiping the old one
+     */
+    private void ensureRemaining(int needed) {
+        ByteBuffer current = open();
+        if (current.remaining() >= needed) {
+            return;
+        }
+        int capacity = Math.max(current.capacity() * 2, current.position() + needed);
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        grown.put(current.flip());
+        wipe(current);
+        if (current.capacity() <= MAX_POOLED_CAPACITY) {
+            POOL.offer(current);
+        }
+        buffer = grown;
+    }
+
+    private static void wipe(ByteBuffer buffer) {
+        buffer.clear();
+        while (buffer.remaining() >= Long.BYTES) {
+            buffer.putLong(0L);
+        }
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0);
+        }
+        buffer.clear();
+    }
+}
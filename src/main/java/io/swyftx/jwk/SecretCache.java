@@ -0,0 +1,206 @@
+package io.swyftx.jwk;
+
+import org.springframework.vault.VaultException;
+import org.springframework.vault.support.Versioned;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded, least-recently-used read-through cache of KV v2 secrets. Once an entry's TTL has passed, it is
+ * revalidated against the secret's metadata and only refetched if the current version moved or was deleted or
+ * destroyed, so deleting a secret's current version revokes it once the TTL passes. If Vault can't be reached, an
+ * expired entry keeps being served for up to the max-stale window. Cached data is returned as an unmodifiable map
+ * shared between readers. Outcomes of every read are counted in {@link Metrics#SECRET_CACHE_READS}.
+ */
+public class SecretCache {
+    private final VaultClient client;
+    private final int maxEntries;
+    private final Duration defaultTtl;
+    private final Duration maxStale;
+    private final Map<String, Duration> ttlByPrefix = new ConcurrentHashMap<>();
+    private final Map<String, Entry> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache in front of a Vault client
+     *
+     * @param client The initialized client to read through
+     * @param maxEntries Maximum number of secrets held, least recently used are evicted first
+     * @param defaultTtl How long an entry is served without asking Vault
+     * @param maxStale How long past its TTL an entry may still be served while Vault is failing
+     */
+    SecretCache(VaultClient client, int maxEntries, Duration defaultTtl, Duration maxStale) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Secret cache size must be at least 1, got " + maxEntries);
+        }
+        this.client = client;
+        this.maxEntries = maxEntries;
+        this.defaultTtl = defaultTtl;
+        this.maxStale = maxStale;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SecretCache.this.maxEntries) {
+                    evictions.increment();
+                    Metrics.SECRET_CACHE_EVICTIONS.inc();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Overrides the TTL for every secret whose mount and path start with a prefix. The longest matching prefix wins.
+     *
+     * @param pathPrefix Prefix of {@code <mount>/<path>}, e.g. {@code k8s/jwks/}
+     * @param ttl How long matching entries are served without asking Vault
+     * @return This cache
+     */
+    public SecretCache ttl(String pathPrefix, Duration ttl) {
+        ttlByPrefix.put(pathPrefix, ttl);
+        return this;
+    }
+
+    /**
+     * Returns a secret, from the cache when it is fresh or its version is unchanged
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret is stored
+     * @return The secret data, unmodifiable, or null if the secret or its current version does not exist
+     * @throws VaultException If Vault failed and there is no usable cached copy
+     * @throws RestClientException If Vault could not be reached and there is no usable cached copy
+     */
+    public Map<String, Object> get(String kvMountPath, String secretPath) {
+        String key = kvMountPath + "/" + secretPath;
+        Entry entry = lookup(key);
+        long now = System.nanoTime();
+
+        if (entry != null && now < entry.expiresAt()) {
+            hits.increment();
+            Metrics.SECRET_CACHE_READS.inc("hit");
+            return entry.data();
+        }
+
+        try {
+            if (entry != null && client.readLiveVersion(kvMountPath, secretPath) == entry.version()) {
+                revalidations.increment();
+                Metrics.SECRET_CACHE_READS.inc("revalidated");
+                store(key, new Entry(entry.data(), entry.version(), now + ttlFor(key).toNanos()));
+                return entry.data();
+            }
+
+            misses.increment();
+            Metrics.SECRET_CACHE_READS.inc("miss");
+            Versioned<Map<String, Object>> versioned = client.readVersionedSecret(kvMountPath, secretPath);
+            if (versioned == null) {
+                invalidate(kvMountPath, secretPath);
+                return null;
+            }
+            Map<String, Object> data = Collections.unmodifiableMap(new LinkedHashMap<>(versioned.getRequiredData()));
+            store(key, new Entry(data, versioned.getVersion().getVersion(), now + ttlFor(key).toNanos()));
+            return data;
+        } catch (VaultException | RestClientException e) {
+            if (entry != null && now < entry.expiresAt() + maxStale.toNanos()) {
+                staleServed.increment();
+                Metrics.SECRET_CACHE_READS.inc("stale");
+                System.err.println("Serving stale copy of " + key + " at version " + entry.version() + ": " + e.getMessage());
+                return entry.data();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops a secret so the next read goes to Vault, e.g. after writing it
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret is stored
+     */
+    public void invalidate(String kvMountPath, String secretPath) {
+        synchronized (entries) {
+            entries.remove(kvMountPath + "/" + secretPath);
+        }
+    }
+
+    /**
+     * @return Reads served from a fresh entry
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Reads that fetched the secret data from Vault
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Expired entries kept after a metadata check found the version unchanged
+     */
+    public long revalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * @return Reads served from an expired entry because Vault failed
+     */
+    public long staleServed() {
+        return staleServed.sum();
+    }
+
+    /**
+     * @return A one line summary of cache effectiveness
+     */
+    public String stats() {
+        return "Secret cache hits: " + hits() + ", revalidated: " + revalidations() + ", misses: " + misses()
+            + ", stale: " + staleServed() + ", evictions: " + evictions.sum();
+    }
+
+    private Entry lookup(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void store(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private Duration ttlFor(String key) {
+        Duration ttl = defaultTtl;
+        int longest = -1;
+        for (Map.Entry<String, Duration> override : ttlByPrefix.entrySet()) {
+            if (key.startsWith(override.getKey()) && override.getKey().length() > longest) {
+                ttl = override.getValue();
+                longest = override.getKey().length();
+            }
+        }
+        return ttl;
+    }
+
+    /**
+     * A cached secret
+     *
+     * @param data The secret data, unmodifiable
+     * @param version The KV v2 version the data was read at
+     * @param expiresAt {@link System#nanoTime()} after which the entry must be revalidated
+     */
+    private record Entry(Map<String, Object> data, int version, long expiresAt) {
+    }
+}
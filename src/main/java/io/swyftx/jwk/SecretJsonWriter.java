@@ -0,0 +1,125 @@
+package io.swyftx.jwk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes Vault request bodies as JSON straight into {@link SecretBytes}, so secret values are copied once, from their
+ * own buffer into the body, and never pass through a String or a JSON library's recycled buffers. Handles the values
+ * secret data holds: strings, {@link SecretBytes}, numbers, booleans, null, and nested maps and lists as read back from
+ * Vault.
+ */
+public final class SecretJsonWriter {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private SecretJsonWriter() {
+    }
+
+    /**
+     * @param value The value to write
+     * @return The JSON, owned by the caller, who must close it
+     */
+    public static SecretBytes toJson(Object value) {
+        SecretBytes out = SecretBytes.allocate();
+        try {
+            write(value, out);
+            return out;
+        } catch (RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param value The value to write
+     * @param out The buffer to append the JSON to
+     * @throws IllegalArgumentException If the value, or a value nested in it, has no JSON form
+     */
+    public static void write(Object value, SecretBytes out) {
+        switch (value) {
+            case null -> out.append("null");
+            case SecretBytes bytes -> writeString(bytes, out);
+            case CharSequence text -> writeString(text, out);
+            case Boolean bool -> out.append(bool.toString());
+            case Number number -> writeNumber(number, out);
+            case Map<?, ?> map -> {
+                out.append((byte) '{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (!first) {
+                        out.append((byte) ',');
+                    }
+                    first = false;
+                    writeString(String.valueOf(entry.getKey()), out);
+                    out.append((byte) ':');
+                    write(entry.getValue(), out);
+                }
+                out.append((byte) '}');
+            }
+            case Iterable<?> items -> {
+                out.append((byte) '[');
+                boolean first = true;
+                for (Object item : items) {
+                    if (!first) {
+                        out.append((byte) ',');
+                    }
+                    first = false;
+                    write(item, out);
+                }
+                out.append((byte) ']');
+            }
+            default -> throw new IllegalArgumentException("Cannot write " + value.getClass().getName() + " as JSON");
+        }
+    }
+
+    private static void writeNumber(Number number, SecretBytes out) {
+        if ((number instanceof Double d && !Double.isFinite(d)) || (number instanceof Float f && !Float.isFinite(f))) {
+            throw new IllegalArgumentException("JSON has no form for " + number);
+        }
+        out.append(number.toString());
+    }
+
+    /**
+     * Writes UTF-8 bytes as a JSON string, escaping quotes, backslashes and control characters
+     */
+    private static void writeString(SecretBytes value, SecretBytes out) {
+        out.append((byte) '"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            appendEscaped(value.get(i), out);
+        }
+        out.append((byte) '"');
+    }
+
+    private static void writeString(CharSequence value, SecretBytes out) {
+        out.append((byte) '"');
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = Character.codePointAt(value, i);
+            i += Character.charCount(codePoint);
+            if (codePoint < 0x80) {
+                appendEscaped((byte) codePoint, out);
+            } else {
+                out.appendCodePoint(codePoint);
+            }
+        }
+        out.append((byte) '"');
+    }
+
+    private static void appendEscaped(byte b, SecretBytes out) {
+        switch (b) {
+            case '"' -> out.append((byte) '\\').append((byte) '"');
+            case '\\' -> out.append((byte) '\\').append((byte) '\\');
+            case '\n' -> out.append((byte) '\\').append((byte) 'n');
+            case '\r' -> out.append((byte) '\\').append((byte) 'r');
+            case '\t' -> out.append((byte) '\\').append((byte) 't');
+            default -> {
+                if (b >= 0 && b < 0x20) {
+                    out.append((byte) '\\').append((byte) 'u').append((byte) '0').append((byte) '0')
+                        .append(HEX[b >> 4]).append(HEX[b & 0xF]);
+                } else {
+                    out.append(b);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package io.swyftx.jwk;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Generates and stores many secrets in three overlapping stages joined by queues: generation on a pool sized to the
+ * cores, serialization into Vault secret data on one thread, and batched Vault writes on the calling thread. The Vault
+ * login runs while the first secrets are still being generated, and each batch of writes is in flight while later
+ * secrets are generated and serialized. A task that fails in any stage is reported without stopping the others.
+ */
+public class SecretPipeline {
+    private static final Pending END = new Pending(null, null);
+
+    private final VaultClient vaultClient;
+    private final int parallelism;
+
+    /**
+     * @param vaultClient The client to write with, initialized by the write stage
+     * @param parallelism Maximum number of Vault writes in flight at once, which is also the write batch size
+     */
+    public SecretPipeline(VaultClient vaultClient, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+        this.vaultClient = vaultClient;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Runs every task through the pipeline
+     *
+     * @param tasks The secrets to produce
+     * @return The outcome of each task, failures first, and the throughput of each stage
+     * @throws InterruptedException If interrupted while waiting on a stage
+     */
+    public Result run(List<Task<?>> tasks) throws InterruptedException {
+        long start = System.nanoTime();
+        List<Outcome> outcomes = Collections.synchronizedList(new ArrayList<>(tasks.size()));
+        if (tasks.isEmpty()) {
+            return new Result(outcomes, List.of(), Duration.ZERO);
+        }
+
+        int workers = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        Stage generate = new Stage("generate", workers);
+        Stage serialize = new Stage("serialize", 1);
+        Stage write = new Stage("write", parallelism);
+
+        BlockingQueue<Generated<?>> generated = new LinkedBlockingQueue<>();
+        BlockingQueue<Pending> serialized = new LinkedBlockingQueue<>();
+
+        ExecutorService generators = Executors.newFixedThreadPool(workers);
+        Thread serializer = Thread.ofPlatform().name("pipeline-serialize").start(
+            () -> serializeAll(tasks.size(), generated, serialized, serialize, outcomes));
+        try {
+            for (Task<?> task : tasks) {
+                generators.execute(() -> generateOne(task, generate, generated));
+            }
+            writeAll(serialized, write, outcomes);
+            serializer.join();
+        } finally {
+            generators.shutdownNow();
+            serializer.interrupt();
+        }
+
+        List<Outcome> ordered = new ArrayList<>(outcomes);
+        ordered.sort((a, b) -> Boolean.compare(a.success(), b.success()));
+        return new Result(ordered, List.of(generate.stats(), serialize.stats(), write.stats()),
+            Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Generates one secret and always queues an item for it, as the serializer waits for one per task. An Error is
+     * queued as a failure and then rethrown to the worker.
+     */
+    private static <T> void generateOne(Task<T> task, Stage stage, BlockingQueue<Generated<?>> generated) {
+        long start = stage.begin();
+        Generated<T> item = new Generated<>(task, null, "generation failed");
+        try {
+            item = new Generated<>(task, task.generate().call(), null);
+        } catch (Exception e) {
+            item = new Generated<>(task, null, "generation failed: " + e.getMessage());
+        } catch (Error e) {
+            item = new Generated<>(task, null, "generation failed: " + e);
+            throw e;
+        } finally {
+            stage.end(start);
+            generated.add(item);
+        }
+    }
+
+    /**
+     * Serializes secrets in the order they finish generating, then marks the end of the queue for the writer
+     */
+    private static void serializeAll(int count, BlockingQueue<Generated<?>> generated, BlockingQueue<Pending> serialized,
+                                     Stage stage, List<Outcome> outcomes) {
+        try {
+            for (int i = 0; i < count; i++) {
+                Generated<?> item = generated.take();
+                if (item.error() != null) {
+                    outcomes.add(new Outcome(item.task().label(), null, false, false, item.error()));
+                    continue;
+                }
+                long start = stage.begin();
+                try {
+                    serialized.add(new Pending(item.task().label(), item.serialize()));
+                } catch (RuntimeException e) {
+                    outcomes.add(new Outcome(item.task().label(), null, false, false, "serialization failed: " + e.getMessage()));
+                } finally {
+                    stage.end(start);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            serialized.add(END);
+        }
+    }
+
+    /**
+     * Writes serialized secrets in batches of up to {@link #parallelism}, taking whatever is queued when the previous
+     * batch completes so a batch never waits for secrets that are not ready yet. {@link SecretBytes} values are wiped
+     * once their batch is done with them.
+     */
+    private void writeAll(BlockingQueue<Pending> serialized, Stage stage, List<Outcome> outcomes) throws InterruptedException {
+        boolean initialized = vaultClient.initialize();
+        List<Pending> batch = new ArrayList<>(parallelism);
+        boolean done = false;
+        while (!done) {
+            batch.clear();
+            batch.add(serialized.take());
+            serialized.drainTo(batch, parallelism - 1);
+            done = batch.remove(END);
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            try {
+                if (!initialized) {
+                    for (Pending pending : batch) {
+                        outcomes.add(new Outcome(pending.label(), pending.write().secretPath(), false, false, "Vault client not initialized"));
+                    }
+                    continue;
+                }
+
+                long start = stage.begin();
+                VaultClient.BatchResult result = vaultClient.writeSecrets(batch.stream().map(Pending::write).toList(), parallelism);
+                stage.end(start, batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    VaultClient.WriteResult written = result.results().get(i);
+                    outcomes.add(new Outcome(batch.get(i).label(), written.write().secretPath(), written.success(),
+                        written.unchanged(), written.success() ? null : "write failed with a " + written.result().describe()));
+                }
+            } finally {
+                for (Pending pending : batch) {
+                    SecretBytes.closeAll(pending.write().secretData());
+                }
+            }
+        }
+    }
+
+    /**
+     * A secret to produce
+     *
+     * @param label Describes the secret in reports, e.g. its type and manifest path
+     * @param generate Creates the secret material, called on a generation worker
+     * @param serialize Turns the material into the Vault write, called on the serialization thread
+     * @param <T> The type of the secret material
+     */
+    public record Task<T>(String label, Callable<T> generate, Function<T, VaultClient.SecretWrite> serialize) {
+    }
+
+    private record Generated<T>(Task<T> task, T value, String error) {
+        VaultClient.SecretWrite serialize() {
+            return task.serialize().apply(value);
+        }
+    }
+
+    private record Pending(String label, VaultClient.SecretWrite write) {
+    }
+
+    /**
+     * Outcome of a single task
+     *
+     * @param label The task label
+     * @param secretPath The Vault path written, or null if the task failed before it had one
+     * @param success true if the secret was stored
+     * @param unchanged true if the write was skipped because the secret already held the same data
+     * @param error The stage and reason the task failed, otherwise null
+     */
+    public record Outcome(String label, String secretPath, boolean success, boolean unchanged, String error) {
+    }
+
+    /**
+     * Throughput of one stage. Busy time is summed across the stage's threads, wall time runs from when the stage
+     * started its first item to when it finished its last.
+     *
+     * @param name The stage name
+     * @param threads Number of threads, or requests in flight for the write stage
+     * @param items Number of items the stage completed
+     * @param busy Total time spent working on items
+     * @param wall Time from the stage's first item to its last
+     */
+    public record StageStats(String name, int threads, long items, Duration busy, Duration wall) {
+
+        /**
+         * @return Items completed per second of the stage's wall time
+         */
+        public double itemsPerSecond() {
+            return wall.isZero() ? 0 : items * 1e9 / wall.toNanos();
+        }
+    }
+
+    /**
+     * Outcome of a pipeline run
+     *
+     * @param outcomes Per-task outcomes, failures first
+     * @param stages Throughput of each stage, in pipeline order
+     * @param elapsed Wall clock time for the whole run
+     */
+    public record Result(List<Outcome> outcomes, List<StageStats> stages, Duration elapsed) {
+
+        /**
+         * @return Number of tasks that failed in any stage
+         */
+        public long failed() {
+            return outcomes.stream().filter(o -> !o.success()).count();
+        }
+
+        /**
+         * @return Number of tasks whose write was skipped because the secret already held the same data
+         */
+        public long unchanged() {
+            return outcomes.stream().filter(Outcome::unchanged).count();
+        }
+    }
+
+    /**
+     * Thread-safe throughput counters for one stage
+     */
+    private static class Stage {
+        private final String name;
+        private final int threads;
+        private final LongAdder items = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+        Stage(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        long begin() {
+            long start = System.nanoTime();
+            firstStart.accumulateAndGet(start, Math::min);
+            return start;
+        }
+
+        void end(long start) {
+            end(start, 1);
+        }
+
+        void end(long start, int count) {
+            long end = System.nanoTime();
+            lastEnd.accumulateAndGet(end, Math::max);
+            busyNanos.add(end - start);
+            items.add(count);
+        }
+
+        StageStats stats() {
+            long count = items.sum();
+            Duration wall = count == 0 ? Duration.ZERO : Duration.ofNanos(lastEnd.get() - firstStart.get());
+            return new StageStats(name, threads, count, Duration.ofNanos(busyNanos.sum()), wall);
+        }
+    }
+}
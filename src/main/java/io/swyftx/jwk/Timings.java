@@ -0,0 +1,58 @@
+package io.swyftx.jwk;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+/**
+ * Opt-in startup phase timings, enabled with {@code --timings}. Each phase is printed to stderr as soon as it
+ * completes, so long-running modes such as {@code -S} and {@code -d} show their startup cost too, and the total is
+ * printed on exit. Recording a phase costs a clock read when timings are off.
+ */
+public class Timings {
+    private static volatile boolean enabled;
+
+    /**
+     * Turns timings on and prints how long the JVM took to reach main
+     *
+     * @param mainStart The {@link #start()} taken on entering main
+     */
+    public static void enable(long mainStart) {
+        if (enabled) {
+            return;
+        }
+        enabled = true;
+        Duration sinceMain = Duration.ofNanos(System.nanoTime() - mainStart);
+        print("jvm", jvmUptime().minus(sinceMain));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> print("total", jvmUptime()), "timings"));
+    }
+
+    /**
+     * @return The start of a phase, to pass to {@link #record}
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Prints a completed phase if timings are on
+     *
+     * @param phase The phase name
+     * @param start The {@link #start()} taken when the phase began
+     */
+    public static void record(String phase, long start) {
+        if (enabled) {
+            print(phase, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * @return Time since the JVM started, including startup before main
+     */
+    private static Duration jvmUptime() {
+        return Duration.ofMillis(ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    private static void print(String phase, Duration elapsed) {
+        System.err.printf("[timings] %-18s %6d ms%n", phase, Math.max(0, elapsed.toMillis()));
+    }
+}
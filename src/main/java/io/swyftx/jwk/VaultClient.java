@@ -1,36 +1,80 @@
 package io.swyftx.jwk;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import org.springframework.vault.VaultException;
-import org.springframework.vault.authentication.ClientAuthentication;
-import org.springframework.vault.authentication.TokenAuthentication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.vault.authentication.SessionManager;
 import org.springframework.vault.client.VaultEndpoint;
+import org.springframework.vault.client.VaultResponses;
 import org.springframework.vault.core.VaultTemplate;
 import org.springframework.vault.core.VaultVersionedKeyValueOperations;
+import org.springframework.vault.support.VaultMetadataResponse;
+import org.springframework.vault.support.VaultResponse;
+import org.springframework.vault.support.Versioned;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
 
-import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Client for interacting with HashiCorp Vault
  */
 public class VaultClient {
     private static final String DEFAULT_VAULT_URI = "https://vault.swyftx-cicd.io";
-    private static final String DEFAULT_KV_MOUNT_PATH = "k8s";
+    public static final String DEFAULT_KV_MOUNT_PATH = "k8s";
+    private static final String CAS_MISMATCH_ERROR = "check-and-set parameter did not match the current version";
 
     private final String vaultUri;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private static volatile String defaultVaultUri = System.getenv().getOrDefault("VAULT_ADDR", DEFAULT_VAULT_URI);
+    private static volatile RetryPolicy defaultRetryPolicy = RetryPolicy.DEFAULT;
+    private static volatile boolean defaultSkipUnchanged;
+
+    private final Map<String, VaultVersionedKeyValueOperations> kvOpsByMount = new ConcurrentHashMap<>();
     private VaultTemplate vaultTemplate;
+    private VaultEndpoint vaultEndpoint;
+    private SessionManager sessionManager;
+    private HttpClient httpClient;
+    private volatile SecretCache secretCache;
+    private volatile VaultRetries retries = new VaultRetries(defaultRetryPolicy);
+    private volatile boolean skipUnchanged = defaultSkipUnchanged;
+    private final AtomicBoolean contentHashWarned = new AtomicBoolean();
 
     /**
-     * Creates a VaultClient with the default Vault URI
+     * Creates a VaultClient with the default Vault URI, taken from the {@code VAULT_ADDR} environment variable if set
      */
     public VaultClient() {
-        this(DEFAULT_VAULT_URI);
+        this(defaultVaultUri);
     }
 
     /**
@@ -39,38 +83,118 @@ public class VaultClient {
      * @param vaultUri The URI of the Vault server
      */
     public VaultClient(String vaultUri) {
+        this(vaultUri, VaultTransport.DEFAULT_CONNECT_TIMEOUT, VaultTransport.DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * Creates a VaultClient with a specified Vault URI and transport timeouts
+     *
+     * @param vaultUri The URI of the Vault server
+     * @param connectTimeout Maximum time to establish a connection
+     * @param readTimeout Maximum time to wait for a response
+     */
+    public VaultClient(String vaultUri, Duration connectTimeout, Duration readTimeout) {
         this.vaultUri = vaultUri;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
     }
 
     /**
-     * Initializes the Vault client by reading token from user's home directory
+     * Initializes the Vault client using the process-wide authenticated session, logging in if this is the
+     * first client for the Vault URI
      *
      * @return true if initialization was successful, false otherwise
      */
     public boolean initialize() {
-        String vaultToken = readVaultToken();
-
-        if (vaultToken != null && !vaultToken.isEmpty()) {
-            try {
-                System.out.println("Attempting to initialize Vault client...");
-                System.out.println("VAULT_ADDR: " + vaultUri);
-
-                VaultEndpoint vaultEndpoint = VaultEndpoint.from(new URI(vaultUri));
-                ClientAuthentication clientAuthentication = new TokenAuthentication(vaultToken);
-                vaultTemplate = new VaultTemplate(vaultEndpoint, clientAuthentication);
-                System.out.println("Vault Client initialized successfully.");
-                return true;
-            } catch (URISyntaxException e) {
-                System.err.println("Invalid Vault URI syntax: " + vaultUri + ". Error: " + e.getMessage());
-            } catch (Exception e) {
-                System.err.println("Failed to initialize VaultTemplate. Error: " + e.getMessage());
-            }
-        } else {
-            System.out.println("Vault token could not be read or is empty. Vault client will not be initialized.");
+        long start = Timings.start();
+        try {
+            System.out.println("Attempting to initialize Vault client...");
+            System.out.println("VAULT_ADDR: " + vaultUri);
+
+            VaultEndpoint endpoint = VaultEndpoint.from(new URI(vaultUri));
+            ClientHttpRequestFactory requestFactory = VaultTransport.requestFactory(connectTimeout, readTimeout);
+            SessionManager session = VaultSessions.get(endpoint, requestFactory);
+            vaultEndpoint = endpoint;
+            sessionManager = session;
+            httpClient = VaultTransport.httpClient(connectTimeout);
+            vaultTemplate = new VaultTemplate(endpoint, requestFactory, session);
+            System.out.println("Vault Client initialized successfully.");
+            return true;
+        } catch (URISyntaxException e) {
+            System.err.println("Invalid Vault URI syntax: " + vaultUri + ". Error: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage() + ". Vault client will not be initialized.");
+        } catch (Exception e) {
+            System.err.println("Failed to initialize VaultTemplate. Error: " + e.getMessage());
+        } finally {
+            Timings.record("vault client", start);
         }
         return false;
     }
 
+    /**
+     * Sets the Vault URI for clients created with the default URI after this call, e.g. to point handlers at a local
+     * stand-in
+     *
+     * @param vaultUri The URI of the Vault server
+     */
+    public static void setDefaultVaultUri(String vaultUri) {
+        defaultVaultUri = vaultUri;
+    }
+
+    /**
+     * Sets the retry policy for clients created after this call
+     *
+     * @param policy The policy
+     */
+    public static void setDefaultRetryPolicy(RetryPolicy policy) {
+        defaultRetryPolicy = policy;
+    }
+
+    /**
+     * Sets the retry policy for this client
+     *
+     * @param policy The policy
+     */
+    public void setRetryPolicy(RetryPolicy policy) {
+        retries = new VaultRetries(policy);
+    }
+
+    /**
+     * Sets whether clients created after this call skip writes that would not change a secret
+     *
+     * @param skip true to skip unchanged writes
+     * @see #setSkipUnchanged(boolean)
+     */
+    public static void setDefaultSkipUnchanged(boolean skip) {
+        defaultSkipUnchanged = skip;
+    }
+
+    /**
+     * Makes {@link #tryWriteSecret} idempotent: a write is skipped when the secret's current version already holds the
+     * same data, as recorded in its custom metadata by an earlier write from a client in this mode. Each write that
+     * does go ahead costs a metadata read before it and a metadata write after it. Check-and-set writes are never
+     * skipped. The recorded hashes are keyed with a local key file, and if it cannot be read nothing is skipped.
+     *
+     * @param skip true to skip unchanged writes
+     */
+    public void setSkipUnchanged(boolean skip) {
+        skipUnchanged = skip;
+    }
+
+    /**
+     * Puts a read-through cache in front of {@link #readSecret}. Writes made through this client invalidate it.
+     *
+     * @param maxEntries Maximum number of secrets held, least recently used are evicted first
+     * @param ttl How long a secret is served without asking Vault
+     * @param maxStale How long past its TTL a secret may still be served while Vault is failing
+     * @return The cache, for per-path TTLs and stats
+     */
+    public SecretCache enableReadCache(int maxEntries, Duration ttl, Duration maxStale) {
+        secretCache = new SecretCache(this, maxEntries, ttl, maxStale);
+        return secretCache;
+    }
+
     /**
      * Writes a secret to Vault
      *
@@ -91,26 +215,176 @@ public class VaultClient {
      * @return true if secret was written successfully, false otherwise
      */
     public boolean writeSecret(String kvMountPath, String secretPath, Map<String, Object> secretData) {
-        if (vaultTemplate == null) {
-            System.err.println("Vault client not initialized. Call initialize() first.");
-            return false;
+        VaultResult<Integer> result = tryWriteSecret(kvMountPath, secretPath, secretData);
+        if (result.isUnchanged()) {
+            System.out.println("Secret at " + kvMountPath + "/data/" + secretPath + " is unchanged at version "
+                + result.orNull() + ", skipped writing it");
+            return true;
         }
-
-        try {
-            VaultVersionedKeyValueOperations kvOps = vaultTemplate.opsForVersionedKeyValue(kvMountPath);
-            kvOps.put(secretPath, secretData);
-
+        if (result.isSuccess()) {
             System.out.println("Successfully wrote secret to Vault at path: " + kvMountPath + "/data/" + secretPath);
             System.out.println("Secret content: " + secretData.keySet());
             return true;
-        } catch (VaultException e) {
-            System.err.println("Error performing Vault KV operation: " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("An unexpected error occurred during Vault KV operation: " + e.getMessage());
         }
+        System.err.println("Error performing Vault KV operation, " + result.describe());
         return false;
     }
 
+    /**
+     * Writes a secret to Vault, retrying retryable failures under the client's retry policy. {@link SecretBytes}
+     * values are written into the request body without becoming Strings; the caller still owns and closes them.
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret should be stored
+     * @param secretData The key-value pairs to store
+     * @return The new version of the secret, or whether the failure was retryable or terminal. A write skipped by
+     * {@link #setSkipUnchanged(boolean)} succeeds with the current version and {@link VaultResult#isUnchanged()}.
+     */
+    public VaultResult<Integer> tryWriteSecret(String kvMountPath, String secretPath, Map<String, Object> secretData) {
+        if (vaultTemplate == null) {
+            return new VaultResult.Terminal<>("Vault client not initialized. Call initialize() first.", null, 0);
+        }
+        if (!skipUnchanged) {
+            return postSecret(kvMountPath, secretPath, secretData);
+        }
+        try {
+            ContentHash.loadKey();
+        } catch (IllegalStateException e) {
+            if (contentHashWarned.compareAndSet(false, true)) {
+                System.err.println(e.getMessage() + ". Writes will not be skipped even if unchanged");
+            }
+            return postSecret(kvMountPath, secretPath, secretData);
+        }
+
+        VaultResult<SecretMetadata> metadata = retries.read("read_metadata",
+            () -> SecretMetadata.from(vaultTemplate.read(kvMountPath + "/metadata/" + secretPath)));
+        SecretMetadata current = metadata.orNull();
+        if (current != null && current.holds(kvMountPath + "/" + secretPath, secretData)) {
+            Metrics.VAULT_WRITES_UNCHANGED.inc();
+            return new VaultResult.Success<>(current.currentVersion(), 0, true);
+        }
+        VaultResult<Integer> result = postSecret(kvMountPath, secretPath, secretData);
+        if (result.isSuccess() && result.orNull() > 0) {
+            if (metadata.isSuccess()) {
+                recordContentHash(kvMountPath, secretPath, secretData, result.orNull(), current);
+            } else {
+                warnContentHash(kvMountPath, secretPath, "its metadata could not be read, " + metadata.describe());
+            }
+        }
+        return result;
+    }
+
+    private VaultResult<Integer> postSecret(String kvMountPath, String secretPath, Map<String, Object> secretData) {
+        SecretBytes body;
+        try {
+            body = SecretJsonWriter.toJson(Map.of("data", secretData));
+        } catch (IllegalArgumentException e) {
+            return new VaultResult.Terminal<>(e.getMessage(), e, 0);
+        }
+        try {
+            return retries.write("write", () -> post(kvMountPath + "/data/" + secretPath, body));
+        } finally {
+            body.close();
+            // a write that timed out may still have landed
+            invalidateCached(kvMountPath, secretPath);
+        }
+    }
+
+    /**
+     * Records the hash of a write in the secret's custom metadata, keeping any other entries. Vault replaces custom
+     * metadata as a whole, so the entries read before the write are sent back with it.
+     */
+    private void recordContentHash(String kvMountPath, String secretPath, Map<String, Object> secretData, int version,
+                                   SecretMetadata before) {
+        Map<String, String> customMetadata = new HashMap<>();
+        if (before != null) {
+            customMetadata.putAll(before.customMetadata());
+        }
+        customMetadata.put(ContentHash.METADATA_KEY,
+            ContentHash.record(version, kvMountPath + "/" + secretPath, secretData));
+        VaultResult<Integer> result;
+        try (SecretBytes body = SecretJsonWriter.toJson(Map.of("custom_metadata", customMetadata))) {
+            result = retries.write("write_metadata", () -> post(kvMountPath + "/metadata/" + secretPath, body));
+        }
+        if (!result.isSuccess()) {
+            warnContentHash(kvMountPath, secretPath, "its metadata could not be written, " + result.describe());
+        }
+    }
+
+    /**
+     * Warns once per client, as a policy that denies metadata access fails every write in a batch the same way
+     */
+    private void warnContentHash(String kvMountPath, String secretPath, String reason) {
+        if (contentHashWarned.compareAndSet(false, true)) {
+            System.err.println("Wrote " + kvMountPath + "/data/" + secretPath + " but " + reason
+                + ". Its next write will not be skipped even if unchanged");
+        }
+    }
+
+    /**
+     * Writes many secrets to Vault, running up to {@code parallelism} writes concurrently
+     *
+     * @param writes The secrets to write
+     * @param parallelism Maximum number of writes in flight at once
+     * @return Per-entry results in the same order as the writes, with per-request and total latency
+     */
+    public BatchResult writeSecrets(List<SecretWrite> writes, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+
+        long start = System.nanoTime();
+        List<WriteResult> results = new ArrayList<>(writes.size());
+        if (vaultTemplate == null) {
+            System.err.println("Vault client not initialized. Call initialize() first.");
+            for (SecretWrite write : writes) {
+                results.add(new WriteResult(write, new VaultResult.Terminal<>("Vault client not initialized", null, 0), Duration.ZERO));
+            }
+            return new BatchResult(results, Duration.ZERO);
+        }
+
+        Semaphore permits = new Semaphore(parallelism);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<WriteResult>> futures = new ArrayList<>(writes.size());
+            for (SecretWrite write : writes) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return writeOne(write);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new WriteResult(writes.get(i),
+                        new VaultResult.Terminal<>(e.getCause().getMessage(), null, 0), Duration.ZERO));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (int i = results.size(); i < writes.size(); i++) {
+                results.add(new WriteResult(writes.get(i), new VaultResult.Terminal<>("Interrupted", null, 0), Duration.ZERO));
+            }
+        }
+        return new BatchResult(results, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Writes a single secret as part of a batch, capturing the outcome instead of printing it
+     *
+     * @param write The secret to write
+     * @return The result of the write
+     */
+    private WriteResult writeOne(SecretWrite write) {
+        long start = System.nanoTime();
+        VaultResult<Integer> result = tryWriteSecret(write.kvMountPath(), write.secretPath(), write.secretData());
+        return new WriteResult(write, result, Duration.ofNanos(System.nanoTime() - start));
+    }
+
     /**
      * Reads a secret from Vault
      *
@@ -134,9 +408,17 @@ public class VaultClient {
             return null;
         }
 
+        SecretCache cache = secretCache;
+        if (cache == null) {
+            VaultResult<Map<String, Object>> result = tryReadSecret(kvMountPath, secretPath);
+            if (!result.isSuccess()) {
+                System.err.println("Error reading secret from Vault, " + result.describe());
+            }
+            return result.orNull();
+        }
+
         try {
-            VaultVersionedKeyValueOperations kvOps = vaultTemplate.opsForVersionedKeyValue(kvMountPath);
-            return kvOps.get(secretPath).getData();
+            return cache.get(kvMountPath, secretPath);
         } catch (VaultException e) {
             System.err.println("Error reading secret from Vault: " + e.getMessage());
         } catch (Exception e) {
@@ -146,23 +428,409 @@ public class VaultClient {
     }
 
     /**
-     * Reads the Vault token from the user's home directory
+     * Reads a secret straight from Vault, bypassing any read cache, retrying and hedging under the client's retry
+     * policy
      *
-     * @return The vault token or null if it couldn't be read
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret is stored
+     * @return The secret data, or whether the failure was retryable or terminal. A missing secret is terminal.
      */
-    private String readVaultToken() {
-        String homeDir = System.getProperty("user.home");
-        File tokenFile = new File(homeDir, ".vault-token");
+    public VaultResult<Map<String, Object>> tryReadSecret(String kvMountPath, String secretPath) {
+        if (vaultTemplate == null) {
+            return new VaultResult.Terminal<>("Vault client not initialized. Call initialize() first.", null, 0);
+        }
+        VaultResult<Versioned<Map<String, Object>>> result = retries.read("read", () -> kvOps(kvMountPath).get(secretPath));
+        Versioned<Map<String, Object>> versioned = result.orNull();
+        if (result.isSuccess() && (versioned == null || !versioned.hasData())) {
+            return new VaultResult.Terminal<>("No secret at " + kvMountPath + "/data/" + secretPath, null, result.attempts());
+        }
+        return result.map(Versioned::getData);
+    }
+
+    /**
+     * Reads a secret together with its version, for read-modify-write updates
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret is stored
+     * @return The versioned secret data, or null if the secret does not exist
+     * @throws VaultException If the secret could not be read
+     */
+    public Versioned<Map<String, Object>> readVersionedSecret(String kvMountPath, String secretPath) {
+        requireInitialized();
+        Versioned<Map<String, Object>> versioned = retries.read("read", () -> kvOps(kvMountPath).get(secretPath)).orThrow();
+        return versioned != null && versioned.hasData() ? versioned : null;
+    }
 
-        if (tokenFile.exists() && tokenFile.isFile() && tokenFile.canRead()) {
-            try {
-                return Files.readString(Paths.get(tokenFile.getAbsolutePath())).trim();
-            } catch (IOException e) {
-                System.err.println("Error reading Vault token from " + tokenFile.getAbsolutePath() + ": " + e.getMessage());
+    /**
+     * Reads the current version of a secret from its metadata, without fetching the secret data
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret is stored
+     * @return The current version, or 0 if the secret does not exist
+     * @throws VaultException If the metadata could not be read
+     */
+    public int readCurrentVersion(String kvMountPath, String secretPath) {
+        requireInitialized();
+        VaultMetadataResponse metadata = retries.read("read_metadata",
+            () -> kvOps(kvMountPath).opsForKeyValueMetadata().get(secretPath)).orThrow();
+        return metadata != null ? metadata.getCurrentVersion() : 0;
+    }
+
+    /**
+     * Reads the current version of a secret from its metadata, without fetching the secret data, treating a current
+     * version that has been deleted or destroyed as no version at all
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret is stored
+     * @return The current version, or 0 if the secret does not exist or its current version is deleted or destroyed
+     * @throws VaultException If the metadata could not be read
+     */
+    public int readLiveVersion(String kvMountPath, String secretPath) {
+        requireInitialized();
+        VaultMetadataResponse metadata = retries.read("read_metadata",
+            () -> kvOps(kvMountPath).opsForKeyValueMetadata().get(secretPath)).orThrow();
+        if (metadata == null || metadata.getVersions() == null) {
+            return 0;
+        }
+        int currentVersion = metadata.getCurrentVersion();
+        Instant now = Instant.now();
+        for (Versioned.Metadata version : metadata.getVersions()) {
+            if (version.getVersion().getVersion() == currentVersion) {
+                // delete_version_after sets a deletion time in the future, which still leaves the data readable
+                boolean deleted = version.getDeletedAt() != null && !version.getDeletedAt().isAfter(now);
+                return deleted || version.isDestroyed() ? 0 : currentVersion;
             }
-        } else {
-            System.err.println("Vault token file not found or not readable at " + tokenFile.getAbsolutePath());
         }
-        return null;
+        return 0;
+    }
+
+    /**
+     * Writes a secret using KV v2 check-and-set, succeeding only if the secret is still at the expected version
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret should be stored
+     * @param secretData The key-value pairs to store
+     * @param casVersion The version the secret must currently be at, or 0 if it must not exist yet
+     * @return The new version of the secret
+     * @throws CasConflictException If the secret is no longer at the expected version
+     * @throws VaultException If the secret could not be written for any other reason
+     */
+    public int writeSecretCas(String kvMountPath, String secretPath, Map<String, Object> secretData, int casVersion) {
+        requireInitialized();
+        String path = kvMountPath + "/data/" + secretPath;
+        int version;
+        try (SecretBytes body = SecretJsonWriter.toJson(Map.of(
+            "data", secretData,
+            "options", Map.of("cas", casVersion)
+        ))) {
+            // a retry of a write that landed conflicts with it, so the caller re-reads rather than writing twice
+            version = retries.write("write_cas", () -> {
+                try {
+                    return post(path, body);
+                } catch (VaultException e) {
+                    if (isCasMismatch(e)) {
+                        throw new CasConflictException(path + " is no longer at version " + casVersion, e);
+                    }
+                    throw e;
+                }
+            }).orThrow();
+        } finally {
+            invalidateCached(kvMountPath, secretPath);
+        }
+        return version > 0 ? version : casVersion + 1;
+    }
+
+    /**
+     * Sends a KV v2 write with the body streamed from its off-heap buffer. Spring's RestTemplate copies every request
+     * body into a heap buffer before sending, so writes go straight through the shared HTTP client instead. The
+     * request holds its own reference to the body, so an attempt abandoned at the deadline never sends wiped bytes.
+     *
+     * @param path The path under the Vault API, e.g. {@code k8s/data/app}
+     * @param body The JSON request body
+     * @return The new version of the secret, or 0 if Vault did not say
+     * @throws VaultException If Vault rejected the write
+     * @throws ResourceAccessException If Vault could not be reached
+     */
+    private int post(String path, SecretBytes body) {
+        URI uri = vaultEndpoint.createUri(path);
+        body.retain();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("X-Vault-Token", sessionManager.getSessionToken().getToken())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.fromPublisher(new BodyPublisher(body), body.length()))
+                .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 400) {
+                throw VaultResponses.buildException(statusException(response), path);
+            }
+            JsonElement data = response.body().isBlank() ? null
+                : JsonParser.parseString(response.body()).getAsJsonObject().get("data");
+            JsonElement version = data instanceof JsonObject object ? object.get("version") : null;
+            return version != null && version.isJsonPrimitive() ? version.getAsInt() : 0;
+        } catch (IOException e) {
+            throw new ResourceAccessException("I/O error on POST request for \"" + uri + "\": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VaultException("Interrupted writing " + path, e);
+        } finally {
+            body.release();
+        }
+    }
+
+    /**
+     * Tells a stale check-and-set version apart from other bad requests by the 400 status and Vault's {@code errors}
+     * array, rather than by the exception message
+     *
+     * @param e The exception a write failed with
+     * @return true if Vault rejected the write because the secret was not at the check-and-set version
+     */
+    private static boolean isCasMismatch(VaultException e) {
+        if (!(e.getCause() instanceof HttpStatusCodeException status) || status.getStatusCode().value() != 400) {
+            return false;
+        }
+        try {
+            JsonElement body = JsonParser.parseString(status.getResponseBodyAsString());
+            JsonElement errors = body.isJsonObject() ? body.getAsJsonObject().get("errors") : null;
+            if (errors == null || !errors.isJsonArray()) {
+                return false;
+            }
+            for (JsonElement error : errors.getAsJsonArray()) {
+                if (error.isJsonPrimitive() && error.getAsString().startsWith(CAS_MISMATCH_ERROR)) {
+                    return true;
+                }
+            }
+        } catch (JsonParseException ex) {
+            // not a Vault error body
+        }
+        return false;
+    }
+
+    /**
+     * Wraps an error response the way RestTemplate would, so retries and error messages treat both transports alike
+     */
+    private static HttpStatusCodeException statusException(HttpResponse<String> response) {
+        HttpStatusCode status = HttpStatusCode.valueOf(response.statusCode());
+        HttpStatus known = HttpStatus.resolve(response.statusCode());
+        String statusText = known != null ? known.getReasonPhrase() : "";
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        return status.is4xxClientError()
+            ? HttpClientErrorException.create(status, statusText, HttpHeaders.EMPTY, body, StandardCharsets.UTF_8)
+            : HttpServerErrorException.create(status, statusText, HttpHeaders.EMPTY, body, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Publishes a request body as a single read-only view of its buffer, fresh for each subscription so a redirect
+     * can send it again
+     */
+    private record BodyPublisher(SecretBytes body) implements Flow.Publisher<ByteBuffer> {
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            ByteBuffer contents = body.contents();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private boolean done;
+
+                @Override
+                public synchronized void request(long n) {
+                    if (done) {
+                        return;
+                    }
+                    done = true;
+                    if (n <= 0) {
+                        subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                        return;
+                    }
+                    subscriber.onNext(contents);
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public synchronized void cancel() {
+                    done = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Fails fast if {@link #initialize()} has not succeeded
+     */
+    private void requireInitialized() {
+        if (vaultTemplate == null) {
+            throw new VaultException("Vault client not initialized. Call initialize() first.");
+        }
+    }
+
+    private void invalidateCached(String kvMountPath, String secretPath) {
+        SecretCache cache = secretCache;
+        if (cache != null) {
+            cache.invalidate(kvMountPath, secretPath);
+        }
+    }
+
+    /**
+     * Returns the versioned key-value operations for a mount, creating them once per mount
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @return The key-value operations
+     */
+    private VaultVersionedKeyValueOperations kvOps(String kvMountPath) {
+        return kvOpsByMount.computeIfAbsent(kvMountPath, vaultTemplate::opsForVersionedKeyValue);
+    }
+
+    /**
+     * Thrown when a check-and-set write finds the secret at a different version than expected
+     */
+    public static class CasConflictException extends VaultException {
+        private static final long serialVersionUID = 1L;
+
+        public CasConflictException(String msg, Throwable cause) {
+            super(msg, cause);
+        }
+    }
+
+    /**
+     * The parts of a secret's KV v2 metadata that idempotent writes need. Read raw, as Spring Vault's metadata
+     * response leaves out custom metadata.
+     *
+     * @param currentVersion The current version, 0 if there is none
+     * @param currentLive true if the current version is neither deleted nor destroyed
+     * @param customMetadata The secret's custom metadata
+     */
+    private record SecretMetadata(int currentVersion, boolean currentLive, Map<String, String> customMetadata) {
+
+        /**
+         * @param response The metadata response, null if the secret does not exist
+         * @return The metadata, or null if the secret does not exist
+         */
+        static SecretMetadata from(VaultResponse response) {
+            if (response == null || response.getData() == null) {
+                return null;
+            }
+            Map<String, Object> data = response.getData();
+            int currentVersion = data.get("current_version") instanceof Number number ? number.intValue() : 0;
+            boolean currentLive = false;
+            if (data.get("versions") instanceof Map<?, ?> versions
+                && versions.get(String.valueOf(currentVersion)) instanceof Map<?, ?> version) {
+                Object deletionTime = version.get("deletion_time");
+                currentLive = (deletionTime == null || "".equals(deletionTime))
+                    && !Boolean.TRUE.equals(version.get("destroyed"));
+            }
+            Map<String, String> customMetadata = new HashMap<>();
+            if (data.get("custom_metadata") instanceof Map<?, ?> custom) {
+                custom.forEach((key, value) -> customMetadata.put(String.valueOf(key), String.valueOf(value)));
+            }
+            return new SecretMetadata(currentVersion, currentLive, customMetadata);
+        }
+
+        /**
+         * @param secretPath The mount and path the data is about to be written to
+         * @param secretData The data about to be written
+         * @return true if the current version is live and its recorded hash matches the data
+         */
+        boolean holds(String secretPath, Map<String, Object> secretData) {
+            return currentVersion > 0 && currentLive && ContentHash.matches(
+                customMetadata.get(ContentHash.METADATA_KEY), currentVersion, secretPath, secretData);
+        }
+    }
+
+    /**
+     * A single secret to write as part of a batch
+     *
+     * @param kvMountPath The mount path of the key-value engine
+     * @param secretPath The path where the secret should be stored
+     * @param secretData The key-value pairs to store
+     */
+    public record SecretWrite(String kvMountPath, String secretPath, Map<String, Object> secretData) {
+
+        /**
+         * Creates a write against the default key-value mount
+         *
+         * @param secretPath The path where the secret should be stored
+         * @param secretData The key-value pairs to store
+         */
+        public SecretWrite(String secretPath, Map<String, Object> secretData) {
+            this(DEFAULT_KV_MOUNT_PATH, secretPath, secretData);
+        }
+    }
+
+    /**
+     * Outcome of a single write in a batch
+     *
+     * @param write The write that was attempted
+     * @param result The new version, or whether the failure was retryable or terminal
+     * @param latency Time taken by the write, including any retries
+     */
+    public record WriteResult(SecretWrite write, VaultResult<Integer> result, Duration latency) {
+
+        /**
+         * @return true if the secret was written
+         */
+        public boolean success() {
+            return result.isSuccess();
+        }
+
+        /**
+         * @return true if the write was skipped because the secret already held the same data
+         */
+        public boolean unchanged() {
+            return result.isUnchanged();
+        }
+
+        /**
+         * @return The error message if the write failed, otherwise null
+         */
+        public String error() {
+            return result.error();
+        }
+    }
+
+    /**
+     * Outcome of a batch of writes
+     *
+     * @param results Per-entry results in submission order
+     * @param elapsed Wall clock time for the whole batch
+     */
+    public record BatchResult(List<WriteResult> results, Duration elapsed) {
+
+        /**
+         * @return Number of writes that succeeded
+         */
+        public long succeeded() {
+            return results.stream().filter(WriteResult::success).count();
+        }
+
+        /**
+         * @return Number of writes skipped because the secret already held the same data
+         */
+        public long unchanged() {
+            return results.stream().filter(WriteResult::unchanged).count();
+        }
+
+        /**
+         * @return Number of writes that failed
+         */
+        public long failed() {
+            return results.size() - succeeded();
+        }
+
+        /**
+         * @return Slowest single request in the batch
+         */
+        public Duration maxLatency() {
+            return results.stream().map(WriteResult::latency).max(Duration::compareTo).orElse(Duration.ZERO);
+        }
+
+        /**
+         * @return Mean request latency across the batch
+         */
+        public Duration meanLatency() {
+            if (results.isEmpty()) {
+                return Duration.ZERO;
+            }
+            long totalNanos = results.stream().mapToLong(r -> r.latency().toNanos()).sum();
+            return Duration.ofNanos(totalNanos / results.size());
+        }
     }
 }
@@ -0,0 +1,120 @@
+package io.swyftx.jwk;
+
+import org.springframework.vault.VaultException;
+
+import java.util.function.Function;
+
+/**
+ * The outcome of a Vault operation after retries. A failure is either retryable, meaning Vault or the network failed
+ * in a way that may clear up (timeouts, 5xx, 429, 412 from a standby) but the retry policy or deadline ran out, or
+ * terminal, meaning the same request will keep failing (bad request, permission denied, missing secret, check-and-set
+ * conflict).
+ *
+ * @param <T> The type of the response
+ */
+public sealed interface VaultResult<T> permits VaultResult.Success, VaultResult.Retryable, VaultResult.Terminal {
+
+    /**
+     * @return Number of attempts made, including hedged requests as one attempt
+     */
+    int attempts();
+
+    /**
+     * @return true if the operation succeeded
+     */
+    default boolean isSuccess() {
+        return this instanceof Success<T>;
+    }
+
+    /**
+     * @return true if the operation succeeded without a request, as the secret already held the data being written
+     */
+    default boolean isUnchanged() {
+        return this instanceof Success<T> success && success.unchanged();
+    }
+
+    /**
+     * @return The response, or null if the operation failed
+     */
+    default T orNull() {
+        return this instanceof Success<T> success ? success.value() : null;
+    }
+
+    /**
+     * @return The response
+     * @throws RuntimeException The exception the last attempt failed with, or a {@link VaultException} if there was none
+     */
+    default T orThrow() {
+        return switch (this) {
+            case Success<T> success -> success.value();
+            case Retryable<T> retryable -> throw retryable.cause() != null ? retryable.cause() : new VaultException(retryable.error());
+            case Terminal<T> terminal -> throw terminal.cause() != null ? terminal.cause() : new VaultException(terminal.error());
+        };
+    }
+
+    /**
+     * @return The error message, or null if the operation succeeded
+     */
+    default String error() {
+        return switch (this) {
+            case Success<T> success -> null;
+            case Retryable<T> retryable -> retryable.error();
+            case Terminal<T> terminal -> terminal.error();
+        };
+    }
+
+    /**
+     * @return How the operation failed and after how many attempts, for error messages, or "succeeded"
+     */
+    default String describe() {
+        return switch (this) {
+            case Success<T> success -> "succeeded";
+            case Retryable<T> retryable -> "retryable error after " + retryable.attempts() + " attempt(s): " + retryable.error();
+            case Terminal<T> terminal -> "terminal error: " + terminal.error();
+        };
+    }
+
+    /**
+     * @param mapper Converts the response
+     * @return A result with the converted response, or this failure
+     */
+    default <R> VaultResult<R> map(Function<T, R> mapper) {
+        return switch (this) {
+            case Success<T> success -> new Success<>(mapper.apply(success.value()), success.attempts(), success.unchanged());
+            case Retryable<T> retryable -> new Retryable<>(retryable.error(), retryable.cause(), retryable.attempts());
+            case Terminal<T> terminal -> new Terminal<>(terminal.error(), terminal.cause(), terminal.attempts());
+        };
+    }
+
+    /**
+     * @param value The response
+     * @param attempts Number of attempts made
+     * @param unchanged true if no write was sent because the secret already held the data
+     */
+    record Success<T>(T value, int attempts, boolean unchanged) implements VaultResult<T> {
+
+        /**
+         * @param value The response
+         * @param attempts Number of attempts made
+         */
+        public Success(T value, int attempts) {
+            this(value, attempts, false);
+        }
+    }
+
+    /**
+     * @param error Why the last attempt failed, or that the deadline passed
+     * @param cause The exception the last attempt failed with, or null if the deadline passed first
+     * @param attempts Number of attempts made
+     */
+    record Retryable<T>(String error, RuntimeException cause, int attempts) implements VaultResult<T> {
+    }
+
+    /**
+     * @param error Why the request failed
+     * @param cause The exception it failed with, or null if there was none
+     * @param attempts Number of attempts made
+     */
+    record Terminal<T>(String error, RuntimeException cause, int attempts) implements VaultResult<T> {
+    }
+}
@@ -0,0 +1,268 @@
+package io.swyftx.jwk;
+
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs Vault requests under a {@link RetryPolicy}. Each attempt runs on its own virtual thread so the caller can stop
+ * waiting at the deadline, and so a hedged read can race a second request against a slow first one. Latency and
+ * outcome of every request, hedges included, are recorded in {@link Metrics}.
+ */
+public class VaultRetries {
+    private static final ExecutorService REQUESTS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Reads seen before hedging starts, so the threshold is not set by a handful of cold requests
+     */
+    private static final int MIN_HEDGE_SAMPLES = 20;
+    private static final int LATENCY_WINDOW = 256;
+
+    private final RetryPolicy policy;
+    private final LatencyWindow readLatency = new LatencyWindow(LATENCY_WINDOW);
+
+    /**
+     * @param policy The policy to run requests under
+     */
+    public VaultRetries(RetryPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return The policy requests run under
+     */
+    public RetryPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Runs a read, retrying it and hedging it as the policy allows
+     *
+     * @param operation The operation label for metrics, e.g. read
+     * @param request The request
+     * @return The outcome
+     */
+    public <T> VaultResult<T> read(String operation, Supplier<T> request) {
+        return execute(operation, policy.maxAttempts(), policy.hedges(), request);
+    }
+
+    /**
+     * Runs an idempotent or check-and-set write, retrying it as the policy allows
+     *
+     * @param operation The operation label for metrics, e.g. write
+     * @param request The request
+     * @return The outcome
+     */
+    public <T> VaultResult<T> write(String operation, Supplier<T> request) {
+        return execute(operation, policy.maxAttempts(), false, request);
+    }
+
+
+    private <T> VaultResult<T> execute(String operation, int maxAttempts, boolean hedge, Supplier<T> request) {
+        long deadline = System.nanoTime() + policy.deadline().toNanos();
+        for (int attempt = 1; ; attempt++) {
+            RuntimeException failure;
+            try {
+                return new VaultResult.Success<>(attempt(operation, hedge, request, deadline), attempt);
+            } catch (TimeoutException e) {
+                return new VaultResult.Retryable<>(operation + " did not complete within the "
+                    + policy.deadline().toMillis() + " ms deadline", null, attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new VaultResult.Terminal<>("Interrupted during " + operation, null, attempt);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+
+            if (!isRetryable(failure)) {
+                return new VaultResult.Terminal<>(failure.getMessage(), failure, attempt);
+            }
+            if (attempt >= maxAttempts) {
+                return new VaultResult.Retryable<>(failure.getMessage(), failure, attempt);
+            }
+            Duration delay = policy.backoff(attempt);
+            if (System.nanoTime() + delay.toNanos() >= deadline) {
+                return new VaultResult.Retryable<>(failure.getMessage() + " (no time left before the deadline to retry)",
+                    failure, attempt);
+            }
+
+            Metrics.VAULT_RETRIES.inc(operation);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new VaultResult.Terminal<>("Interrupted during " + operation, failure, attempt);
+            }
+        }
+    }
+
+    /**
+     * Makes one attempt, sending a second request if a hedged read is slower than the hedge threshold
+     */
+    private <T> T attempt(String operation, boolean hedge, Supplier<T> request, long deadline)
+            throws InterruptedException, TimeoutException {
+        CompletableFuture<T> primary = send(operation, hedge, request);
+        CompletableFuture<T> hedged = null;
+        try {
+            if (hedge) {
+                long hedgeAfter = readLatency.percentile(policy.hedgePercentile());
+                if (hedgeAfter >= 0 && hedgeAfter < deadline - System.nanoTime()) {
+                    try {
+                        return await(primary, hedgeAfter);
+                    } catch (TimeoutException e) {
+                        Metrics.VAULT_HEDGES.inc(operation);
+                        hedged = send(operation, true, request);
+                        return await(firstSuccess(primary, hedged), deadline - System.nanoTime());
+                    }
+                }
+            }
+            return await(primary, deadline - System.nanoTime());
+        } finally {
+            // a request abandoned at the deadline, or that lost a hedge, must not go on writing in the background
+            primary.cancel(true);
+            if (hedged != null) {
+                hedged.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Sends a request on its own virtual thread. Cancelling the returned future interrupts that thread, which aborts
+     * the HTTP exchange.
+     */
+    private <T> CompletableFuture<T> send(String operation, boolean trackLatency, Supplier<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = REQUESTS.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                T response = request.get();
+                Metrics.VAULT_REQUESTS.inc(operation, "success");
+                if (trackLatency) {
+                    readLatency.record(System.nanoTime() - start);
+                }
+                result.complete(response);
+            } catch (RuntimeException | Error e) {
+                Metrics.VAULT_REQUESTS.inc(operation, e instanceof VaultClient.CasConflictException ? "conflict" : "failure");
+                result.completeExceptionally(e);
+            } finally {
+                Metrics.VAULT_REQUEST.observeSince(start, operation);
+            }
+        });
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return A future completed by whichever request succeeds first, or failed with the last failure if both fail
+     */
+    private static <T> CompletableFuture<T> firstSuccess(CompletableFuture<T> first, CompletableFuture<T> second) {
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        BiConsumer<T, Throwable> complete = (value, error) -> {
+            if (error == null) {
+                winner.complete(value);
+            } else if (failures.incrementAndGet() == 2) {
+                winner.completeExceptionally(error);
+            }
+        };
+        first.whenComplete(complete);
+        second.whenComplete(complete);
+        return winner;
+    }
+
+    private static <T> T await(CompletableFuture<T> future, long timeoutNanos) throws InterruptedException, TimeoutException {
+        try {
+            return future.get(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Tells failures that may clear up on their own from ones that will repeat. Timeouts, connection failures,
+     * 5xx other than 501, 429 and 412 are retryable. 412 is what a performance standby returns when it has not yet
+     * caught up with a write.
+     *
+     * @param e The failure
+     * @return true if the request is worth retrying
+     */
+    public static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof VaultClient.CasConflictException) {
+                return false;
+            }
+            if (t instanceof HttpStatusCodeException status) {
+                return isRetryableStatus(status.getStatusCode().value());
+            }
+            if (t instanceof ResourceAccessException || t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRetryableStatus(int status) {
+        return status == 412 || status == 429 || (status >= 500 && status != 501);
+    }
+
+    /**
+     * The most recent request latencies, for picking the hedge threshold
+     */
+    static class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * @param percentile The percentile, from 0 to 100
+         * @return The latency in nanoseconds at that percentile, or -1 if too few requests have been seen
+         */
+        synchronized long percentile(double percentile) {
+            if (size < MIN_HEDGE_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            return sorted[Math.max(0, index)];
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.swyftx.jwk;
+
+import com.google.common.base.Strings;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.vault.authentication.AppRoleAuthentication;
+import org.springframework.vault.authentication.AppRoleAuthenticationOptions;
+import org.springframework.vault.authentication.AuthenticationStepsExecutor;
+import org.springframework.vault.authentication.ClientAuthentication;
+import org.springframework.vault.authentication.KubernetesAuthentication;
+import org.springframework.vault.authentication.KubernetesAuthenticationOptions;
+import org.springframework.vault.authentication.KubernetesServiceAccountTokenFile;
+import org.springframework.vault.authentication.LifecycleAwareSessionManager;
+import org.springframework.vault.authentication.LifecycleAwareSessionManagerSupport;
+import org.springframework.vault.authentication.SessionManager;
+import org.springframework.vault.authentication.TokenAuthentication;
+import org.springframework.vault.client.VaultClients;
+import org.springframework.vault.client.VaultEndpoint;
+import org.springframework.vault.support.VaultToken;
+import org.springframework.web.client.RestOperations;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of authenticated Vault sessions, one per Vault address. Each session logs in once and is
+ * renewed by a background scheduler ahead of lease expiry, so requests never wait on a login.
+ * <p>
+ * The auth method is picked with the {@code VAULT_AUTH_METHOD} environment variable:
+ * <ul>
+ *     <li>{@code token} (default): {@code VAULT_TOKEN}, falling back to {@code ~/.vault-token}</li>
+ *     <li>{@code approle}: {@code VAULT_ROLE_ID} and {@code VAULT_SECRET_ID}, mounted at {@code VAULT_AUTH_PATH}
+ *     (default {@code approle})</li>
+ *     <li>{@code kubernetes}: {@code VAULT_K8S_ROLE} with the pod's service account token, mounted at
+ *     {@code VAULT_AUTH_PATH} (default {@code kubernetes})</li>
+ * </ul>
+ */
+public class VaultSessions {
+    private static final Duration REFRESH_BEFORE_EXPIRY = Duration.ofSeconds(30);
+
+    private static final Map<String, SessionManager> SESSIONS = new ConcurrentHashMap<>();
+    private static volatile ThreadPoolTaskScheduler scheduler;
+
+    /**
+     * Returns the authenticated session for a Vault endpoint, logging in on first use
+     *
+     * @param endpoint The Vault endpoint
+     * @param requestFactory The transport to log in and renew over
+     * @return The session manager, already holding a valid token
+     * @throws IllegalStateException If no credentials are available for the configured auth method
+     */
+    public static SessionManager get(VaultEndpoint endpoint, ClientHttpRequestFactory requestFactory) {
+        return SESSIONS.computeIfAbsent(endpoint.toString(), key -> login(endpoint, requestFactory));
+    }
+
+    private static SessionManager login(VaultEndpoint endpoint, ClientHttpRequestFactory requestFactory) {
+        RestOperations restOperations = VaultClients.createRestTemplate(endpoint, requestFactory);
+        String method = System.getenv().getOrDefault("VAULT_AUTH_METHOD", "token");
+        System.out.println("Authenticating to Vault using " + method + " auth...");
+
+        ClientAuthentication authentication = switch (method) {
+            case "token" -> tokenAuthentication(restOperations);
+            case "approle" -> appRoleAuthentication(restOperations);
+            case "kubernetes" -> kubernetesAuthentication(restOperations);
+            default -> throw new IllegalStateException("Unsupported VAULT_AUTH_METHOD: " + method);
+        };
+
+        LifecycleAwareSessionManager sessionManager = new LifecycleAwareSessionManager(
+            authentication,
+            scheduler(),
+            restOperations,
+            new LifecycleAwareSessionManagerSupport.FixedTimeoutRefreshTrigger(REFRESH_BEFORE_EXPIRY)
+        );
+
+        // log in now rather than on the first request, which also schedules the first renewal
+        sessionManager.getSessionToken();
+
+        // sessions we logged in for are revoked at exit; a user-supplied token is left alone
+        if (!method.equals("token")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(sessionManager::destroy, "vault-session-revoke"));
+        }
+        return sessionManager;
+    }
+
+    /**
+     * Token auth. The token is looked up once so its TTL is known and it can be renewed before it expires.
+     */
+    private static ClientAuthentication tokenAuthentication(RestOperations restOperations) {
+        String token = System.getenv("VAULT_TOKEN");
+        if (Strings.isNullOrEmpty(token)) {
+            token = readVaultTokenFile();
+        }
+        if (Strings.isNullOrEmpty(token)) {
+            throw new IllegalStateException("Vault token could not be read or is empty");
+        }
+        return new AuthenticationStepsExecutor(
+            TokenAuthentication.createAuthenticationSteps(VaultToken.of(token), true),
+            restOperations
+        );
+    }
+
+    private static ClientAuthentication appRoleAuthentication(RestOperations restOperations) {
+        String roleId = System.getenv("VAULT_ROLE_ID");
+        String secretId = System.getenv("VAULT_SECRET_ID");
+        if (Strings.isNullOrEmpty(roleId) || Strings.isNullOrEmpty(secretId)) {
+            throw new IllegalStateException("VAULT_ROLE_ID and VAULT_SECRET_ID are required for approle auth");
+        }
+        AppRoleAuthenticationOptions options = AppRoleAuthenticationOptions.builder()
+            .path(System.getenv().getOrDefault("VAULT_AUTH_PATH", "approle"))
+            .roleId(AppRoleAuthenticationOptions.RoleId.provided(roleId))
+            .secretId(AppRoleAuthenticationOptions.SecretId.provided(secretId))
+            .build();
+        return new AppRoleAuthentication(options, restOperations);
+    }
+
+    private static ClientAuthentication kubernetesAuthentication(RestOperations restOperations) {
+        String role = System.getenv("VAULT_K8S_ROLE");
+        if (Strings.isNullOrEmpty(role)) {
+            throw new IllegalStateException("VAULT_K8S_ROLE is required for kubernetes auth");
+        }
+        KubernetesAuthenticationOptions options = KubernetesAuthenticationOptions.builder()
+            .path(System.getenv().getOrDefault("VAULT_AUTH_PATH", "kubernetes"))
+            .role(role)
+            .jwtSupplier(new KubernetesServiceAccountTokenFile())
+            .build();
+        return new KubernetesAuthentication(options, restOperations);
+    }
+
+    /**
+     * Reads the Vault token from the user's home directory
+     *
+     * @return The vault token or null if it couldn't be read
+     */
+    private static String readVaultTokenFile() {
+        String homeDir = System.getProperty("user.home");
+        File tokenFile = new File(homeDir, ".vault-token");
+
+        if (tokenFile.exists() && tokenFile.isFile() && tokenFile.canRead()) {
+            try {
+                return Files.readString(tokenFile.toPath()).trim();
+            } catch (IOException e) {
+                System.err.println("Error reading Vault token from " + tokenFile.getAbsolutePath() + ": " + e.getMessage());
+            }
+        } else {
+            System.err.println("Vault token file not found or not readable at " + tokenFile.getAbsolutePath());
+        }
+        return null;
+    }
+
+    private static ThreadPoolTaskScheduler scheduler() {
+        if (scheduler == null) {
+            synchronized (VaultSessions.class) {
+                if (scheduler == null) {
+                    ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+                    taskScheduler.setThreadNamePrefix("vault-session-");
+                    taskScheduler.setDaemon(true);
+                    taskScheduler.initialize();
+                    scheduler = taskScheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+}
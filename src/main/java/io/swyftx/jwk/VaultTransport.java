@@ -0,0 +1,50 @@
+package io.swyftx.jwk;
+
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared HTTP transport for Vault clients. One {@link HttpClient} is kept per timeout configuration, so every
+ * client in the process reuses the same keep-alive connection pool, negotiating HTTP/2 where the server
+ * supports it. Response handling runs on virtual threads, so callers blocking on a response are cheap.
+ */
+public class VaultTransport {
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final Map<Duration, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a request factory backed by the shared HTTP client for the connect timeout
+     *
+     * @param connectTimeout Maximum time to establish a connection
+     * @param readTimeout Maximum time to wait for a response
+     * @return The request factory
+     */
+    public static ClientHttpRequestFactory requestFactory(Duration connectTimeout, Duration readTimeout) {
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient(connectTimeout));
+        factory.setReadTimeout(readTimeout);
+        return factory;
+    }
+
+    /**
+     * Returns the shared HTTP client for a connect timeout, creating it on first use
+     *
+     * @param connectTimeout Maximum time to establish a connection
+     * @return The HTTP client
+     */
+    public static HttpClient httpClient(Duration connectTimeout) {
+        return CLIENTS.computeIfAbsent(connectTimeout, timeout -> HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(timeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build());
+    }
+}
@@ -0,0 +1,87 @@
+package io.swyftx.jwk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class CborTest {
+
+    @Test
+    public void encodesWithTheShortestHead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Cbor.Encoder(out).array(6)
+            .integer(23).integer(24).integer(-25).integer(65536)
+            .text("a").bytes(new byte[]{1, 2});
+
+        assertEquals("86" + "17" + "1818" + "3818" + "1a00010000" + "6161" + "420102",
+            HexFormat.of().formatHex(out.toByteArray()));
+    }
+
+    @Test
+    public void decodesWhatItEncodes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Cbor.Encoder(out).map(3)
+            .integer(1).bytes(new byte[]{9})
+            .integer(-1).array(2).integer(Long.MAX_VALUE).integer(Long.MIN_VALUE)
+            .text("ok").bool(true);
+
+        Map<?, ?> map = (Map<?, ?>) Cbor.decode(out.toByteArray());
+        assertEquals(List.of(1L, -1L, "ok"), List.copyOf(map.keySet()));
+        assertArrayEquals(new byte[]{9}, (byte[]) map.get(1L));
+        assertEquals(List.of(Long.MAX_VALUE, Long.MIN_VALUE), map.get(-1L));
+        assertEquals(true, map.get("ok"));
+    }
+
+    @Test
+    public void rejectsTruncatedInput() {
+        // nothing at all, a head missing its length byte, and a map missing its last value
+        for (String hex : new String[]{"", "18", "a101", "a2010203"}) {
+            assertRejected(hex, "ends mid-item");
+        }
+        // byte strings one byte short, and with a length far past the input
+        assertRejected("430102", "runs past the end");
+        assertRejected("5a7fffffff00", "runs past the end");
+    }
+
+    @Test
+    public void rejectsTrailingBytes() {
+        assertRejected("a1010200", "trailing bytes");
+        assertRejected("0101", "trailing bytes");
+    }
+
+    @Test
+    public void rejectsDuplicateMapKeys() {
+        assertRejected("a201020103", "Duplicate CBOR map key");
+        assertRejected("a2616b01616b02", "Duplicate CBOR map key");
+    }
+
+    @Test
+    public void rejectsUnsupportedItems() {
+        // an indefinite length array, a tag, a half float and a byte string map key
+        for (String hex : new String[]{"9f01ff", "c101", "f93c00", "a1410102"}) {
+            try {
+                Cbor.decode(HexFormat.of().parseHex(hex));
+                throw new AssertionError(hex + " was decoded");
+            } catch (IllegalArgumentException expected) {
+                // outside the subset COSE keys use
+            }
+        }
+    }
+
+    private static void assertRejected(String hex, String reason) {
+        try {
+            Cbor.decode(HexFormat.of().parseHex(hex));
+            throw new AssertionError(hex + " was decoded");
+        } catch (IllegalArgumentException e) {
+            if (!e.getMessage().contains(reason)) {
+                throw new AssertionError(hex + " was rejected for the wrong reason: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.swyftx.jwk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.util.Base64URL;
+
+public class CoseKeyTest {
+
+    /**
+     * The P-256 key from RFC 9052 Appendix C.7
+     */
+    private static final String KID = "meriadoc.brandybuck@buckland.example";
+    private static final String X = "65eda5a12577c2bae829437fe338701a10aaa375e1bb5b5de108de439c08551d";
+    private static final String Y = "1e52ed75701163f7f9e40ddf9f341b3dc9ba860af7e0ca7ca7e9eecd0084d19c";
+    private static final String D = "aff907c99f9ad3aae6c4cdf21122bce2bd68b5283e6907154ad911840fa208cf";
+
+    @Test
+    public void roundTripsEveryKeyType() throws Exception {
+        List<JWK> keys = List.of(
+            KeyGenerator.makeKey("2048", KeyIdGenerator.SHA256, KeyType.RSA, KeyUse.SIGNATURE, JWSAlgorithm.PS256, null),
+            KeyGenerator.makeKey("2048", KeyIdGenerator.SHA256, KeyType.RSA, KeyUse.ENCRYPTION, JWEAlgorithm.RSA_OAEP_256, null),
+            KeyGenerator.makeKey(null, KeyIdGenerator.SHA256, KeyType.EC, KeyUse.SIGNATURE, JWSAlgorithm.ES384, Curve.P_384),
+            KeyGenerator.makeKey(null, KeyIdGenerator.SHA256, KeyType.OKP, KeyUse.SIGNATURE, JWSAlgorithm.EdDSA, Curve.Ed25519),
+            KeyGenerator.makeKey(null, KeyIdGenerator.SHA256, KeyType.OKP, KeyUse.ENCRYPTION, JWEAlgorithm.ECDH_ES, Curve.X25519),
+            KeyGenerator.makeKey("256", KeyIdGenerator.SHA256, KeyType.OCT, KeyUse.SIGNATURE, JWSAlgorithm.HS256, null));
+
+        for (JWK jwk : keys) {
+            assertEquals(jwk, CoseKey.parse(CoseKey.toBytes(jwk, false)));
+            try (SecretBytes secret = CoseKey.toSecretBytes(jwk)) {
+                assertEquals(jwk, CoseKey.parseBase64Url(StandardCharsets.US_ASCII.decode(secret.contents()).toString()));
+            }
+            if (jwk.toPublicJWK() == null) {
+                assertNull(CoseKey.toBytes(jwk, true));
+            } else {
+                assertEquals(jwk.toPublicJWK(), CoseKey.parse(CoseKey.toBytes(jwk, true)));
+            }
+        }
+
+        List<JWK> publicKeys = CoseKey.parseKeySet(CoseKey.toKeySetBytes(keys, true));
+        assertEquals(keys.size() - 1, publicKeys.size());
+        for (int i = 0; i < publicKeys.size(); i++) {
+            assertEquals(keys.get(i).toPublicJWK(), publicKeys.get(i));
+        }
+    }
+
+    @Test
+    public void writesLabelsInDeterministicOrder() throws Exception {
+        ECKey publicKey = new ECKey.Builder(Curve.P_256, base64Url(X), base64Url(Y)).keyID(KID).build();
+        ECKey privateKey = new ECKey.Builder(publicKey).d(base64Url(D)).build();
+
+        // kty, kid, crv, x, y: positive labels sort before negative ones, as their encoded bytes do
+        String expectedPublic = "a5" + "0102" + "025824" + HexFormat.of().formatHex(KID.getBytes(StandardCharsets.UTF_8))
+            + "2001" + "215820" + X + "225820" + Y;
+        assertEquals(expectedPublic, HexFormat.of().formatHex(CoseKey.toBytes(publicKey, false)));
+        assertEquals(expectedPublic, HexFormat.of().formatHex(CoseKey.toBytes(privateKey, true)));
+        assertEquals("a6" + expectedPublic.substring(2) + "235820" + D,
+            HexFormat.of().formatHex(CoseKey.toBytes(privateKey, false)));
+
+        // use is written as the key_ops it implies, after alg and before the key parameters
+        ECKey signingKey = new ECKey.Builder(publicKey).keyUse(KeyUse.SIGNATURE).algorithm(JWSAlgorithm.ES256).build();
+        String signingHex = HexFormat.of().formatHex(CoseKey.toBytes(signingKey, false));
+        assertEquals("a7" + "0102" + "025824", signingHex.substring(0, 12));
+        assertEquals("0326" + "048102" + "2001", signingHex.substring(84, 98));
+    }
+
+    @Test
+    public void parsesTheRfcExampleKey() throws Exception {
+        String cbor = "a6" + "2001" + "215820" + X + "225820" + Y + "235820" + D + "0102"
+            + "025824" + HexFormat.of().formatHex(KID.getBytes(StandardCharsets.UTF_8));
+
+        ECKey key = (ECKey) CoseKey.parse(HexFormat.of().parseHex(cbor));
+        assertEquals(KID, key.getKeyID());
+        assertEquals(Curve.P_256, key.getCurve());
+        assertEquals(base64Url(D), key.getD());
+    }
+
+    @Test
+    public void rejectsMalformedKeys() {
+        byte[] valid = HexFormat.of().parseHex("a2" + "0104" + "2041" + "00");
+        byte[] truncated = HexFormat.of().parseHex("a2" + "0104" + "2041");
+        byte[] trailing = HexFormat.of().parseHex("a2" + "0104" + "2041" + "00" + "00");
+        byte[] duplicate = HexFormat.of().parseHex("a3" + "0104" + "2041" + "00" + "0104");
+        try {
+            CoseKey.parse(valid);
+        } catch (ParseException e) {
+            throw new AssertionError("the minimal oct key was rejected", e);
+        }
+
+        for (byte[] cbor : List.of(truncated, trailing, duplicate)) {
+            try {
+                CoseKey.parse(cbor);
+                throw new AssertionError(HexFormat.of().formatHex(cbor) + " was parsed");
+            } catch (ParseException expected) {
+                // not a single well-formed COSE_Key
+            }
+        }
+    }
+
+    private static Base64URL base64Url(String hex) {
+        return Base64URL.encode(HexFormat.of().parseHex(hex));
+    }
+}
@@ -0,0 +1,141 @@
+package io.swyftx.jwk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+
+public class JwksStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rawEntriesSkipNestedValues() throws Exception {
+        String json = """
+            {
+              "note": {"keys": [{"kid": "decoy"}], "text": "a } and a ] and a \\" inside"},
+              "keys": [
+                {"kid": "a\\"b\\u00e9", "x5c": ["{", "]"], "ext": {"kid": "inner"}},
+                {"kty": "oct", "k": "AAAA"},
+                {"ext": {"kid": "inner"}, "kid": "outer"}
+              ],
+              "after": [1, 2.5e3, true, null]
+            }
+            """;
+
+        List<String> entries = JwksStore.RawJwkSet.entries(json);
+        assertEquals(List.of(
+            "{\"kid\": \"a\\\"b\\u00e9\", \"x5c\": [\"{\", \"]\"], \"ext\": {\"kid\": \"inner\"}}",
+            "{\"kty\": \"oct\", \"k\": \"AAAA\"}",
+            "{\"ext\": {\"kid\": \"inner\"}, \"kid\": \"outer\"}"), entries);
+
+        assertEquals("a\"bé", JwksStore.RawJwkSet.kid(entries.get(0)));
+        assertNull(JwksStore.RawJwkSet.kid(entries.get(1)));
+        assertEquals("outer", JwksStore.RawJwkSet.kid(entries.get(2)));
+        assertNull(JwksStore.RawJwkSet.kid("{ }"));
+        assertNull(JwksStore.RawJwkSet.kid("{\"kid\": 7}"));
+    }
+
+    @Test
+    public void rawEntriesOfAnEmptySet() throws Exception {
+        assertEquals(List.of(), JwksStore.RawJwkSet.entries("{\"keys\": [ ]}"));
+        assertEquals(List.of(), JwksStore.RawJwkSet.entries("{\"other\": 1, \"keys\": []}"));
+    }
+
+    @Test
+    public void rawEntriesRejectWhatIsNotAJwkSet() {
+        for (String json : new String[]{"{}", "{\"other\": []}", "[]", "{\"keys\": [1]}", "{\"keys\": [{\"kid\": \"a}]}"}) {
+            try {
+                JwksStore.RawJwkSet.entries(json);
+                throw new AssertionError(json + " was split into entries");
+            } catch (ParseException expected) {
+                // not an object with a keys array of objects
+            }
+        }
+    }
+
+    @Test
+    public void publishedSetLoadsAsTheKeysAdded() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("jwks.json");
+        Path publicFile = folder.getRoot().toPath().resolve("jwks-public.json");
+        JWK first = ecKey();
+        JWK second = ecKey();
+        JWK withoutKid = new ECKeyGenerator(Curve.P_256).generate();
+
+        JwksStore store = JwksStore.open(file, publicFile);
+        assertEquals(0, store.size());
+        store.add(first);
+        store.add(second);
+        String thumbprint = store.add(withoutKid);
+        store.publish();
+
+        assertEquals(List.of(first, second, withoutKid), JWKSet.load(file.toFile()).getKeys());
+        assertEquals(List.of(first.toPublicJWK(), second.toPublicJWK(), withoutKid.toPublicJWK()),
+            JWKSet.load(publicFile.toFile()).getKeys());
+
+        // the kids of written entries are found by the scan, without parsing the keys
+        List<String> entries = JwksStore.RawJwkSet.entries(Files.readString(file, StandardCharsets.UTF_8));
+        assertEquals(first.getKeyID(), JwksStore.RawJwkSet.kid(entries.get(0)));
+        assertEquals(second.getKeyID(), JwksStore.RawJwkSet.kid(entries.get(1)));
+        assertNull(JwksStore.RawJwkSet.kid(entries.get(2)));
+
+        JwksStore reopened = JwksStore.open(file, publicFile);
+        assertEquals(3, reopened.size());
+        assertTrue(reopened.contains(first.getKeyID()));
+        assertTrue(reopened.contains(thumbprint));
+    }
+
+    @Test
+    public void addingAnExistingKidReplacesTheKeyInPlace() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("jwks.json");
+        Path publicFile = folder.getRoot().toPath().resolve("jwks-public.json");
+        JWK first = ecKey();
+        JWK second = ecKey();
+        JWK third = ecKey();
+        JwksStore store = JwksStore.open(file, publicFile);
+        store.add(first);
+        store.add(second);
+        store.add(third);
+        store.publish();
+        String firstEntry = JwksStore.RawJwkSet.entries(Files.readString(file, StandardCharsets.UTF_8)).get(0);
+
+        JWK replacement = new ECKeyGenerator(Curve.P_256).keyID(second.getKeyID()).keyUse(KeyUse.SIGNATURE).generate();
+        assertNotEquals(second, replacement);
+        JwksStore reopened = JwksStore.open(file, publicFile);
+        assertEquals(second.getKeyID(), reopened.add(replacement));
+        assertEquals(3, reopened.size());
+        assertTrue(reopened.remove(third.getKeyID()));
+        assertFalse(reopened.remove(third.getKeyID()));
+        reopened.publish();
+
+        assertEquals(List.of(first, replacement), JWKSet.load(file.toFile()).getKeys());
+        assertEquals(List.of(first.toPublicJWK(), replacement.toPublicJWK()), JWKSet.load(publicFile.toFile()).getKeys());
+        assertEquals("untouched entries are copied out verbatim", firstEntry,
+            JwksStore.RawJwkSet.entries(Files.readString(file, StandardCharsets.UTF_8)).get(0));
+    }
+
+    private static JWK ecKey() {
+        return KeyGenerator.makeKey(null, KeyIdGenerator.SHA256, KeyType.EC, KeyUse.SIGNATURE, JWSAlgorithm.ES256,
+            Curve.P_256);
+    }
+}
@@ -0,0 +1,79 @@
+package io.swyftx.jwk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.KeyType;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.OctetSequenceKey;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+
+public class KeyGeneratorTest {
+
+    @Test
+    public void bulkRsaKeysAreDistinctAndComplete() {
+        KeyGenerator.BulkResult result = KeyGenerator.makeKeys(6, "1024", KeyIdGenerator.SHA256, KeyUse.SIGNATURE,
+            JWSAlgorithm.RS256);
+
+        assertEquals(6, result.keys().size());
+        assertTrue(result.workers() >= 1 && result.workers() <= 6);
+
+        Set<String> kids = new HashSet<>();
+        Set<String> moduli = new HashSet<>();
+        for (JWK jwk : result.keys()) {
+            RSAKey rsa = (RSAKey) jwk;
+            assertTrue(rsa.isPrivate());
+            assertEquals(1024, rsa.size());
+            assertEquals(KeyUse.SIGNATURE, rsa.getKeyUse());
+            assertEquals(JWSAlgorithm.RS256, rsa.getAlgorithm());
+            kids.add(rsa.getKeyID());
+            moduli.add(rsa.getModulus().toString());
+        }
+        assertEquals("every worker must draw from its own randomness", 6, moduli.size());
+        assertEquals(6, kids.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkRejectsZeroCount() {
+        KeyGenerator.makeKeys(0, "1024", KeyIdGenerator.SHA256, KeyUse.SIGNATURE, JWSAlgorithm.RS256);
+    }
+
+    @Test
+    public void octKidsAreNotDerivedFromTheSecret() throws Exception {
+        for (KeyIdGenerator generator : new KeyIdGenerator[]{KeyIdGenerator.SHA256, KeyIdGenerator.THUMBPRINT}) {
+            OctetSequenceKey oct = (OctetSequenceKey) KeyGenerator.makeKey("256", generator, KeyType.OCT,
+                KeyUse.SIGNATURE, JWSAlgorithm.HS256, null);
+
+            assertEquals(256, oct.size());
+            byte[] secret = oct.toByteArray();
+            String secretHash = Base64URL.encode(MessageDigest.getInstance("SHA-256").digest(secret)).toString();
+            assertNotEquals(secretHash, oct.getKeyID());
+            assertNotEquals(oct.computeThumbprint().toString(), oct.getKeyID());
+        }
+    }
+
+    @Test
+    public void octKeysMeetTheHashSizeOfTheirAlgorithm() {
+        assertEquals(512, KeyGenerator.makeKey("512", KeyIdGenerator.SHA256, KeyType.OCT, KeyUse.SIGNATURE,
+            JWSAlgorithm.HS512, null).size());
+
+        for (String size : new String[]{"0", "-256", "128", "384"}) {
+            try {
+                KeyGenerator.makeKey(size, KeyIdGenerator.SHA256, KeyType.OCT, KeyUse.SIGNATURE, JWSAlgorithm.HS512, null);
+                throw new AssertionError("size " + size + " was accepted for HS512");
+            } catch (IllegalArgumentException expected) {
+                // too short for HS512
+            }
+        }
+    }
+}